@@ -0,0 +1,216 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.benchmark
+
+import android.net.Uri
+import android.webkit.WebResourceRequest
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.filters.LargeTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.nhaarman.mockitokotlin2.anyOrNull
+import com.nhaarman.mockitokotlin2.whenever
+import org.adblockplus.ContentType
+import org.adblockplus.libadblockplus.HeaderEntry
+import org.adblockplus.libadblockplus.ServerResponse
+import org.adblockplus.libadblockplus.android.AndroidBase64Processor
+import org.adblockplus.libadblockplus.android.ParsedRequestUrl
+import org.adblockplus.libadblockplus.android.Utils
+import org.adblockplus.libadblockplus.android.webview.AdblockWebView
+import org.adblockplus.libadblockplus.android.webview.HttpHeaderSiteKeyExtractor.ServerResponseProcessor
+import org.adblockplus.libadblockplus.android.webview.content_type.UrlFileExtensionTypeDetector
+import org.adblockplus.libadblockplus.security.JavaSignatureVerifier
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolderImpl
+import org.adblockplus.libadblockplus.sitekey.SiteKeyVerifier
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mockito
+import java.io.ByteArrayInputStream
+import java.security.KeyPairGenerator
+import java.security.Signature
+
+/**
+ * Microbenchmarks of the per-request code paths depending on Android framework.
+ *
+ * The inputs are replayed from the page traces recorded in the raw resources, so the timings
+ * are comparable between the releases as long as the traces are not changed.
+ * The pure JVM code paths (content types, frames hierarchy, CSP rewriting, public key holders
+ * and signature verification) are benchmarked on the host with JMH in `adblock-android-jmh`,
+ * which also reports the allocations per operation.
+ */
+@LargeTest
+class RequestPathMicroBenchmark {
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private class TracedRequest(val contentType: ContentType, val url: String,
+                                val referrer: String)
+
+    private class TracedWebResourceRequest(private val uri: Uri) : WebResourceRequest {
+        override fun getUrl() = uri
+        override fun isForMainFrame() = false
+        override fun isRedirect() = false
+        override fun hasGesture() = false
+        override fun getMethod() = "GET"
+        override fun getRequestHeaders() = emptyMap<String, String>()
+    }
+
+    private class TestSiteKeyVerifier(publicKeyHolder: PublicKeyHolder) : SiteKeyVerifier(
+        JavaSignatureVerifier(), publicKeyHolder, AndroidBase64Processor()) {
+
+        fun buildDataWrapper(url: String, userAgent: String): ByteArray {
+            return super.buildData(url, userAgent)
+        }
+    }
+
+    private class TestServerResponseProcessor : ServerResponseProcessor() {
+        fun injectJavascriptWrapper(webView: AdblockWebView, requestUrl: String,
+                                    response: ServerResponse,
+                                    responseHeaders: MutableMap<String, String>): Boolean {
+            return super.injectJavascript(webView, requestUrl, response, responseHeaders)
+        }
+    }
+
+    companion object {
+        private const val USER_AGENT = "Mozilla/5.0 (Linux; Android 10; Pixel 3) " +
+            "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/90.0.4430.210 Mobile Safari/537.36"
+        private const val PUBLIC_KEY_SIZE_BITS = 512
+        private const val PAGE_PARAGRAPHS_COUNT = 500
+
+        private val context = InstrumentationRegistry.getInstrumentation().targetContext
+
+        private fun readTraceLines(resourceId: Int): List<String> {
+            return context.resources.openRawResource(resourceId).bufferedReader().useLines {
+                lines -> lines.filter { it.isNotBlank() && !it.startsWith("#") }.toList()
+            }
+        }
+
+        private val requests: List<TracedRequest> by lazy {
+            readTraceLines(R.raw.request_trace).map {
+                val parts = it.split("\t")
+                TracedRequest(ContentType.valueOf(parts[0]), parts[1], parts[2])
+            }
+        }
+
+        private val responseHeaders: List<HeaderEntry> by lazy {
+            readTraceLines(R.raw.response_headers).map {
+                val separator = it.indexOf(": ")
+                HeaderEntry.of(it.substring(0, separator), it.substring(separator + 2))
+            }
+        }
+
+        private val page: ByteArray by lazy {
+            val builder = StringBuilder("<!DOCTYPE html><html><head><title>Article</title></head><body>")
+            for (i in 0 until PAGE_PARAGRAPHS_COUNT) {
+                builder.append("<p class=\"paragraph\">Paragraph $i of the recorded article text, ")
+                builder.append("long enough to span several read buffers.</p>\n")
+            }
+            builder.append("</body></html>")
+            builder.toString().toByteArray()
+        }
+    }
+
+    @Test
+    fun convertHeaderEntriesToMap() {
+        val headers = responseHeaders
+        benchmarkRule.measureRepeated {
+            Utils.convertHeaderEntriesToMap(headers)
+        }
+    }
+
+    @Test
+    fun urlFileExtensionTypeDetectorDetect() {
+        val detector = UrlFileExtensionTypeDetector()
+        val webRequests = requests.map { TracedWebResourceRequest(Uri.parse(it.url)) }
+        benchmarkRule.measureRepeated {
+            for (request in webRequests) {
+                detector.detect(request)
+            }
+        }
+    }
+
+    @Test
+    fun parsedRequestUrl() {
+        val urls = requests.map { it.url }
+        benchmarkRule.measureRepeated {
+            for (url in urls) {
+                val parsedUrl = ParsedRequestUrl.parse(url)
+                parsedUrl.domain
+                parsedUrl.urlWithoutFragment
+            }
+        }
+    }
+
+    @Test
+    fun serverResponseProcessorInjectJavascript() {
+        val processor = TestServerResponseProcessor()
+        val webView = Mockito.mock(AdblockWebView::class.java)
+        whenever(webView.generateStylesheetForUrl(anyOrNull(), anyOrNull())).thenReturn(true)
+        whenever(webView.getInjectJs()).thenReturn("(function() { /* injected */ })();")
+        val headers = Utils.convertHeaderEntriesToMap(responseHeaders)
+        val url = requests[0].url
+        val buffer = ByteArray(8 * 1024)
+        benchmarkRule.measureRepeated {
+            val response = ServerResponse()
+            response.inputStream = ByteArrayInputStream(page)
+            processor.injectJavascriptWrapper(webView, url, response, HashMap(headers))
+            // the injection is done while WebView reads the content
+            val inputStream = response.inputStream
+            while (inputStream.read(buffer) != -1) {
+                // read all
+            }
+            inputStream.close()
+        }
+    }
+
+    private fun buildSiteKey(verifier: TestSiteKeyVerifier, url: String): String {
+        val keyPairGenerator = KeyPairGenerator.getInstance(JavaSignatureVerifier.KEY_ALGORITHM)
+        keyPairGenerator.initialize(PUBLIC_KEY_SIZE_BITS)
+        val keyPair = keyPairGenerator.generateKeyPair()
+        val signature = Signature.getInstance(JavaSignatureVerifier.SIGNATURE_ALGORITHM)
+        signature.initSign(keyPair.private)
+        signature.update(verifier.buildDataWrapper(url, USER_AGENT))
+        val base64Processor = AndroidBase64Processor()
+        return base64Processor.encodeToString(keyPair.public.encoded) + "_" +
+            base64Processor.encodeToString(signature.sign())
+    }
+
+    @Test
+    fun siteKeyVerifierVerify() {
+        val url = requests[0].url
+        val siteKey = buildSiteKey(TestSiteKeyVerifier(PublicKeyHolderImpl()), url)
+        benchmarkRule.measureRepeated {
+            // a new verifier has empty caches, so the signature is actually verified
+            val verifier = runWithTimingDisabled { TestSiteKeyVerifier(PublicKeyHolderImpl()) }
+            assertTrue(verifier.verify(url, USER_AGENT, siteKey))
+        }
+    }
+
+    @Test
+    fun siteKeyVerifierVerifyCached() {
+        val url = requests[0].url
+        val verifier = TestSiteKeyVerifier(PublicKeyHolderImpl())
+        val siteKey = buildSiteKey(verifier, url)
+        benchmarkRule.measureRepeated {
+            verifier.verify(url, USER_AGENT, siteKey)
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+
+@State(Scope.Thread)
+public class ContentTypeBenchmark
+{
+  private final ContentType[] contentTypes = new ContentType[]
+  {
+    ContentType.SUBDOCUMENT,
+    ContentType.SCRIPT,
+    ContentType.STYLESHEET,
+    ContentType.IMAGE,
+    ContentType.FONT,
+    ContentType.MEDIA
+  };
+
+  @Benchmark
+  public Set<ContentType> maskOf()
+  {
+    return ContentType.maskOf(contentTypes);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.libadblockplus.android.webview.CspScriptSrcRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class CspScriptSrcRewriterBenchmark
+{
+  private static final String POLICY =
+    "default-src 'self'; " +
+    "script-src 'self' https://cdn.news-site.com https://www.googletagmanager.com " +
+    "https://securepubads.g.doubleclick.net https://static.criteo.net; " +
+    "style-src 'self' 'unsafe-inline' https://fonts.googleapis.com; " +
+    "img-src * data:; font-src 'self' https://fonts.gstatic.com; " +
+    "connect-src 'self' https://api.news-site.com; frame-ancestors 'none'";
+
+  // `nonce` is reused, `inline` is kept as is, `insert` gets a new nonce
+  @Param({"nonce", "inline", "insert"})
+  public String policyKind;
+
+  private String header;
+  private CspScriptSrcRewriter rewriter;
+
+  @Setup
+  public void setUp()
+  {
+    if ("nonce".equals(policyKind))
+    {
+      header = POLICY.replace("script-src", "script-src 'nonce-r4nd0m'");
+    }
+    else if ("inline".equals(policyKind))
+    {
+      header = POLICY.replace("script-src", "script-src 'unsafe-inline'");
+    }
+    else
+    {
+      header = POLICY;
+    }
+    rewriter = new CspScriptSrcRewriter();
+  }
+
+  // the sites send the same header for every frame
+  @Benchmark
+  public CspScriptSrcRewriter.Rewrite rewriteCached()
+  {
+    return rewriter.rewrite(header);
+  }
+
+  @Benchmark
+  public CspScriptSrcRewriter.Rewrite rewriteNotCached()
+  {
+    return new CspScriptSrcRewriter(1).rewrite(header);
+  }
+}
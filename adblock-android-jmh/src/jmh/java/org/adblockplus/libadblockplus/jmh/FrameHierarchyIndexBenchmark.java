@@ -0,0 +1,69 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.libadblockplus.android.webview.FrameHierarchyIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The same as AdblockWebView does: every request of the trace is mapped to its referrer
+ * and the referrer chain is resolved for it
+ */
+@State(Scope.Thread)
+public class FrameHierarchyIndexBenchmark
+{
+  private List<RequestTrace.Request> requests;
+  private FrameHierarchyIndex index;
+
+  @Setup
+  public void setUp() throws IOException
+  {
+    requests = RequestTrace.load();
+    index = new FrameHierarchyIndex();
+  }
+
+  private void putAndResolve(final FrameHierarchyIndex index, final Blackhole blackhole)
+  {
+    for (final RequestTrace.Request request : requests)
+    {
+      index.put(request.url, request.referrer);
+      blackhole.consume(index.getReferrerChain(request.url));
+    }
+  }
+
+  // the page is reloaded, so the frames are already indexed
+  @Benchmark
+  public void putAndResolve(final Blackhole blackhole)
+  {
+    putAndResolve(index, blackhole);
+  }
+
+  // the first page load in a new WebView
+  @Benchmark
+  public void putAndResolveColdIndex(final Blackhole blackhole)
+  {
+    putAndResolve(new FrameHierarchyIndex(), blackhole);
+  }
+}
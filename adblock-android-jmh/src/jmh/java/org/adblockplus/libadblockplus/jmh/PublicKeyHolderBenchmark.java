@@ -0,0 +1,87 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.libadblockplus.android.webview.FrameHierarchyIndex;
+import org.adblockplus.libadblockplus.sitekey.BoundedPublicKeyHolder;
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder;
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sitekey is known for the top level document only, so the whole referrer chain
+ * is checked for every request of the trace
+ */
+@State(Scope.Thread)
+public class PublicKeyHolderBenchmark
+{
+  private static final String PUBLIC_KEY = "publicKey";
+
+  @Param({"PublicKeyHolderImpl", "BoundedPublicKeyHolder"})
+  public String implementation;
+
+  private PublicKeyHolder publicKeyHolder;
+  private final List<List<String>> chains = new ArrayList<>();
+  private String topLevelUrl;
+
+  @Setup
+  public void setUp() throws IOException
+  {
+    publicKeyHolder = ("BoundedPublicKeyHolder".equals(implementation)
+      ? new BoundedPublicKeyHolder()
+      : new PublicKeyHolderImpl());
+
+    final List<RequestTrace.Request> requests = RequestTrace.load();
+    final FrameHierarchyIndex index = new FrameHierarchyIndex();
+    for (final RequestTrace.Request request : requests)
+    {
+      index.put(request.url, request.referrer);
+    }
+    for (final RequestTrace.Request request : requests)
+    {
+      chains.add(index.getReferrerChain(request.url));
+    }
+    topLevelUrl = requests.get(0).referrer;
+    publicKeyHolder.put(topLevelUrl, PUBLIC_KEY);
+  }
+
+  @Benchmark
+  public void getAny(final Blackhole blackhole)
+  {
+    for (final List<String> chain : chains)
+    {
+      blackhole.consume(publicKeyHolder.getAny(chain, ""));
+    }
+  }
+
+  // the sitekey is verified again for every page load
+  @Benchmark
+  public void put()
+  {
+    publicKeyHolder.put(topLevelUrl, PUBLIC_KEY);
+  }
+}
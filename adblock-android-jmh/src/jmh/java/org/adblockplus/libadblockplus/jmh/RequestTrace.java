@@ -0,0 +1,88 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.ContentType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests of a news page load recorded with the frames hierarchy
+ * (the same trace the device benchmarks replay)
+ */
+public final class RequestTrace
+{
+  private static final String RESOURCE_NAME = "/request_trace.txt";
+
+  public static final class Request
+  {
+    public final ContentType contentType;
+    public final String url;
+    public final String referrer;
+
+    private Request(final ContentType contentType, final String url, final String referrer)
+    {
+      this.contentType = contentType;
+      this.url = url;
+      this.referrer = referrer;
+    }
+  }
+
+  private RequestTrace()
+  {
+  }
+
+  /**
+   * Load the recorded requests
+   * @return requests in the recorded order
+   * @throws IOException if the trace can't be read
+   */
+  public static List<Request> load() throws IOException
+  {
+    final InputStream is = RequestTrace.class.getResourceAsStream(RESOURCE_NAME);
+    if (is == null)
+    {
+      throw new IOException("No " + RESOURCE_NAME + " resource");
+    }
+    final List<Request> requests = new ArrayList<>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.trim().isEmpty() || line.startsWith("#"))
+        {
+          continue;
+        }
+        final String[] parts = line.split("\t");
+        requests.add(new Request(ContentType.valueOf(parts[0]), parts[1], parts[2]));
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    return requests;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.jmh;
+
+import org.adblockplus.libadblockplus.security.JavaSignatureVerifier;
+import org.adblockplus.libadblockplus.security.SignatureVerificationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+
+@State(Scope.Thread)
+public class SignatureVerifierBenchmark
+{
+  // the same as the sitekeys used by the sites
+  private static final int PUBLIC_KEY_SIZE_BITS = 512;
+  private static final String DATA = "/2021/05/article-title.html\0www.news-site.com\0" +
+    "Mozilla/5.0 (Linux; Android 10; Pixel 3) AppleWebKit/537.36 (KHTML, like Gecko) " +
+    "Chrome/90.0.4430.210 Mobile Safari/537.36";
+
+  private final JavaSignatureVerifier verifier = new JavaSignatureVerifier();
+  private PublicKey publicKey;
+  private byte[] publicKeyBytes;
+  private byte[] data;
+  private byte[] signatureBytes;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException
+  {
+    final KeyPairGenerator keyPairGenerator =
+      KeyPairGenerator.getInstance(JavaSignatureVerifier.KEY_ALGORITHM);
+    keyPairGenerator.initialize(PUBLIC_KEY_SIZE_BITS);
+    final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+    publicKey = keyPair.getPublic();
+    publicKeyBytes = publicKey.getEncoded();
+    data = DATA.getBytes();
+
+    final Signature signature = Signature.getInstance(JavaSignatureVerifier.SIGNATURE_ALGORITHM);
+    signature.initSign(keyPair.getPrivate());
+    signature.update(data);
+    signatureBytes = signature.sign();
+  }
+
+  @Benchmark
+  public PublicKey publicKeyFromDer() throws SignatureVerificationException
+  {
+    return JavaSignatureVerifier.publicKeyFromDer(JavaSignatureVerifier.KEY_ALGORITHM, publicKeyBytes);
+  }
+
+  @Benchmark
+  public boolean verify() throws SignatureVerificationException
+  {
+    return verifier.verify(publicKey, data, signatureBytes);
+  }
+}
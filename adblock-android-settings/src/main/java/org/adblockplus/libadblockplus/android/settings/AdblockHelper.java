@@ -34,12 +34,13 @@ import org.adblockplus.libadblockplus.android.AndroidHttpClientResourceWrapper;
 import org.adblockplus.libadblockplus.android.SingleInstanceEngineProvider;
 import org.adblockplus.libadblockplus.security.JavaSignatureVerifier;
 import org.adblockplus.libadblockplus.security.SignatureVerifier;
+import org.adblockplus.libadblockplus.sitekey.BoundedPublicKeyHolder;
 import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder;
-import org.adblockplus.libadblockplus.sitekey.PublicKeyHolderImpl;
 import org.adblockplus.libadblockplus.sitekey.SiteKeyVerifier;
 import org.adblockplus.libadblockplus.sitekey.SiteKeysConfiguration;
 import org.adblockplus.libadblockplus.util.Base64Processor;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -66,7 +67,7 @@ public class AdblockHelper
   private boolean isInitialized;
   private Context context;
   private Builder factory;
-  private AdblockEngineProvider provider;
+  private SingleInstanceEngineProvider provider;
   private AdblockSettingsStorage storage;
   private SiteKeysConfiguration siteKeysConfiguration;
 
@@ -228,7 +229,7 @@ public class AdblockHelper
   private void initSiteKeysConfiguration()
   {
     final SignatureVerifier signatureVerifier = new JavaSignatureVerifier();
-    final PublicKeyHolder publicKeyHolder = new PublicKeyHolderImpl();
+    final PublicKeyHolder publicKeyHolder = new BoundedPublicKeyHolder();
     final HttpClient httpClient = new AndroidHttpClient(true);
     final Base64Processor base64Processor = new AndroidBase64Processor();
     final SiteKeyVerifier siteKeyVerifier =
@@ -292,6 +293,17 @@ public class AdblockHelper
     return preloadSubscriptions(PRELOAD_PREFERENCE_NAME, map);
   }
 
+  /**
+   * Load the snapshot of the host-anchored filters before creating the engine, so that
+   * AdblockWebView can block the requests with it instead of waiting for the engine to be created
+   * @return this (for method chaining)
+   */
+  public AdblockHelper useFilterIndexSnapshot()
+  {
+    provider.useFilterIndexSnapshot(new File(factory.getBasePath()));
+    return this;
+  }
+
   /**
    * Add "engine created" even listener
    * @param listener Listener
@@ -17,18 +17,40 @@
 
 {
    {{DEBUG}} console.log('starting injecting eh css rules for ' + document.location.href);
-   var styleSheet = {{BRIDGE}}.getElemhideStyleSheet(document.location.href);
-   {{DEBUG}} console.log('stylesheet length: ' + styleSheet.length);
-   if (styleSheet)
+   var head = document.getElementsByTagName("head")[0];
+   var appendStyleSheet = function(styleSheet)
    {
-      var head = document.getElementsByTagName("head")[0];
       var style = document.createElement("style");
       head.appendChild(style);
       style.textContent = styleSheet;
+   };
+
+   // the generic part is the same for most of the pages, so it's loaded as a stylesheet
+   // served from memory instead of being passed through the bridge for every page
+   var genericStyleSheetPath = {{BRIDGE}}.getElemhideGenericStyleSheetPath(document.location.href);
+   if (genericStyleSheetPath)
+   {
+      var link = document.createElement("link");
+      link.rel = "stylesheet";
+      link.onerror = function()
+      {
+         {{DEBUG}} console.log('failed to load generic css rules, requesting them from the bridge');
+         appendStyleSheet({{BRIDGE}}.getElemhideGenericStyleSheet(document.location.href));
+      };
+      link.href = genericStyleSheetPath;
+      head.appendChild(link);
+   }
+
+   // the specific part is usually small
+   var styleSheet = {{BRIDGE}}.getElemhideStyleSheet(document.location.href);
+   {{DEBUG}} console.log('stylesheet length: ' + styleSheet.length + ' specific');
+   if (styleSheet)
+   {
+      appendStyleSheet(styleSheet);
       {{DEBUG}} console.log('finished injecting css rules');
    }
    else
    {
-      {{DEBUG}} console.log('stylesheet is empty, skipping injection');
+      {{DEBUG}} console.log('specific stylesheet is empty, skipping injection');
    }
 }
\ No newline at end of file
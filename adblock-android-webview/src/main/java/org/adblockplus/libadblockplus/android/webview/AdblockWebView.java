@@ -40,22 +40,30 @@ import android.webkit.WebViewClient;
 import org.adblockplus.AdblockEngine;
 import org.adblockplus.AdblockEngineSettings;
 import org.adblockplus.ContentType;
+import org.adblockplus.ElementHidingStyleSheet;
 import org.adblockplus.EmulationSelector;
+import org.adblockplus.EvaluationResult;
+import org.adblockplus.Filter;
 import org.adblockplus.MatchesResult;
 import org.adblockplus.Subscription;
 import org.adblockplus.libadblockplus.HttpClient;
 import org.adblockplus.libadblockplus.android.AdblockEngineProvider;
+import org.adblockplus.libadblockplus.android.FilterIndexSnapshot;
+import org.adblockplus.libadblockplus.android.ParsedRequestUrl;
 import org.adblockplus.libadblockplus.android.SingleInstanceEngineProvider;
 import org.adblockplus.libadblockplus.android.Utils;
 import org.adblockplus.libadblockplus.android.webview.content_type.ContentTypeDetector;
 import org.adblockplus.libadblockplus.android.webview.content_type.HeadersContentTypeDetector;
 import org.adblockplus.libadblockplus.android.webview.content_type.OrderedContentTypeDetector;
 import org.adblockplus.libadblockplus.android.webview.content_type.UrlFileExtensionTypeDetector;
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder;
 import org.adblockplus.libadblockplus.sitekey.PublicKeyHolderImpl;
 import org.adblockplus.libadblockplus.sitekey.SiteKeysConfiguration;
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -63,6 +71,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -86,9 +97,25 @@ public class AdblockWebView extends WebView
   private static final String BRIDGE = "jsBridge";
   private static final String EMPTY_ELEMHIDE_STRING = "";
   private static final String EMPTY_ELEMHIDE_ARRAY_STRING = "[]";
-  private static final String EMPTY_PARENT = "";
   private static final String EMPTY_SITEKEY = "";
 
+  /*
+   * Sets up the main frames loaded while the engine is being created. The tasks of all the
+   * instances share one thread: they wait for the same engine and then take a few milliseconds,
+   * and each instance has at most one task queued (see `pendingMainFrameSetUp`).
+   */
+  private static final ExecutorService MAIN_FRAME_SET_UP_EXECUTOR =
+    Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "AdblockWebView main frame set up");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
   private OrderedContentTypeDetector contentTypeDetector;
   private final AtomicReference<AdblockEngineProvider> providerReference = new AtomicReference<>();
   private Integer loadError;
@@ -96,7 +123,7 @@ public class AdblockWebView extends WebView
   private ProxyWebViewClient intWebViewClient;
 
   /*
-   * url2Referrer map stores referrer mappings for the urls: url => its parent (referrer).
+   * frameHierarchyIndex stores referrer mappings for the urls: url => its parent (referrer).
    * This data is critical for ABP allowlisting feature (blocked requests don't have children
    * subrequests hence this is logically important only for allowlisting features).
    * Because of a limitations of the WebView API we are populating this collection only based on
@@ -104,31 +131,35 @@ public class AdblockWebView extends WebView
    * fact that "Referrer-Policy" is set to "no-referrer" value.
    *
    * Lifecycle:
-   * url2Referrer data is cleared on the following situations:
+   * frameHierarchyIndex data is cleared on the following situations:
    *  - onPageStarted callback is called
    *  - goBack(), goForward(), reload(), load() WebView API methods are called.
    *
-   *  We are adding entries to url2Referrer in the shouldAbpBlockRequest() method, and in the same
-   *  method url2Referrer is traversed to build frames hierarchy for the request. Here are important
+   *  We are adding entries to frameHierarchyIndex in the shouldAbpBlockRequest() method, and in the same
+   *  method frameHierarchyIndex is traversed to build frames hierarchy for the request. Here are important
    *  things to remember:
    *  - For requests of type ContentType.SUBDOCUMENT we are adding two mappings:
    *  requestUrl => referrer, Utils.getOrigin(url) => referrer (see DP-1621)
    *  - As mentioned before, when "Referer" HTTP request header was missing for some request, we
    *  will not be able to build a complete frames hierarchy. To mitigate this problem slightly, when
-   *  reading url2Referrer to build frames hierarchy we are making sure that root (navigation url)
+   *  reading frameHierarchyIndex to build frames hierarchy we are making sure that root (navigation url)
    *  is added to the frames hierarchy (see DP-1763)
    *  - When reading entries we are making sure that there is no loop (see DP-184).
+   *  - The index is bounded, the least recently used mappings are evicted on long-living pages.
    */
-  private final Map<String, String> url2Referrer
-    = Collections.synchronizedMap(new HashMap<String, String>());
+  private final FrameHierarchyIndex frameHierarchyIndex = new FrameHierarchyIndex();
   /*
    * Map with data: url => <elemhide selectors, elemhideemu selectors>.
    * This data is collected only for main frame and subframes.
    * Map is cleared when we detect a new page is being loaded or when ABP is disabled.
    */
-  private final Map<String, Pair<String, String>> url2Stylesheets
-    = Collections.synchronizedMap(new HashMap<String, Pair<String, String>>());
+  // url => (elemhide stylesheet, elemhideemu selectors)
+  private final Map<String, Pair<ElementHidingStyleSheet, String>> url2Stylesheets
+    = Collections.synchronizedMap(new HashMap<String, Pair<ElementHidingStyleSheet, String>>());
   private final AtomicReference<String> navigationUrl = new AtomicReference<>();
+  // the latest main frame to set up once the engine is created, `null` if no task is queued
+  private final AtomicReference<ParsedRequestUrl> pendingMainFrameSetUp = new AtomicReference<>();
+  private volatile ParsedRequestUrl parsedNavigationUrl;
   private String injectJs;
   private String elemhideBlockedJs;
   private final AtomicReference<OptionalBoolean> adblockEnabled =
@@ -136,7 +167,14 @@ public class AdblockWebView extends WebView
   private boolean loading;
   private String elementsHiddenFlag;
   private String sitekeyExtractedFlag;
+  private GenericStyleSheetResource genericStyleSheetResource;
   private SiteKeyExtractor siteKeyExtractor;
+  /*
+   * Filtering decisions for subresource requests, see RequestDecisionCache.
+   * Cleared when filtering settings are changed and when frameHierarchyIndex is cleared (as the frames
+   * hierarchy is a part of the key and subscriptions can be updated by the engine silently).
+   */
+  private final RequestDecisionCache requestDecisionCache = new RequestDecisionCache();
 
   /**
    * Optional boolean value.
@@ -321,11 +359,34 @@ public class AdblockWebView extends WebView
             }
           });
         }
+        clearRequestDecisions();
       }
 
       @Override
       public void onAcceptableAdsEnableStateChanged(final boolean isEnabled)
       {
+        clearRequestDecisions();
+      }
+    };
+  private final AdblockEngineSettings.FiltersChangedListener filtersChangedListener =
+    new AdblockEngineSettings.FiltersChangedListener()
+    {
+      @Override
+      public void onFilterEvent(
+        final Map<Filter, AdblockEngineSettings.FiltersChangedListener.FilterEvent> filterToEventMap)
+      {
+        clearRequestDecisions();
+      }
+    };
+  private final AdblockEngineSettings.SubscriptionsChangedListener subscriptionsChangedListener =
+    new AdblockEngineSettings.SubscriptionsChangedListener()
+    {
+      @Override
+      public void onSubscriptionEvent(
+        final Map<Subscription, AdblockEngineSettings.SubscriptionsChangedListener.SubscriptionEvent>
+          subscriptionToEventMap)
+      {
+        clearRequestDecisions();
       }
     };
   private final AdblockEngineProvider.EngineCreatedListener engineCreatedCb
@@ -337,7 +398,7 @@ public class AdblockWebView extends WebView
       final AdblockEngineSettings adblockEngineSettings = adblockEngine.settings();
       adblockEnabled.set(from(adblockEngineSettings.isEnabled()));
       Timber.d("Adblock Engine created, enable status is %s", adblockEnabled.get());
-      adblockEngineSettings.addEnableStateChangedListener(enableStateChangedListener);
+      addSettingsListeners(adblockEngineSettings);
     }
   };
   private final AdblockEngineProvider.EngineDisposedListener engineDisposedCb
@@ -347,9 +408,26 @@ public class AdblockWebView extends WebView
     public void onAdblockEngineDisposed()
     {
       adblockEnabled.set(OptionalBoolean.UNDEFINED);
+      clearRequestDecisions();
     }
   };
 
+  private void addSettingsListeners(final AdblockEngineSettings adblockEngineSettings)
+  {
+    adblockEngineSettings
+      .addEnableStateChangedListener(enableStateChangedListener)
+      .addFiltersChangedListener(filtersChangedListener)
+      .addSubscriptionsChangedListener(subscriptionsChangedListener);
+  }
+
+  private void removeSettingsListeners(final AdblockEngineSettings adblockEngineSettings)
+  {
+    adblockEngineSettings
+      .removeEnableStateChangedListener(enableStateChangedListener)
+      .removeFiltersChangedListener(filtersChangedListener)
+      .removeSubscriptionsChangedListener(subscriptionsChangedListener);
+  }
+
   public String getNavigationUrl()
   {
     return navigationUrl.get();
@@ -427,6 +505,27 @@ public class AdblockWebView extends WebView
     intWebViewClient.setExtWebViewClient(client);
   }
 
+  /**
+   * Returns the cache of the filtering decisions made for subresource requests,
+   * eg. to read its hit/miss counters.
+   *
+   * @return request decision cache
+   */
+  public RequestDecisionCache getRequestDecisionCache()
+  {
+    return requestDecisionCache;
+  }
+
+  /**
+   * Returns the index of the frames hierarchy, eg. to read its memory footprint.
+   *
+   * @return frames hierarchy index
+   */
+  public FrameHierarchyIndex getFrameHierarchyIndex()
+  {
+    return frameHierarchyIndex;
+  }
+
   @TestOnly
   public SiteKeyExtractor getSiteKeyExtractor()
   {
@@ -512,7 +611,7 @@ public class AdblockWebView extends WebView
           {
             adblockEnabled.set(from(getProvider().getEngine().settings().isEnabled()));
             Timber.d("Adblock Engine already created, enable status is %s", adblockEnabled);
-            getProvider().getEngine().settings().addEnableStateChangedListener(enableStateChangedListener);
+            addSettingsListeners(getProvider().getEngine().settings());
           }
           else
           {
@@ -586,7 +685,14 @@ public class AdblockWebView extends WebView
   private void clearReferrers()
   {
     Timber.d("Clearing referrers");
-    url2Referrer.clear();
+    frameHierarchyIndex.clear();
+    clearRequestDecisions();
+  }
+
+  private void clearRequestDecisions()
+  {
+    Timber.d("Clearing request decisions");
+    requestDecisionCache.clear();
   }
 
   private void clearStylesheets()
@@ -707,7 +813,7 @@ public class AdblockWebView extends WebView
       super.onReceivedError(view, request, error);
     }
 
-    private AbpShouldBlockResult notifyAndReturnBlockingResponse(final String requestUrl,
+    private AbpShouldBlockResult notifyAndReturnBlockingResponse(final ParsedRequestUrl requestUrl,
                                                                  final List<String> parentFrameUrls,
                                                                  final ContentType contentType)
     {
@@ -715,21 +821,122 @@ public class AdblockWebView extends WebView
       {
         elemhideBlockedResource(requestUrl);
       }
-      notifyResourceBlocked(new EventsListener.BlockedResourceInfo(requestUrl,
+      notifyResourceBlocked(new EventsListener.BlockedResourceInfo(requestUrl.getUrl(),
         parentFrameUrls, contentType));
       return AbpShouldBlockResult.BLOCK_LOAD;
     }
 
-    private String getFirstParent(final List<String> referrerChain)
+    /**
+     * Evaluates the filtering decision for a subresource request (document allowlisting,
+     * genericblock allowlisting, filter allowlisting and blocking filters) in a single call into
+     * the engine. The decisions are cached in {@link #requestDecisionCache}.
+     */
+    private RequestDecisionCache.Decision evaluateRequest(final AdblockEngine engine,
+                                                          final String url,
+                                                          final ContentType contentType,
+                                                          final List<String> referrerChain,
+                                                          final String siteKey)
+    {
+      final RequestDecisionCache.Key key =
+        requestDecisionCache.newKey(url, contentType, referrerChain, siteKey);
+      final RequestDecisionCache.Decision cachedDecision = requestDecisionCache.get(key);
+      if (cachedDecision != null)
+      {
+        return cachedDecision;
+      }
+
+      final EvaluationResult result = engine.evaluateRequest(url,
+        contentType.mask, referrerChain, siteKey);
+      final RequestDecisionCache.Decision decision;
+      switch (result.reason)
+      {
+        case DOCUMENT_ALLOWLISTED:
+          decision = RequestDecisionCache.Decision.ALLOWLISTED_DOCUMENT;
+          break;
+
+        case FILTER_ALLOWLISTED:
+          decision = RequestDecisionCache.Decision.ALLOWLISTED_FILTER;
+          break;
+
+        case BLOCKING_FILTER:
+          decision = RequestDecisionCache.Decision.BLOCKED;
+          break;
+
+        case NOT_ENABLED:
+          // the engine got disabled in the meantime, don't remember that
+          return RequestDecisionCache.Decision.NOT_FOUND;
+
+        default:
+          decision = RequestDecisionCache.Decision.NOT_FOUND;
+          break;
+      }
+
+      requestDecisionCache.put(key, decision);
+      return decision;
+    }
+
+    /**
+     * Matches the request with the snapshot filters only, while the engine is being created.
+     * The other filters and element hiding are applied once the engine is created, so the main
+     * frame set up is deferred until then. Must not be used if the sitekeys are checked.
+     */
+    private AbpShouldBlockResult shouldAbpBlockRequestPartially(final FilterIndexSnapshot snapshot,
+                                                                final WebResourceRequest request,
+                                                                final ParsedRequestUrl parsedUrl,
+                                                                final String referrer)
     {
-      return (referrerChain == null || referrerChain.size() == 0) ? EMPTY_PARENT : referrerChain.get(0);
+      final String url = parsedUrl.getUrl();
+      if (adblockEnabled.get() == OptionalBoolean.FALSE)
+      {
+        Timber.d("adblockEnabled = false");
+        return AbpShouldBlockResult.NOT_ENABLED;
+      }
+
+      if (request.isForMainFrame())
+      {
+        // never blocking main frame requests, just subrequests
+        Timber.w("%s is main frame, allow loading", url);
+        clearStylesheets();
+        setUpMainFrameWhenEngineReady(parsedUrl);
+        return AbpShouldBlockResult.ALLOW_LOAD_NO_SITEKEY_CHECK;
+      }
+
+      final String urlWithoutFragment = parsedUrl.getUrlWithoutFragment();
+      if (referrer != null && !url.equals(referrer))
+      {
+        frameHierarchyIndex.put(urlWithoutFragment, referrer);
+      }
+      final List<String> referrerChain = buildFramesHierarchy(urlWithoutFragment);
+
+      switch (snapshot.matches(url, referrerChain))
+      {
+        case ALLOWLISTED:
+          Timber.w("%s document is allowlisted by the filter index snapshot, allow loading", url);
+          notifyResourceAllowlisted(new EventsListener.AllowlistedResourceInfo(
+            url, referrerChain, EventsListener.AllowlistReason.DOCUMENT));
+          return AbpShouldBlockResult.ALLOW_LOAD_NO_SITEKEY_CHECK;
+
+        case BLOCKED:
+          Timber.i("Blocked loading %s with the filter index snapshot", url);
+          ContentType contentType = ensureContentTypeDetectorCreatedAndGet().detect(request);
+          if (contentType == null)
+          {
+            contentType = ContentType.OTHER;
+          }
+          return notifyAndReturnBlockingResponse(parsedUrl, referrerChain, contentType);
+
+        default:
+          Timber.d("Allowed loading %s with the filter index snapshot", url);
+          return AbpShouldBlockResult.ALLOW_LOAD_NO_SITEKEY_CHECK;
+      }
     }
 
-    private AbpShouldBlockResult shouldAbpBlockRequest(final WebResourceRequest request)
+    private AbpShouldBlockResult shouldAbpBlockRequest(final WebResourceRequest request,
+                                                       final ParsedRequestUrl parsedUrl)
     {
       // here we just trying to fill url -> referrer map
-      final String url = request.getUrl().toString();
-      final String urlWithoutFragment = Utils.getUrlWithoutFragment(url);
+      final String url = parsedUrl.getUrl();
+      final String urlWithoutFragment = parsedUrl.getUrlWithoutFragment();
 
       final boolean isMainFrame = request.isForMainFrame();
       boolean isAllowlisted = false;
@@ -738,39 +945,27 @@ public class AdblockWebView extends WebView
 
       final String referrer = request.getRequestHeaders().get(HttpClient.HEADER_REFERRER);
 
-      final Lock lock = getProvider().getReadEngineLock();
-      lock.lock();
-
-      try
+      // don't stall the page load while the engine is being created if the snapshot is available
+      // (it's not available if Acceptable Ads are enabled as the snapshot can't check the sitekeys)
+      final FilterIndexSnapshot filterIndexSnapshot = isSitekeyCheckForced()
+        ? null : getProvider().getFilterIndexSnapshot();
+      if (filterIndexSnapshot != null)
       {
-        // if dispose() was invoke, but the page is still loading then just let it go
-        boolean isDisposed = false;
-        if (getProvider().getCounter() == 0)
-        {
-          isDisposed = true;
-        }
-        else
-        {
-          lock.unlock();
-          getProvider().waitForReady();
-          lock.lock();
-          if (getProvider().getCounter() == 0)
-          {
-            isDisposed = true;
-          }
-        }
+        return shouldAbpBlockRequestPartially(filterIndexSnapshot, request, parsedUrl, referrer);
+      }
 
-        final AdblockEngine engine = getProvider().getEngine();
+      // if dispose() was invoke, but the page is still loading then just let it go
+      final AdblockEngineProvider.EngineLease lease = acquireEngineLease();
+      if (lease == null)
+      {
+        Timber.e("AdblockEngine already disposed");
+        return AbpShouldBlockResult.NOT_ENABLED;
+      }
 
-        // Apart from checking counter (getProvider().getCounter()) we also need to make sure
-        // that getProvider().getEngine() is already set.
-        // We check that under getProvider().getReadEngineLock(); so we are sure it will not be
-        // changed after this check.
-        if (isDisposed || engine == null)
-        {
-          Timber.e("AdblockEngine already disposed");
-          return AbpShouldBlockResult.NOT_ENABLED;
-        }
+      try
+      {
+        // The engine can't be disposed until the lease is released
+        final AdblockEngine engine = lease.getEngine();
 
         if (adblockEnabled.get() == OptionalBoolean.UNDEFINED)
         {
@@ -799,11 +994,11 @@ public class AdblockWebView extends WebView
           Timber.d("Header referrer for %s is %s", url, referrer);
           if (!url.equals(referrer))
           {
-            url2Referrer.put(urlWithoutFragment, referrer);
+            frameHierarchyIndex.put(urlWithoutFragment, referrer);
           }
           else
           {
-            Timber.w("Header referrer value is the same as url, skipping url2Referrer.put()");
+            Timber.w("Header referrer value is the same as url, skipping frameHierarchyIndex.put()");
           }
         }
         else
@@ -811,19 +1006,7 @@ public class AdblockWebView extends WebView
           Timber.w("No referrer header for %s", url);
         }
 
-        sitekeyCheckEnabled = engine.settings().isAcceptableAdsEnabled() || getJsInIframesEnabled();
-        if (!sitekeyCheckEnabled && BuildConfig.DEBUG)
-        {
-          final List<Subscription> listedSubscriptions = engine.settings().getListedSubscriptions();
-          for (Subscription subscription : listedSubscriptions)
-          {
-            if (subscription.url.contains("abp-testcase-subscription.txt"))
-            {
-              sitekeyCheckEnabled = true;
-              break;
-            }
-          }
-        }
+        sitekeyCheckEnabled = isSitekeyCheckEnabled(engine);
         if (isMainFrame)
         {
           // never blocking main frame requests, just subrequests
@@ -832,7 +1015,7 @@ public class AdblockWebView extends WebView
           // For a main frame we don't need to check result of generateStylesheetForUrl as we still
           // need to inject js for a site key (site key check is disabled in inject.js for subframes).
           clearStylesheets();
-          generateStylesheetForUrl(urlWithoutFragment, true);
+          generateStylesheetForUrl(parsedUrl, true);
         }
         else
         {
@@ -840,10 +1023,7 @@ public class AdblockWebView extends WebView
           final List<String> referrerChain = buildFramesHierarchy(urlWithoutFragment);
 
           final SiteKeysConfiguration siteKeysConfiguration = getSiteKeysConfiguration();
-          String siteKey = (siteKeysConfiguration != null
-            ? PublicKeyHolderImpl.stripPadding(siteKeysConfiguration.getPublicKeyHolder()
-            .getAny(referrerChain, EMPTY_SITEKEY))
-            : null);
+          String siteKey = getSiteKey(siteKeysConfiguration, referrerChain);
 
           // determine the content
           ContentType contentType =
@@ -862,7 +1042,7 @@ public class AdblockWebView extends WebView
             // See https://jira.eyeo.com/browse/DP-1621
             try
             {
-              url2Referrer.put(Utils.getOrigin(url), referrer);
+              frameHierarchyIndex.put(parsedUrl.getOrigin(), referrer);
             }
             catch (final MalformedURLException | IllegalArgumentException e)
             {
@@ -871,9 +1051,9 @@ public class AdblockWebView extends WebView
           }
 
           // allowlisted
-          if (engine.isContentAllowlisted(url,
-            ContentType.maskOf(ContentType.DOCUMENT), referrerChain,
-            siteKey))
+          RequestDecisionCache.Decision decision =
+            evaluateRequest(engine, url, contentType, referrerChain, siteKey);
+          if (decision == RequestDecisionCache.Decision.ALLOWLISTED_DOCUMENT)
           {
             isAllowlisted = true;
             Timber.w("%s document is allowlisted, allow loading", url);
@@ -888,47 +1068,31 @@ public class AdblockWebView extends WebView
               canContainSitekey = true;
             }
 
-            boolean specificOnly = engine.isContentAllowlisted(url,
-              ContentType.maskOf(ContentType.GENERICBLOCK),
-              referrerChain, siteKey);
-            if (specificOnly)
-            {
-              Timber.w("Found genericblock filter for url %s", url);
-            }
-
-            // check if we should block
-            MatchesResult result =
-              engine.isContentAllowlisted(url, ContentType.maskOf(contentType),
-                referrerChain, siteKey) ? MatchesResult.ALLOWLISTED :
-                engine.matches(url, ContentType.maskOf(contentType),
-                  getFirstParent(referrerChain), siteKey, specificOnly);
-
-            if (result == MatchesResult.BLOCKED)
+            if (decision.getResult() == MatchesResult.BLOCKED)
             {
               Timber.i("Attempting to block request with AA on the first try: %s", url);
 
-              // Need to run `waitForSitekeyCheck` to hold the actual check until
-              // the sitekey is either obtained or not present
-              final boolean waitedForSitekey = siteKeyExtractor.waitForSitekeyCheck(url, isMainFrame);
+              // Need to hold the actual check until the sitekey is either obtained
+              // (and verified) or not present. It's the only place the request is held.
+              // If the sitekey for the frames hierarchy is already resolved there is nothing
+              // to wait for, so the request is not held until the whole page reports back
+              final boolean waitedForSitekey = (siteKey == null || siteKey.isEmpty())
+                && waitForSiteKey(siteKeysConfiguration, url, isMainFrame, referrerChain);
               if (waitedForSitekey)
               {
                 // Request was held, start over to see if it's now allowlisted
                 Timber.i("Restarting the check having waited for the sitekey: %s", url);
 
-                siteKey = (siteKeysConfiguration != null
-                  ? PublicKeyHolderImpl.stripPadding(siteKeysConfiguration.getPublicKeyHolder()
-                  .getAny(referrerChain, EMPTY_SITEKEY))
-                  : null);
+                siteKey = getSiteKey(siteKeysConfiguration, referrerChain);
 
                 if (siteKey == null || siteKey.isEmpty())
                 {
                   Timber.i("SiteKey is not found, blocking the resource %s", url);
-                  return notifyAndReturnBlockingResponse(url, referrerChain, contentType);
+                  return notifyAndReturnBlockingResponse(parsedUrl, referrerChain, contentType);
                 }
 
-                if (engine.isContentAllowlisted(url,
-                  ContentType.maskOf(ContentType.DOCUMENT),
-                  referrerChain, siteKey))
+                decision = evaluateRequest(engine, url, contentType, referrerChain, siteKey);
+                if (decision == RequestDecisionCache.Decision.ALLOWLISTED_DOCUMENT)
                 {
                   isAllowlisted = true;
                   Timber.w("%s document is allowlisted, allow loading", url);
@@ -937,28 +1101,13 @@ public class AdblockWebView extends WebView
                 }
                 else
                 {
-                  specificOnly = engine.isContentAllowlisted(url,
-                    ContentType.maskOf(ContentType.GENERICBLOCK),
-                    referrerChain, siteKey);
-                  if (specificOnly)
-                  {
-                    Timber.w("Found genericblock filter for url %s", url);
-                  }
-
-                  // check if we should block
-                  result =
-                    engine.isContentAllowlisted(url, ContentType.maskOf(contentType),
-                      referrerChain, siteKey) ? MatchesResult.ALLOWLISTED :
-                      engine.matches(url, ContentType.maskOf(contentType),
-                        getFirstParent(referrerChain), siteKey, specificOnly);
-
-                  if (result == MatchesResult.BLOCKED)
+                  if (decision.getResult() == MatchesResult.BLOCKED)
                   {
                     Timber.i("Blocked loading %s with sitekeyCheckEnabled %s", url,
                       sitekeyCheckEnabled ? "enabled" : "disabled");
-                    return notifyAndReturnBlockingResponse(url, referrerChain, contentType);
+                    return notifyAndReturnBlockingResponse(parsedUrl, referrerChain, contentType);
                   }
-                  if (result == MatchesResult.ALLOWLISTED)
+                  if (decision.getResult() == MatchesResult.ALLOWLISTED)
                   {
                     isAllowlisted = true;
                     Timber.w("%s is allowlisted in matches()", url);
@@ -975,10 +1124,10 @@ public class AdblockWebView extends WebView
               {
                 Timber.i("Blocked loading %s with sitekeyCheckEnabled %s", url,
                   sitekeyCheckEnabled ? "enabled" : "disabled");
-                return notifyAndReturnBlockingResponse(url, referrerChain, contentType);
+                return notifyAndReturnBlockingResponse(parsedUrl, referrerChain, contentType);
               }
             }
-            else if (result == MatchesResult.ALLOWLISTED)
+            else if (decision.getResult() == MatchesResult.ALLOWLISTED)
             {
               isAllowlisted = true;
               Timber.w("%s is allowlisted in matches()", url);
@@ -991,7 +1140,7 @@ public class AdblockWebView extends WebView
       }
       finally
       {
-        lock.unlock();
+        lease.release();
       }
 
       // we rely on calling `fetchUrlAndCheckSiteKey` later in `shouldInterceptRequest`, now we
@@ -1015,11 +1164,19 @@ public class AdblockWebView extends WebView
     {
       final Uri url = request.getUrl();
       final String urlString = url.toString();
+      // parsed once for the whole interception path
+      final ParsedRequestUrl parsedUrl = ParsedRequestUrl.parse(urlString);
+
+      final String path = parsedUrl.getPath();
+      if (genericStyleSheetResource.isResourcePath(path))
+      {
+        return getGenericStyleSheetResponse(path);
+      }
 
       if (request.isForMainFrame())
       {
         Timber.d("Updating navigationUrl to `%s`", urlString);
-        navigationUrl.set(Utils.getUrlWithoutFragment(urlString));
+        navigationUrl.set(parsedUrl.getUrlWithoutFragment());
         if (BuildConfig.DEBUG)
         {
           if (RequestInterceptor.isBlockedByHandlingDebugURLQuery(view, getProvider(), url))
@@ -1028,7 +1185,7 @@ public class AdblockWebView extends WebView
           }
         }
       }
-      final AbpShouldBlockResult abpBlockResult = shouldAbpBlockRequest(request);
+      final AbpShouldBlockResult abpBlockResult = shouldAbpBlockRequest(request, parsedUrl);
 
       // if AdblockEngine is unavailable or not enabled, just let it go (and skip sitekey check)
       if (AbpShouldBlockResult.NOT_ENABLED.equals(abpBlockResult))
@@ -1060,10 +1217,11 @@ public class AdblockWebView extends WebView
           if (!AbpShouldBlockResult.ALLOW_LOAD_NO_SITEKEY_CHECK.equals(abpBlockResult))
           {
             Timber.d("Verifying site keys with external shouldInterceptRequest response");
-            getSiteKeysConfiguration().getSiteKeyVerifier().verifyInHeaders(urlString,
+            // the requests of the frame wait for the pending verification only
+            getSiteKeysConfiguration().getSiteKeyVerifier().verifyInHeadersAsync(urlString,
               requestHeaders,
               externalResponse.getResponseHeaders());
-            Timber.d("Finished verifying, returning external response and stop");
+            Timber.d("Started verifying, returning external response and stop");
           }
           else
           {
@@ -1090,19 +1248,52 @@ public class AdblockWebView extends WebView
     }
   }
 
-  private List<String> buildFramesHierarchy(final String urlWithoutFragment)
+  private static String getSiteKey(final SiteKeysConfiguration siteKeysConfiguration,
+                                   final List<String> referrerChain)
   {
-    final List<String> referrerChain = new ArrayList<>();
-    String parent = urlWithoutFragment;
-    while ((parent = url2Referrer.get(parent)) != null)
+    if (siteKeysConfiguration == null)
     {
-      if (referrerChain.contains(parent))
-      {
-        Timber.w("Detected referrer loop, finished creating referrers list");
-        break;
-      }
-      referrerChain.add(parent);
+      return null;
     }
+    final PublicKeyHolder publicKeyHolder = siteKeysConfiguration.getPublicKeyHolder();
+    return PublicKeyHolderImpl.stripPadding(publicKeyHolder.getAny(referrerChain, EMPTY_SITEKEY));
+  }
+
+  /*
+   * Holds the request until the sitekey is extracted (or found missing) and the pending sitekey
+   * verifications of the frames hierarchy only (not of the whole page) are finished
+   * @return `true` if the request was held
+   */
+  private boolean waitForSiteKey(final SiteKeysConfiguration siteKeysConfiguration,
+                                 final String url,
+                                 final boolean isMainFrame,
+                                 final List<String> referrerChain)
+  {
+    boolean waited = siteKeyExtractor.waitForSitekeyCheck(url, isMainFrame);
+    if (siteKeysConfiguration != null)
+    {
+      // the sitekey can be extracted already and still be verified
+      waited |= siteKeysConfiguration.getPublicKeyHolder().waitForPending(referrerChain,
+        BaseSiteKeyExtractor.RESOURCE_HOLD_MAX_TIME_MS);
+    }
+    return waited;
+  }
+
+  // the navigation url is parsed once for all the requests of the page
+  private String getNavigationUrlDomain(final String navigationUrlLocal)
+  {
+    ParsedRequestUrl parsedNavigationUrl = this.parsedNavigationUrl;
+    if (parsedNavigationUrl == null || !parsedNavigationUrl.getUrl().equals(navigationUrlLocal))
+    {
+      parsedNavigationUrl = ParsedRequestUrl.parse(navigationUrlLocal);
+      this.parsedNavigationUrl = parsedNavigationUrl;
+    }
+    return parsedNavigationUrl.getDomain();
+  }
+
+  private List<String> buildFramesHierarchy(final String urlWithoutFragment)
+  {
+    final List<String> referrerChain = frameHierarchyIndex.getReferrerChain(urlWithoutFragment);
 
     // Here we discover if referrerChain is empty or incomplete (i.e. does not contain the
     // navigation url) so we add at least the top referrer which is navigationUrl.
@@ -1111,7 +1302,7 @@ public class AdblockWebView extends WebView
     {
       return referrerChain; //early exit
     }
-    final String navigationUrlDomain = Utils.getDomain(navigationUrlLocal);
+    final String navigationUrlDomain = getNavigationUrlDomain(navigationUrlLocal);
     if (TextUtils.isEmpty(navigationUrlDomain))
     {
       Timber.e("buildFramesHierarchy() failed to obtain a domain from url " + navigationUrlLocal);
@@ -1122,7 +1313,8 @@ public class AdblockWebView extends WebView
     {
       // Let's check if we already have a top level domain same as navigationUrlDomain, and if
       // not then add a top level parent.
-      final String currentTopLevelDomain = Utils.getDomain(referrerChain.get(referrerChain.size() - 1));
+      final String currentTopLevelDomain =
+        ParsedRequestUrl.parse(referrerChain.get(referrerChain.size() - 1)).getDomain();
       if (!navigationUrlDomain.equals(currentTopLevelDomain))
       {
         canAddTopLevelParent = true;
@@ -1189,12 +1381,13 @@ public class AdblockWebView extends WebView
         contentType == ContentType.SUBDOCUMENT;
   }
 
-  private void elemhideBlockedResource(final String url)
+  private void elemhideBlockedResource(final ParsedRequestUrl parsedUrl)
   {
+    final String url = parsedUrl.getUrl();
     String filenameWithQuery;
     try
     {
-      filenameWithQuery = Utils.extractPathWithQuery(url);
+      filenameWithQuery = parsedUrl.getPathWithQuery();
       if (filenameWithQuery.startsWith("/"))
       {
         filenameWithQuery = filenameWithQuery.substring(1);
@@ -1243,6 +1436,8 @@ public class AdblockWebView extends WebView
     final Random random = new Random();
     elementsHiddenFlag = "abp" + Math.abs(random.nextLong());
     sitekeyExtractedFlag = "abp" + Math.abs(random.nextLong());
+    genericStyleSheetResource = new GenericStyleSheetResource(
+      "/abp" + Math.abs(random.nextLong()) + "/generic-");
   }
 
   private void ensureProvider()
@@ -1410,6 +1605,12 @@ public class AdblockWebView extends WebView
 
   public boolean generateStylesheetForUrl(final String urlWithoutFragment, final boolean isMainFrame)
   {
+    return generateStylesheetForUrl(ParsedRequestUrl.parse(urlWithoutFragment), isMainFrame);
+  }
+
+  private boolean generateStylesheetForUrl(final ParsedRequestUrl parsedUrl, final boolean isMainFrame)
+  {
+    final String urlWithoutFragment = parsedUrl.getUrlWithoutFragment();
     final boolean isJsInIframesEnabled = getJsInIframesEnabled();
     Timber.d("generateStylesheetForUrl() called for url %s, isMainFrame = %b, " +
       "isJsInIframesEnabled == %b", urlWithoutFragment, isMainFrame, isJsInIframesEnabled);
@@ -1418,87 +1619,63 @@ public class AdblockWebView extends WebView
       return false;
     }
 
-    final String domain = Utils.getDomain(urlWithoutFragment);
+    final String domain = parsedUrl.getDomain();
     if (TextUtils.isEmpty(domain))
     {
       Timber.e("Failed to extract domain from %s", urlWithoutFragment);
       return false;
     }
 
-    String stylesheetString = EMPTY_ELEMHIDE_STRING;
+    ElementHidingStyleSheet stylesheet = ElementHidingStyleSheet.EMPTY;
     String emuSelectorsString = EMPTY_ELEMHIDE_ARRAY_STRING;
 
     // Check if css was already generated
-    final Pair<String, String> stylesheets = url2Stylesheets.get(urlWithoutFragment);
+    final Pair<ElementHidingStyleSheet, String> stylesheets = url2Stylesheets.get(urlWithoutFragment);
     if (stylesheets != null)
     {
-      return !stylesheets.first.equals(EMPTY_ELEMHIDE_STRING) ||
+      return !stylesheets.first.isEmpty() ||
         !stylesheets.second.equals(EMPTY_ELEMHIDE_ARRAY_STRING);
     }
 
-    final Lock lock = getProvider().getReadEngineLock();
-    lock.lock();
+    final AdblockEngineProvider.EngineLease lease = acquireEngineLease();
 
     try
     {
-      boolean isDisposed = false;
-      if (getProvider().getCounter() == 0)
-      {
-        isDisposed = true;
-      }
-      else
+      // The engine can't be disposed until the lease is released
+      if (lease != null)
       {
-        lock.unlock();
-        getProvider().waitForReady();
-        lock.lock();
-        if (getProvider().getCounter() == 0)
-        {
-          isDisposed = true;
-        }
-      }
-
-      // Apart from checking counter (getProvider().getCounter()) we also need to make sure
-      // that getProvider().getEngine() is already set.
-      // We check that under getProvider().getReadEngineLock(); so we are sure it will not be
-      // changed after this check.
-      if (!isDisposed && getProvider().getEngine() != null)
-      {
-        final AdblockEngine adblockEngine = getProvider().getEngine();
+        final AdblockEngine adblockEngine = lease.getEngine();
 
         final List<String> referrerChain = isMainFrame ?
           new ArrayList<String>() : buildFramesHierarchy(urlWithoutFragment);
 
         referrerChain.add(0, urlWithoutFragment);
         final SiteKeysConfiguration siteKeysConfiguration = getSiteKeysConfiguration();
-        String siteKey = (siteKeysConfiguration != null
-          ? PublicKeyHolderImpl.stripPadding(siteKeysConfiguration.getPublicKeyHolder()
-          .getAny(referrerChain, EMPTY_SITEKEY))
-          : null);
+        String siteKey = getSiteKey(siteKeysConfiguration, referrerChain);
 
         if (!isMainFrame && siteKeysConfiguration != null && siteKey.isEmpty())
         {
           Timber.d("Waiting for a site key when handling %s", urlWithoutFragment);
-          final boolean waited = siteKeyExtractor.waitForSitekeyCheck(urlWithoutFragment, isMainFrame);
+          final boolean waited = waitForSiteKey(siteKeysConfiguration, urlWithoutFragment,
+            isMainFrame, referrerChain);
           if (waited)
           {
-            siteKey = PublicKeyHolderImpl.stripPadding(siteKeysConfiguration.getPublicKeyHolder()
-              .getAny(referrerChain, EMPTY_SITEKEY));
+            siteKey = getSiteKey(siteKeysConfiguration, referrerChain);
           }
         }
 
         if (!adblockEngine.isContentAllowlisted(urlWithoutFragment,
-          ContentType.maskOf(ContentType.DOCUMENT, ContentType.ELEMHIDE), referrerChain, siteKey))
+          ContentType.MASK_DOCUMENT | ContentType.MASK_ELEMHIDE, referrerChain, siteKey))
         {
           final boolean specificOnly = adblockEngine.isContentAllowlisted(urlWithoutFragment,
-            ContentType.maskOf(ContentType.GENERICHIDE),
-            referrerChain, siteKey);
+            ContentType.MASK_GENERICHIDE, referrerChain, siteKey);
 
           // elemhide
           Timber.d("Requesting elemhide stylesheet from AdblockEngine for %s", domain);
-          stylesheetString = adblockEngine.getElementHidingStyleSheet(domain, specificOnly);
-          Timber.d("Finished requesting elemhide stylesheet, got %d symbols" +
-              (specificOnly ? " (specificOnly)" : "") + " for %s", stylesheetString.length(),
-            domain);
+          stylesheet = adblockEngine.getElementHidingStyleSheets(domain, specificOnly);
+          Timber.d("Finished requesting elemhide stylesheet, got %d generic and %d specific symbols" +
+              (specificOnly ? " (specificOnly)" : "") + " for %s", stylesheet.generic.length(),
+            stylesheet.specific.length(), domain);
 
           // elemhideemu
           Timber.d("Requesting elemhideemu selectors from AdblockEngine for %s", domain);
@@ -1516,28 +1693,161 @@ public class AdblockWebView extends WebView
     }
     finally
     {
-      lock.unlock();
-      url2Stylesheets.put(urlWithoutFragment, new Pair<>(stylesheetString, emuSelectorsString));
+      if (lease != null)
+      {
+        lease.release();
+      }
+      url2Stylesheets.put(urlWithoutFragment, new Pair<>(stylesheet, emuSelectorsString));
       // return true if elemhide OR elemhideemu data was provided
-      return !stylesheetString.equals(EMPTY_ELEMHIDE_STRING) ||
+      return !stylesheet.isEmpty() ||
         !emuSelectorsString.equals(EMPTY_ELEMHIDE_ARRAY_STRING);
     }
   }
 
-  private Pair<String, String> getStylesheetsForUrl(final String url)
+  private boolean isSitekeyCheckEnabled(final AdblockEngine engine)
+  {
+    if (engine.settings().isAcceptableAdsEnabled() || getJsInIframesEnabled())
+    {
+      return true;
+    }
+    if (BuildConfig.DEBUG)
+    {
+      final List<Subscription> listedSubscriptions = engine.settings().getListedSubscriptions();
+      for (Subscription subscription : listedSubscriptions)
+      {
+        if (subscription.url.contains("abp-testcase-subscription.txt"))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // the sitekeys are checked regardless of Acceptable Ads enabled state
+  private boolean isSitekeyCheckForced()
+  {
+    final SiteKeysConfiguration siteKeysConfiguration = getSiteKeysConfiguration();
+    return getJsInIframesEnabled()
+      || (siteKeysConfiguration != null && siteKeysConfiguration.getForceChecks());
+  }
+
+  /**
+   * Sets up the sitekey extraction and generates the stylesheet for the main frame
+   * once the engine is created, without holding the main frame request
+   * (see {@link AdblockEngineProvider#getFilterIndexSnapshot()})
+   */
+  private void setUpMainFrameWhenEngineReady(final ParsedRequestUrl parsedUrl)
+  {
+    // the queued task sets up the latest main frame only
+    if (pendingMainFrameSetUp.getAndSet(parsedUrl) != null)
+    {
+      return;
+    }
+    MAIN_FRAME_SET_UP_EXECUTOR.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        final AdblockEngineProvider.EngineLease lease = acquireEngineLease();
+        final ParsedRequestUrl latestUrl = pendingMainFrameSetUp.getAndSet(null);
+        final String urlWithoutFragment = latestUrl.getUrlWithoutFragment();
+        if (lease == null)
+        {
+          Timber.e("AdblockEngine already disposed");
+          return;
+        }
+        try
+        {
+          if (!urlWithoutFragment.equals(navigationUrl.get()))
+          {
+            Timber.d("Navigated away from %s, skipping the main frame set up", urlWithoutFragment);
+            return;
+          }
+          siteKeyExtractor.setEnabled(isSitekeyCheckEnabled(lease.getEngine()));
+        }
+        finally
+        {
+          lease.release();
+        }
+        generateStylesheetForUrl(latestUrl, true);
+      }
+    });
+  }
+
+  /**
+   * Acquires the engine lease waiting for the engine to be created if needed
+   * @return engine lease or `null` if the engine is disposed
+   */
+  private AdblockEngineProvider.EngineLease acquireEngineLease()
+  {
+    final AdblockEngineProvider provider = getProvider();
+    AdblockEngineProvider.EngineLease lease = provider.acquireEngine();
+    if (lease == null && provider.getCounter() > 0)
+    {
+      // the engine is being created asynchronously
+      provider.waitForReady();
+      lease = provider.acquireEngine();
+    }
+    return lease;
+  }
+
+  private Pair<ElementHidingStyleSheet, String> getStylesheetsForUrl(final String url)
   {
     return url2Stylesheets.get(Utils.getUrlWithoutFragment(url));
   }
 
+  private WebResourceResponse getGenericStyleSheetResponse(final String path)
+  {
+    final byte[] bytes = genericStyleSheetResource.getBytes(path);
+    if (bytes == null)
+    {
+      // the stylesheet is outdated, it's requested with `getElemhideGenericStyleSheet()` then
+      Timber.d("No generic elemhide stylesheet at %s", path);
+      return new WebResourceResponse(GenericStyleSheetResource.MIME_TYPE,
+        GenericStyleSheetResource.CHARSET_NAME, HttpURLConnection.HTTP_NOT_FOUND, "Not Found",
+        Collections.<String, String>emptyMap(), new ByteArrayInputStream(new byte[0]));
+    }
+    return new WebResourceResponse(GenericStyleSheetResource.MIME_TYPE,
+      GenericStyleSheetResource.CHARSET_NAME, new ByteArrayInputStream(bytes));
+  }
+
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public String getElemhideGenericStyleSheetPath(final String url)
+  {
+    final Pair<ElementHidingStyleSheet, String> sylesheets = getStylesheetsForUrl(url);
+    if (sylesheets != null && !sylesheets.first.generic.isEmpty())
+    {
+      return genericStyleSheetResource.getPath(sylesheets.first.generic);
+    }
+    return EMPTY_ELEMHIDE_STRING;
+  }
+
+  // warning: do not rename (used in injected JS by method name),
+  // used if the stylesheet can't be loaded from `getElemhideGenericStyleSheetPath()`
+  @JavascriptInterface
+  public String getElemhideGenericStyleSheet(final String url)
+  {
+    final Pair<ElementHidingStyleSheet, String> sylesheets = getStylesheetsForUrl(url);
+    if (sylesheets != null)
+    {
+      Timber.d("Generic elemhide selectors for `%s`, %d bytes", url,
+        sylesheets.first.generic.length());
+      return sylesheets.first.generic;
+    }
+    return EMPTY_ELEMHIDE_STRING;
+  }
+
   // warning: do not rename (used in injected JS by method name)
   @JavascriptInterface
   public String getElemhideStyleSheet(final String url)
   {
-    final Pair<String, String> sylesheets = getStylesheetsForUrl(url);
+    final Pair<ElementHidingStyleSheet, String> sylesheets = getStylesheetsForUrl(url);
     if (sylesheets != null)
     {
-      Timber.d("Elemhide selectors for `%s`, %d bytes", url, sylesheets.first.length());
-      return sylesheets.first;
+      Timber.d("Elemhide selectors for `%s`, %d bytes", url, sylesheets.first.specific.length());
+      return sylesheets.first.specific;
     }
     return EMPTY_ELEMHIDE_STRING;
   }
@@ -1546,7 +1856,7 @@ public class AdblockWebView extends WebView
   @JavascriptInterface
   public String getElemhideEmulationSelectors(final String url)
   {
-    final Pair<String, String> sylesheets = getStylesheetsForUrl(url);
+    final Pair<ElementHidingStyleSheet, String> sylesheets = getStylesheetsForUrl(url);
     if (sylesheets != null)
     {
       Timber.d("Elemhideemu selectors for `%s`, %d bytes", url, sylesheets.second.length());
@@ -1607,7 +1917,7 @@ public class AdblockWebView extends WebView
       final AdblockEngine engine = getProvider().getEngine();
       if (engine != null)
       {
-        engine.settings().removeEnableStateChangedListener(enableStateChangedListener);
+        removeSettingsListeners(engine.settings());
       }
       getProvider().removeEngineCreatedListener(engineCreatedCb);
       getProvider().removeEngineDisposedListener(engineDisposedCb);
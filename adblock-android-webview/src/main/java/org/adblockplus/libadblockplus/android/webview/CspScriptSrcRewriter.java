@@ -0,0 +1,262 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rewrites the Content-Security-Policy header value to allow the injected script.
+ * <p>
+ * The `script-src` directive is found and its source list is tokenized in a single pass
+ * without regular expressions. If the directive has a nonce it's reused, if it allows the
+ * inline scripts the header is kept, otherwise a new nonce is added to the directive.
+ * <p>
+ * The parsed directive is cached per distinct header value as the sites send the same
+ * (often several KB long) header for every frame. The nonce is generated for every response,
+ * as reusing it would weaken the site policy.
+ * <p>
+ * Thread-safe.
+ */
+public final class CspScriptSrcRewriter
+{
+  public static final int DEFAULT_CACHE_SIZE = 32;
+
+  static final String NONCE = "nonce-";
+
+  private static final String SCRIPT_SRC = "script-src";
+  private static final String QUOTED_NONCE = "'" + NONCE;
+  private static final String UNSAFE_INLINE = "'unsafe-inline'";
+  private static final String[] QUOTED_HASHES = new String[]
+  {
+    "'sha256-",
+    "'sha384-",
+    "'sha512-"
+  };
+  private static final int NONCE_BYTES = 16;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Result of the rewriting
+   */
+  public static final class Rewrite
+  {
+    /**
+     * Nonce to add to the injected script (without `nonce-` prefix)
+     * or `null` if not needed
+     */
+    public final String nonce;
+
+    /**
+     * New header value or `null` if the header is kept
+     */
+    public final String header;
+
+    private Rewrite(final String nonce, final String header)
+    {
+      this.nonce = nonce;
+      this.header = header;
+    }
+  }
+
+  // the parsed `script-src` directive
+  private static final class Directive
+  {
+    // the header is kept if it's `null`
+    private static final Directive NONE = new Directive(null, -1);
+
+    private final String nonce;
+    // index to insert the nonce at or -1
+    private final int insertIndex;
+
+    private Directive(final String nonce, final int insertIndex)
+    {
+      this.nonce = nonce;
+      this.insertIndex = insertIndex;
+    }
+  }
+
+  private final Map<String, Directive> cache;
+  private final SecureRandom random = new SecureRandom();
+
+  public CspScriptSrcRewriter()
+  {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * @param cacheSize max count of the distinct header values to cache the parsed directive for
+   */
+  public CspScriptSrcRewriter(final int cacheSize)
+  {
+    if (cacheSize <= 0)
+    {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.cache = new LinkedHashMap<String, Directive>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Directive> eldest)
+      {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Rewrite CSP header value
+   * @param header CSP header value
+   * @return rewrite result, both the nonce and the header are `null` if no changes are needed
+   */
+  public Rewrite rewrite(final String header)
+  {
+    Directive directive;
+    synchronized (cache)
+    {
+      directive = cache.get(header);
+    }
+    if (directive == null)
+    {
+      directive = parse(header);
+      synchronized (cache)
+      {
+        cache.put(header, directive);
+      }
+    }
+
+    if (directive.insertIndex < 0)
+    {
+      return new Rewrite(directive.nonce, null);
+    }
+    final String nonce = generateNonce();
+    final StringBuilder sb = new StringBuilder(header.length() + NONCE.length() + nonce.length() + 3);
+    sb.append(header, 0, directive.insertIndex)
+      .append(" '")
+      .append(NONCE)
+      .append(nonce)
+      .append('\'')
+      .append(header, directive.insertIndex, header.length());
+    return new Rewrite(nonce, sb.toString());
+  }
+
+  public int getCacheSize()
+  {
+    synchronized (cache)
+    {
+      return cache.size();
+    }
+  }
+
+  private static boolean isWhitespace(final char c)
+  {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+
+  private static Directive parse(final String header)
+  {
+    final int length = header.length();
+    final int directiveStart = findScriptSrc(header);
+    if (directiveStart < 0)
+    {
+      return Directive.NONE;
+    }
+
+    final int sourcesStart = directiveStart + SCRIPT_SRC.length();
+    boolean unsafeInline = false;
+    boolean hash = false;
+    int i = sourcesStart;
+    while (i < length && header.charAt(i) != ';')
+    {
+      if (isWhitespace(header.charAt(i)))
+      {
+        i++;
+        continue;
+      }
+      final int tokenStart = i;
+      while (i < length && header.charAt(i) != ';' && !isWhitespace(header.charAt(i)))
+      {
+        i++;
+      }
+      final int tokenLength = i - tokenStart;
+
+      if (tokenLength > QUOTED_NONCE.length() + 1
+        && header.charAt(i - 1) == '\''
+        && header.regionMatches(true, tokenStart, QUOTED_NONCE, 0, QUOTED_NONCE.length()))
+      {
+        return new Directive(header.substring(tokenStart + QUOTED_NONCE.length(), i - 1), -1);
+      }
+      if (tokenLength == UNSAFE_INLINE.length()
+        && header.regionMatches(true, tokenStart, UNSAFE_INLINE, 0, tokenLength))
+      {
+        unsafeInline = true;
+      }
+      else if (!hash)
+      {
+        for (final String quotedHash : QUOTED_HASHES)
+        {
+          if (header.regionMatches(true, tokenStart, quotedHash, 0, quotedHash.length()))
+          {
+            hash = true;
+            break;
+          }
+        }
+      }
+    }
+
+    // 'unsafe-inline' is ignored by the browsers if a hash is present
+    if (unsafeInline && !hash)
+    {
+      return Directive.NONE;
+    }
+    return new Directive(null, sourcesStart);
+  }
+
+  // index of the first `script-src` directive name (not `script-src-elem` etc) or -1
+  private static int findScriptSrc(final String header)
+  {
+    final int length = header.length();
+    final int last = length - SCRIPT_SRC.length();
+    for (int i = 0; i <= last; i++)
+    {
+      if ((i == 0 || header.charAt(i - 1) == ';' || isWhitespace(header.charAt(i - 1)))
+        && header.regionMatches(true, i, SCRIPT_SRC, 0, SCRIPT_SRC.length()))
+      {
+        final int end = i + SCRIPT_SRC.length();
+        if (end == length || header.charAt(end) == ';' || isWhitespace(header.charAt(end)))
+        {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private String generateNonce()
+  {
+    final byte[] bytes = new byte[NONCE_BYTES];
+    random.nextBytes(bytes);
+    final char[] chars = new char[NONCE_BYTES * 2];
+    for (int i = 0; i < NONCE_BYTES; i++)
+    {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+}
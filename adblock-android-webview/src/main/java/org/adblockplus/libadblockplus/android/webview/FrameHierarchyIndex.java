@@ -0,0 +1,429 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Bounded index of the frames hierarchy: url => its parent (referrer).
+ * <p>
+ * The mappings are stored in the lock-striped LRU segments, so the least recently used mappings
+ * are evicted first when the capacity is reached (eg. on infinite-scroll pages).
+ * The resolved referrer chain is cached per url and is invalidated when any mapping it depends on
+ * (the mapping of any url in the chain) is added, changed or evicted. The other cached chains
+ * are kept.
+ * <p>
+ * Thread-safe.
+ */
+public final class FrameHierarchyIndex
+{
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private static final int SEGMENTS_COUNT = 16;
+
+  // rough estimations of the object sizes in bytes
+  private static final int OBJECT_HEADER_BYTES = 16;
+  private static final int REFERENCE_BYTES = 8;
+  private static final int MAP_ENTRY_BYTES = 48;
+  private static final int ENTRY_BYTES = OBJECT_HEADER_BYTES + 5 * REFERENCE_BYTES + 4;
+  private static final int STRING_BYTES = 40;
+
+  private static final class Entry
+  {
+    private final String url;
+    private final String parent;
+
+    // guarded by the segment
+    private List<String> resolvedChain;
+    private int invalidationsCount;
+
+    // guarded by the entry, the urls the entry is registered for (created lazily)
+    private Set<String> registeredUrls;
+
+    private Entry(final String url, final String parent)
+    {
+      this.url = url;
+      this.parent = parent;
+    }
+  }
+
+  /*
+   * Guarded by itself, no other lock is acquired while holding it.
+   * The dependent chains of the url are kept in the segment of the url, so they are looked up
+   * under the same lock as its mapping.
+   */
+  private static final class Segment
+  {
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // url => entries having the cached chains passing through it (or ending at it), created lazily
+    private Map<String, Set<Entry>> dependentChains;
+
+    private Segment(final int capacity)
+    {
+      this.capacity = capacity;
+    }
+
+    private void addDependentChain(final String url, final Entry entry)
+    {
+      if (dependentChains == null)
+      {
+        dependentChains = new HashMap<>();
+      }
+      Set<Entry> dependents = dependentChains.get(url);
+      if (dependents == null)
+      {
+        dependents = new HashSet<>();
+        dependentChains.put(url, dependents);
+      }
+      dependents.add(entry);
+    }
+
+    private void removeDependentChain(final String url, final Entry entry)
+    {
+      if (dependentChains == null)
+      {
+        return;
+      }
+      final Set<Entry> dependents = dependentChains.get(url);
+      if (dependents != null && dependents.remove(entry) && dependents.isEmpty())
+      {
+        dependentChains.remove(url);
+      }
+    }
+
+    // the returned entries are not referenced by the segment any more
+    private Set<Entry> removeDependentChains(final String url)
+    {
+      return (dependentChains != null ? dependentChains.remove(url) : null);
+    }
+  }
+
+  private final Segment[] segments;
+
+  public FrameHierarchyIndex()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity max mappings count, the least recently used ones are evicted first
+   */
+  public FrameHierarchyIndex(final int capacity)
+  {
+    if (capacity <= 0)
+    {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    final int segmentCapacity = Math.max(1, (capacity + SEGMENTS_COUNT - 1) / SEGMENTS_COUNT);
+    this.segments = new Segment[SEGMENTS_COUNT];
+    for (int i = 0; i < SEGMENTS_COUNT; i++)
+    {
+      segments[i] = new Segment(segmentCapacity);
+    }
+  }
+
+  private Segment segmentFor(final String url)
+  {
+    final int hash = url.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (SEGMENTS_COUNT - 1)];
+  }
+
+  private Entry getEntry(final String url)
+  {
+    final Segment segment = segmentFor(url);
+    synchronized (segment)
+    {
+      return segment.entries.get(url);
+    }
+  }
+
+  private void registerChain(final Entry entry, final List<String> chain)
+  {
+    for (final String each : chain)
+    {
+      final Segment segment = segmentFor(each);
+      synchronized (segment)
+      {
+        segment.addDependentChain(each, entry);
+      }
+    }
+    // remembered after the segments are updated, so that `unregisterEntry()` after
+    // `registerChain()` returns removes all of them
+    synchronized (entry)
+    {
+      if (entry.registeredUrls == null)
+      {
+        entry.registeredUrls = new HashSet<>(chain);
+      }
+      else
+      {
+        entry.registeredUrls.addAll(chain);
+      }
+    }
+  }
+
+  // the entry is removed from the index (replaced or evicted)
+  private void unregisterEntry(final Entry entry)
+  {
+    final Set<String> registeredUrls;
+    synchronized (entry)
+    {
+      registeredUrls = entry.registeredUrls;
+      if (registeredUrls == null)
+      {
+        return;
+      }
+      entry.registeredUrls = null;
+    }
+    for (final String each : registeredUrls)
+    {
+      final Segment segment = segmentFor(each);
+      synchronized (segment)
+      {
+        segment.removeDependentChain(each, entry);
+      }
+    }
+  }
+
+  private void invalidateChain(final Entry entry)
+  {
+    synchronized (segmentFor(entry.url))
+    {
+      // the chain being resolved concurrently is not cached then
+      entry.invalidationsCount++;
+      entry.resolvedChain = null;
+    }
+  }
+
+  // the mapping of the url is added, changed or evicted, `dependents` are removed from its segment
+  private void invalidateChainsThrough(final String url, final Set<Entry> dependents)
+  {
+    if (dependents == null)
+    {
+      return;
+    }
+    for (final Entry entry : dependents)
+    {
+      synchronized (entry)
+      {
+        if (entry.registeredUrls != null)
+        {
+          entry.registeredUrls.remove(url);
+        }
+      }
+      invalidateChain(entry);
+    }
+  }
+
+  /**
+   * Remember the parent of the url
+   * @param url url
+   * @param parent its parent (referrer)
+   */
+  public void put(final String url, final String parent)
+  {
+    final Segment segment = segmentFor(url);
+    final Entry existing;
+    final Set<Entry> dependents;
+    Entry evicted = null;
+    Set<Entry> evictedDependents = null;
+    synchronized (segment)
+    {
+      existing = segment.entries.get(url);
+      if (existing != null && existing.parent.equals(parent))
+      {
+        return;
+      }
+      segment.entries.put(url, new Entry(url, parent));
+      if (segment.entries.size() > segment.capacity)
+      {
+        final Iterator<Entry> iterator = segment.entries.values().iterator();
+        evicted = iterator.next();
+        iterator.remove();
+        evictedDependents = segment.removeDependentChains(evicted.url);
+      }
+      dependents = segment.removeDependentChains(url);
+    }
+
+    if (existing != null)
+    {
+      unregisterEntry(existing);
+    }
+    invalidateChainsThrough(url, dependents);
+    if (evicted != null)
+    {
+      unregisterEntry(evicted);
+      invalidateChainsThrough(evicted.url, evictedDependents);
+    }
+  }
+
+  /**
+   * Resolve the referrer chain of the url
+   * @param url url
+   * @return a new modifiable list of the url parents starting with the immediate one
+   */
+  public List<String> getReferrerChain(final String url)
+  {
+    final Segment segment = segmentFor(url);
+    final Entry entry;
+    final int startInvalidationsCount;
+    synchronized (segment)
+    {
+      entry = segment.entries.get(url);
+      if (entry == null)
+      {
+        return new ArrayList<>();
+      }
+      if (entry.resolvedChain != null)
+      {
+        return new ArrayList<>(entry.resolvedChain);
+      }
+      startInvalidationsCount = entry.invalidationsCount;
+    }
+
+    final List<String> chain = new ArrayList<>();
+    // the mappings the chain is resolved with (`null` for the tail)
+    final List<Entry> chainEntries = new ArrayList<>();
+    final Set<String> visited = new HashSet<>();
+    String parent = entry.parent;
+    while (true)
+    {
+      if (!visited.add(parent))
+      {
+        Timber.w("Detected referrer loop, finished creating referrers list");
+        break;
+      }
+      chain.add(parent);
+      final Entry parentEntry = getEntry(parent);
+      chainEntries.add(parentEntry);
+      if (parentEntry == null)
+      {
+        break;
+      }
+      parent = parentEntry.parent;
+    }
+
+    // register the chain first so that concurrent `put()` for any of its urls either invalidates
+    // the chain or is visible in the check below
+    registerChain(entry, chain);
+    boolean changed = false;
+    for (int i = 0; i < chain.size() && !changed; i++)
+    {
+      changed = getEntry(chain.get(i)) != chainEntries.get(i);
+    }
+
+    final boolean removed;
+    synchronized (segment)
+    {
+      removed = segment.entries.get(url) != entry;
+      if (!removed && !changed && entry.invalidationsCount == startInvalidationsCount)
+      {
+        entry.resolvedChain = Collections.unmodifiableList(new ArrayList<>(chain));
+        return chain;
+      }
+    }
+    if (removed)
+    {
+      // nobody else can cache a chain for it
+      unregisterEntry(entry);
+    }
+    else if (changed)
+    {
+      // the chain cached concurrently can be outdated as well
+      invalidateChain(entry);
+    }
+    return chain;
+  }
+
+  /**
+   * Remove all the mappings
+   */
+  public void clear()
+  {
+    for (final Segment segment : segments)
+    {
+      synchronized (segment)
+      {
+        segment.entries.clear();
+        segment.dependentChains = null;
+      }
+    }
+  }
+
+  public int size()
+  {
+    int size = 0;
+    for (final Segment segment : segments)
+    {
+      synchronized (segment)
+      {
+        size += segment.entries.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Estimate the memory used by the mappings and the cached chains
+   * @return approximate memory footprint in bytes
+   */
+  public long getMemoryFootprint()
+  {
+    long bytes = 0;
+    for (final Segment segment : segments)
+    {
+      synchronized (segment)
+      {
+        for (final Map.Entry<String, Entry> mapEntry : segment.entries.entrySet())
+        {
+          bytes += MAP_ENTRY_BYTES + ENTRY_BYTES
+            + STRING_BYTES + 2L * mapEntry.getKey().length()
+            + STRING_BYTES + 2L * mapEntry.getValue().parent.length();
+          final List<String> resolvedChain = mapEntry.getValue().resolvedChain;
+          if (resolvedChain != null)
+          {
+            // the chain shares the strings with the mappings
+            bytes += 2 * OBJECT_HEADER_BYTES + (long) REFERENCE_BYTES * resolvedChain.size();
+          }
+        }
+        if (segment.dependentChains != null)
+        {
+          // the sets share the strings with the mappings too, every entry is in two sets
+          for (final Set<Entry> dependents : segment.dependentChains.values())
+          {
+            bytes += MAP_ENTRY_BYTES + 4 * OBJECT_HEADER_BYTES
+              + 2L * MAP_ENTRY_BYTES * dependents.size();
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import java.nio.charset.Charset;
+
+/**
+ * Generic element hiding stylesheet served to the frames as a stylesheet resource (see css.js).
+ * <p>
+ * The generic stylesheet is the same for most of the pages and is much larger than the domain
+ * specific one, so it is loaded from memory by the frames instead of crossing the JS bridge for
+ * every page. Every new stylesheet is served at a new path under the random path prefix and
+ * is encoded once for all the requests of the path.
+ * <p>
+ * Thread-safe.
+ */
+public final class GenericStyleSheetResource
+{
+  public static final String MIME_TYPE = "text/css";
+  public static final String CHARSET_NAME = "UTF-8";
+
+  private static final String PATH_SUFFIX = ".css";
+
+  private static final class Entry
+  {
+    private final String styleSheet;
+    private final String path;
+
+    // guarded by the entry, created lazily
+    private byte[] bytes;
+
+    private Entry(final String styleSheet, final String path)
+    {
+      this.styleSheet = styleSheet;
+      this.path = path;
+    }
+
+    private synchronized byte[] getBytes()
+    {
+      if (bytes == null)
+      {
+        bytes = styleSheet.getBytes(Charset.forName(CHARSET_NAME));
+      }
+      return bytes;
+    }
+  }
+
+  private final String pathPrefix;
+
+  // guarded by this
+  private Entry current;
+  private int pathsCount;
+
+  /**
+   * @param pathPrefix absolute path prefix which is not used by the sites (eg. random)
+   */
+  public GenericStyleSheetResource(final String pathPrefix)
+  {
+    this.pathPrefix = pathPrefix;
+  }
+
+  /**
+   * Get the path the stylesheet is served at
+   * @param styleSheet generic stylesheet
+   * @return absolute path, the same one until another stylesheet is passed
+   */
+  public synchronized String getPath(final String styleSheet)
+  {
+    // the engine returns the same String instance for the filter lists version
+    if (current == null || !current.styleSheet.equals(styleSheet))
+    {
+      current = new Entry(styleSheet, pathPrefix + (++pathsCount) + PATH_SUFFIX);
+    }
+    return current.path;
+  }
+
+  /**
+   * @param path requested path
+   * @return `true` if the path is under the resource path prefix
+   */
+  public boolean isResourcePath(final String path)
+  {
+    return path != null && path.startsWith(pathPrefix);
+  }
+
+  /**
+   * Get the encoded stylesheet
+   * @param path requested path
+   * @return stylesheet bytes or `null` if no stylesheet is served at the path (any more)
+   */
+  public byte[] getBytes(final String path)
+  {
+    final Entry entry;
+    synchronized (this)
+    {
+      entry = current;
+    }
+    if (entry == null || !entry.path.equals(path))
+    {
+      return null;
+    }
+    return entry.getBytes();
+  }
+}
@@ -29,18 +29,12 @@ import org.adblockplus.libadblockplus.ServerResponse;
 import org.adblockplus.libadblockplus.android.Utils;
 import org.adblockplus.libadblockplus.android.webview.AdblockWebView.WebResponseResult;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import timber.log.Timber;
 
@@ -49,7 +43,7 @@ import static org.adblockplus.libadblockplus.android.Utils.convertMapToHeadersLi
 
 /**
  * Makes a custom HTTP request and then does the <i>Site Key</i> verification by calling
- * {@link org.adblockplus.libadblockplus.sitekey.SiteKeyVerifier#verifyInHeaders(String, Map, Map)}
+ * {@link org.adblockplus.libadblockplus.sitekey.SiteKeyVerifier#verifyInHeadersAsync(String, Map, Map)}
  */
 public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
 {
@@ -60,9 +54,31 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
     return status.name().replace("_", "");
   }
 
-  private static class ResponseHolder
+  /**
+   * Receives the response of {@link HttpClient#request(HttpRequest, HttpClient.Callback)}.
+   * {@link org.adblockplus.libadblockplus.android.AndroidHttpClient} calls back synchronously
+   * with the content stream not read yet, so no waiting is needed. WebView requires the status
+   * and the headers to create the response, so the asynchronous clients are waited for.
+   */
+  private static class ResponseHolder implements HttpClient.Callback
   {
-    ServerResponse response;
+    private ServerResponse response;
+
+    @Override
+    public synchronized void onFinished(final ServerResponse response)
+    {
+      this.response = response;
+      notifyAll();
+    }
+
+    private synchronized ServerResponse getResponse() throws InterruptedException
+    {
+      while (response == null)
+      {
+        wait();
+      }
+      return response;
+    }
   }
 
   public static class ResourceInfo
@@ -176,72 +192,33 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
 
   public static class ServerResponseProcessor
   {
-    private static final String NONCE = "nonce-";
-    private static final String CSP_SCRIPT_SRC_PARAM = "script-src";
-    private static final String CSP_UNSAFE_INLINE = "'unsafe-inline'";
-    private static final Pattern NONCE_PATTERN =
-        Pattern.compile(String.format("%s[^;]*'(%s[^']+)'.*;", CSP_SCRIPT_SRC_PARAM, NONCE),
-            Pattern.CASE_INSENSITIVE);
-    private static final String BODY_CLOSE_TAG = "</body>";
-
-    private boolean containsValidUnsafeInline(final String cspHeaderValue)
-    {
-      final int scriptSrcIndex = cspHeaderValue.indexOf(CSP_SCRIPT_SRC_PARAM);
-      if (scriptSrcIndex < 0)
-      {
-        return false;
-      }
-      final int unsafeInlineIndex = cspHeaderValue.indexOf(CSP_UNSAFE_INLINE, scriptSrcIndex);
-      if (unsafeInlineIndex < 0)
-      {
-        return false;
-      }
-      final String inBetween = cspHeaderValue.substring(
-          scriptSrcIndex + CSP_SCRIPT_SRC_PARAM.length(), unsafeInlineIndex);
-      // Make sure that CSP_UNSAFE_INLINE we found belongs to CSP_SCRIPT_SRC_PARAM
-      return !(inBetween.contains("-src ") || inBetween.contains("-src-elem ") ||
-          inBetween.contains("-src-attr ") || inBetween.contains("navigate-to ") ||
-          inBetween.contains("form-action ") || inBetween.contains("base-uri "));
-    }
+    // shared as the processor is created per response
+    private static final CspScriptSrcRewriter CSP_REWRITER = new CspScriptSrcRewriter();
 
     protected String updateCspHeader(final Map<String, String> responseHeaders)
     {
-      String JS_NONCE = null;
-      for (Map.Entry<String, String> eachEntry : responseHeaders.entrySet())
+      for (final Map.Entry<String, String> eachEntry : responseHeaders.entrySet())
       {
         // We want to just execute our custom inject.js script by slightly relaxing CSP if needed
         // If a nonce for script-src is present we will reuse it, otherwise it will be added
-        if (eachEntry.getKey().toLowerCase().equals(HttpClient.HEADER_CSP) &&
+        if (eachEntry.getKey().equalsIgnoreCase(HttpClient.HEADER_CSP) &&
             !eachEntry.getValue().isEmpty())
         {
           Timber.d("Found `%s` CSP header", eachEntry.getValue());
-          if (eachEntry.getValue().toLowerCase().contains(CSP_SCRIPT_SRC_PARAM))
+          final CspScriptSrcRewriter.Rewrite rewrite = CSP_REWRITER.rewrite(eachEntry.getValue());
+          if (rewrite.header != null)
           {
-            final Matcher resultREGEX = NONCE_PATTERN.matcher(eachEntry.getValue());
-            if (resultREGEX.find() && resultREGEX.groupCount() == 1)
-            {
-              JS_NONCE = resultREGEX.group(1);
-              Timber.d("Found nonce in CSP header with value `%s`", JS_NONCE);
-            }
-            else
-            {
-              if (containsValidUnsafeInline(eachEntry.getValue().toLowerCase()))
-              {
-                Timber.d("Found `%s` in CSP header, no need for update", CSP_UNSAFE_INLINE);
-                return null;
-              }
-              JS_NONCE = NONCE + UUID.randomUUID().toString();
-              final String[] splittedCSP = eachEntry.getValue().split(CSP_SCRIPT_SRC_PARAM, 2);
-              final String newCSPvalue = splittedCSP[0].trim() + " " + CSP_SCRIPT_SRC_PARAM + " '" +
-                  JS_NONCE + "' " + splittedCSP[1].trim();
-              responseHeaders.put(eachEntry.getKey(), newCSPvalue);
-              Timber.d("Added nonce to CSP header, new value `%s`", newCSPvalue);
-            }
+            responseHeaders.put(eachEntry.getKey(), rewrite.header);
+            Timber.d("Added nonce to CSP header, new value `%s`", rewrite.header);
           }
-          break;
+          else if (rewrite.nonce != null)
+          {
+            Timber.d("Found nonce in CSP header with value `%s`", rewrite.nonce);
+          }
+          return rewrite.nonce;
         }
       }
-      return JS_NONCE != null ? JS_NONCE.substring(NONCE.length()) : JS_NONCE;
+      return null;
     }
 
     protected String readFileToString(final InputStream inputStream)
@@ -251,83 +228,68 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
       return scanner.hasNext() ? scanner.next() : "";
     }
 
-    // Return true on success or when no-op, false on error
+    // Return true on success or when no-op, false on error.
+    // The content is processed while WebView reads the response
     protected boolean injectJavascript(final AdblockWebView webView, final String requestUrl,
                                        final ServerResponse response,
                                        final Map<String, String> responseHeaders)
     {
-      Timber.d("injectJavascript() reads content of `%s`", requestUrl);
+      return injectJavascript(webView, requestUrl, response, responseHeaders, null);
+    }
 
+    /**
+     * Wraps the response content to insert the script before the last `</body>` tag
+     * @param encoding the response charset name or `null` for
+     *                 {@link WebResponseResult#RESPONSE_CHARSET_NAME}
+     * @return true on success or when no-op, false on error
+     */
+    protected boolean injectJavascript(final AdblockWebView webView, final String requestUrl,
+                                       final ServerResponse response,
+                                       final Map<String, String> responseHeaders,
+                                       final String encoding)
+    {
       if (response.getInputStream() == null)
       {
         return true;
       }
-      final byte[] rawBytes;
-      String htmlString;
+
+      final Charset charset;
       try
       {
-        rawBytes = Utils.toByteArray(response.getInputStream());
-        htmlString = new String(rawBytes);
+        charset = Charset.forName(encoding != null
+            ? encoding : WebResponseResult.RESPONSE_CHARSET_NAME);
       }
-      catch (final IOException e)
+      catch (final IllegalArgumentException e)
       {
-        Timber.e(e, "injectJavascript() failed reading input stream to byte array");
-        return false;
+        Timber.w(e, "injectJavascript() skips injectJs for `%s` due to unknown charset",
+            requestUrl);
+        return true;
       }
 
-      // When generateStylesheetForUrl() fails to generate css then we can skip js injection
-      if (htmlString.toLowerCase().contains("</body>") &&
-          webView.generateStylesheetForUrl(Utils.getUrlWithoutFragment(requestUrl), false))
-      {
-        if (BuildConfig.DEBUG)
-        {
-          if (htmlString.toLowerCase().contains("content-security-policy"))
+      // The headers are passed to WebView along with the response, so CSP is updated in advance.
+      // For now we don't check CSP in meta tags in HTML, just in headers
+      final String jsNonce = updateCspHeader(responseHeaders);
+      Timber.d("injectJavascript() streams content of `%s`", requestUrl);
+      response.setInputStream(new ScriptInjectingInputStream(response.getInputStream(), charset,
+          new ScriptInjectingInputStream.InjectionProvider()
           {
-            Timber.w("injectJavascript() found potential CSP meta tag directive for `%s`",
-                requestUrl);
-          }
-        }
-        final String bodyEndWithScriptTag;
-        // For now we don't check CSP in meta tags in HTML, just in headers
-        final String JS_NONCE = updateCspHeader(responseHeaders);
-        if (JS_NONCE == null)
-        {
-          bodyEndWithScriptTag = "<script>" + webView.getInjectJs() + "</script></body>";
-        }
-        else
-        {
-          bodyEndWithScriptTag = "<script nonce=\"" + JS_NONCE + "\">" + webView.getInjectJs()
-              + "</script></body>";
-        }
-        Timber.d("injectJavascript() adds injectJs for `%s`", requestUrl);
-        // Find and replace last occurrence of BODY_CLOSE_TAG
-        final int foundIndex = htmlString.lastIndexOf(BODY_CLOSE_TAG);
-        if (foundIndex > 0)
-        {
-          final StringBuilder builder = new StringBuilder();
-          builder.append(htmlString.substring(0, foundIndex));
-          builder.append(bodyEndWithScriptTag);
-          builder.append(htmlString.substring(foundIndex + BODY_CLOSE_TAG.length()));
-          htmlString = builder.toString();
-        }
-        try
-        {
-          // Now set up back response input stream
-          response.setInputStream(
-              new ByteArrayInputStream(htmlString.getBytes(WebResponseResult.RESPONSE_CHARSET_NAME)));
-        }
-        catch (final UnsupportedEncodingException e)
-        {
-          Timber.e(e, "injectJavascript() failed");
-          return false;
-        }
-      }
-      else
-      {
-        Timber.d("injectJavascript() skips injectJs for `%s`", requestUrl);
-        response.setInputStream(new ByteArrayInputStream(rawBytes));
-      }
-
+            @Override
+            public String getInjection()
+            {
+              // When generateStylesheetForUrl() fails to generate css then we can skip js injection
+              if (!webView.generateStylesheetForUrl(Utils.getUrlWithoutFragment(requestUrl), false))
+              {
+                Timber.d("injectJavascript() skips injectJs for `%s`", requestUrl);
+                return null;
+              }
+              Timber.d("injectJavascript() adds injectJs for `%s`", requestUrl);
+              if (jsNonce == null)
+              {
+                return "<script>" + webView.getInjectJs() + "</script>";
+              }
+              return "<script nonce=\"" + jsNonce + "\">" + webView.getInjectJs() + "</script>";
+            }
+          }));
       return true;
     }
 
@@ -398,7 +360,8 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
       if (!webView.getJsInIframesEnabled() ||
           (responseInfo.getMimeType() != null &&
               !responseInfo.getMimeType().toLowerCase().contains(HttpClient.MIME_TYPE_TEXT_HTML)) ||
-          injectJavascript(webView, requestUrl, response, responseHeaders))
+          injectJavascript(webView, requestUrl, response, responseHeaders,
+              responseInfo.getEncoding()))
       {
         return new WebResourceResponse(
             responseInfo.getMimeType(), responseInfo.getEncoding(),
@@ -482,8 +445,9 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
     final Map<String, String> responseHeaders =
         convertHeaderEntriesToMap(response.getResponseHeaders());
 
-    // extract the sitekey from HTTP response header
-    getSiteKeysConfiguration().getSiteKeyVerifier().verifyInHeaders(
+    // extract the sitekey from HTTP response header, the subresources of the frame
+    // wait for the pending verification while the response is being processed
+    getSiteKeysConfiguration().getSiteKeyVerifier().verifyInHeadersAsync(
         url, requestHeaders, responseHeaders);
 
     final AdblockWebView adblockWebView = webViewWeakReference.get();
@@ -501,17 +465,6 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
     final Map<String, String> requestHeadersMap = request.getRequestHeaders();
 
     final ResponseHolder responseHolder = new ResponseHolder();
-    final CountDownLatch latch = new CountDownLatch(1);
-    final HttpClient.Callback callback = new HttpClient.Callback()
-    {
-      @Override
-      public void onFinished(final ServerResponse response_)
-      {
-        responseHolder.response = response_;
-        latch.countDown();
-      }
-    };
-
     final List<HeaderEntry> requestHeadersList = convertMapToHeadersList(requestHeadersMap);
     final AdblockWebView adblockWebView = webViewWeakReference.get();
     if (adblockWebView != null)
@@ -528,11 +481,9 @@ public class HttpHeaderSiteKeyExtractor extends BaseSiteKeyExtractor
         requestHeadersList,
         true, // always true since we don't use it for main frame
         true);
-    getSiteKeysConfiguration().getHttpClient().request(httpRequest, callback);
-
-    latch.await();
+    getSiteKeysConfiguration().getHttpClient().request(httpRequest, responseHolder);
 
-    return responseHolder.response;
+    return responseHolder.getResponse();
   }
 
   @Override
@@ -24,7 +24,6 @@ import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 
 import org.adblockplus.libadblockplus.android.Utils;
-import org.adblockplus.libadblockplus.sitekey.SiteKeyException;
 import org.adblockplus.libadblockplus.sitekey.SiteKeyVerifier;
 
 import java.lang.ref.WeakReference;
@@ -42,7 +41,7 @@ import timber.log.Timber;
  *   <li>Injects JS during {@link android.webkit.WebChromeClient#onProgressChanged(WebView, int)}.
  *   See "assets/inject.js"</li>
  *   <li>JS calls {@link JsCallbackInterface#onSiteKeyExtracted(String, String, String)}
- *   and verifies the sitekey with {@link SiteKeyVerifier}</li>
+ *   and verifies the sitekey with {@link SiteKeyVerifier} asynchronously</li>
  * </ol>
  *
  * @see BaseSiteKeyExtractor
@@ -184,26 +183,14 @@ class JsSiteKeyExtractor extends BaseSiteKeyExtractor
 
   private void verifySiteKey(final String url, final String userAgent, final String value)
   {
-    try
-    {
-      final SiteKeyVerifier verifier = getSiteKeysConfiguration().getSiteKeyVerifier();
-      if (verifier == null)
-      {
-        throw new AssertionError("Verifier must be set before this is called");
-      }
-      else if (verifier.verify(Utils.getUrlWithoutFragment(url), userAgent, value))
-      {
-        Timber.d("Url %s public key verified successfully", url);
-      }
-      else
-      {
-        Timber.e("Url %s public key is not verified", url);
-      }
-    }
-    catch (final SiteKeyException e)
+    final SiteKeyVerifier verifier = getSiteKeysConfiguration().getSiteKeyVerifier();
+    if (verifier == null)
     {
-      Timber.e(e, "Failed to verify sitekey header");
+      throw new AssertionError("Verifier must be set before this is called");
     }
+    // the verification is registered as pending for the url, so the held requests
+    // of the frame wait for it and not the JavaScript bridge thread
+    verifier.verifyAsync(Utils.getUrlWithoutFragment(url), userAgent, value);
   }
 
   public static class JsCallbackInterface
@@ -0,0 +1,228 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import org.adblockplus.ContentType;
+import org.adblockplus.MatchesResult;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of the filtering decisions made for subresource requests.
+ * <p>
+ * A page often requests the same resource (eg. tracking pixel) many times, every decision costs
+ * several calls to the filter engine so we remember it for the (url, content type, frames hierarchy,
+ * sitekey) tuple. The cache must be cleared whenever the filtering settings are changed.
+ * <p>
+ * Thread-safe.
+ */
+public final class RequestDecisionCache
+{
+  public static final int DEFAULT_CAPACITY = 512;
+
+  /**
+   * Immutable filtering decision
+   */
+  public static final class Decision
+  {
+    public static final Decision ALLOWLISTED_DOCUMENT = new Decision(MatchesResult.ALLOWLISTED,
+      AdblockWebView.EventsListener.AllowlistReason.DOCUMENT);
+    public static final Decision ALLOWLISTED_FILTER = new Decision(MatchesResult.ALLOWLISTED,
+      AdblockWebView.EventsListener.AllowlistReason.FILTER);
+    public static final Decision BLOCKED = new Decision(MatchesResult.BLOCKED, null);
+    public static final Decision NOT_FOUND = new Decision(MatchesResult.NOT_FOUND, null);
+
+    private final MatchesResult result;
+    private final AdblockWebView.EventsListener.AllowlistReason allowlistReason;
+
+    private Decision(final MatchesResult result,
+                     final AdblockWebView.EventsListener.AllowlistReason allowlistReason)
+    {
+      this.result = result;
+      this.allowlistReason = allowlistReason;
+    }
+
+    public MatchesResult getResult()
+    {
+      return result;
+    }
+
+    /**
+     * @return allowlisting reason or `null` if the request is not allowlisted
+     */
+    public AdblockWebView.EventsListener.AllowlistReason getAllowlistReason()
+    {
+      return allowlistReason;
+    }
+  }
+
+  /**
+   * Cache key. Remembers the cache generation it was created in, so the decision which was
+   * computed before the cache was cleared is not stored.
+   */
+  public static final class Key
+  {
+    private final String url;
+    private final ContentType contentType;
+    private final List<String> referrerChain;
+    private final String siteKey;
+    private final long generation;
+    private final int hashCode;
+
+    private Key(final String url, final ContentType contentType,
+                final List<String> referrerChain, final String siteKey, final long generation)
+    {
+      this.url = url;
+      this.contentType = contentType;
+      this.referrerChain = referrerChain;
+      this.siteKey = siteKey;
+      this.generation = generation;
+
+      int hash = url.hashCode();
+      hash = 31 * hash + contentType.hashCode();
+      hash = 31 * hash + referrerChain.hashCode();
+      hash = 31 * hash + (siteKey != null ? siteKey.hashCode() : 0);
+      this.hashCode = hash;
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+      if (this == other)
+      {
+        return true;
+      }
+      if (!(other instanceof Key))
+      {
+        return false;
+      }
+      final Key key = (Key) other;
+      return hashCode == key.hashCode
+        && contentType == key.contentType
+        && url.equals(key.url)
+        && (siteKey != null ? siteKey.equals(key.siteKey) : key.siteKey == null)
+        && referrerChain.equals(key.referrerChain);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hashCode;
+    }
+  }
+
+  private final Map<Key, Decision> map;
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong missCount = new AtomicLong(0);
+  private long generation = 0;
+
+  public RequestDecisionCache()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity max entries count, the least recently used entries are evicted first
+   */
+  public RequestDecisionCache(final int capacity)
+  {
+    if (capacity <= 0)
+    {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.map = new LinkedHashMap<Key, Decision>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Key, Decision> eldest)
+      {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Create a cache key
+   * @param url request URL
+   * @param contentType request content type
+   * @param referrerChain frames hierarchy, must not be modified after the key is created
+   * @param siteKey sitekey or `null`
+   * @return cache key to be used in {@link #get(Key)} and {@link #put(Key, Decision)}
+   */
+  public synchronized Key newKey(final String url, final ContentType contentType,
+                                 final List<String> referrerChain, final String siteKey)
+  {
+    return new Key(url, contentType, referrerChain, siteKey, generation);
+  }
+
+  /**
+   * Get cached decision
+   * @param key cache key
+   * @return decision or `null` if not cached
+   */
+  public Decision get(final Key key)
+  {
+    final Decision decision;
+    synchronized (this)
+    {
+      decision = map.get(key);
+    }
+    (decision != null ? hitCount : missCount).incrementAndGet();
+    return decision;
+  }
+
+  /**
+   * Put decision into the cache. The decision is dropped if the cache was cleared after
+   * the key was created.
+   * @param key cache key
+   * @param decision decision
+   */
+  public synchronized void put(final Key key, final Decision decision)
+  {
+    if (key.generation == generation)
+    {
+      map.put(key, decision);
+    }
+  }
+
+  /**
+   * Remove all the cached decisions
+   */
+  public synchronized void clear()
+  {
+    generation++;
+    map.clear();
+  }
+
+  public synchronized int size()
+  {
+    return map.size();
+  }
+
+  public long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  public long getMissCount()
+  {
+    return missCount.get();
+  }
+}
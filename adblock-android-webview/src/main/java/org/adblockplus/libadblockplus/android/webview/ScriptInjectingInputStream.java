@@ -0,0 +1,260 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * Passes the HTML document content through, inserting the script before the last
+ * `</body>` tag (case-insensitive).
+ * <p>
+ * The content is not decoded: the tag is searched in the bytes encoded with the document charset,
+ * so only the bytes that can still be (a part of) the last tag are held back.
+ * If the tag is found too early in the document (the content after it exceeds
+ * {@link #MAX_HELD_BYTES}), the script is inserted before that tag.
+ * <p>
+ * Not thread-safe.
+ */
+public class ScriptInjectingInputStream extends InputStream
+{
+  public static final int MAX_HELD_BYTES = 256 * 1024;
+
+  private static final String BODY_CLOSE_TAG = "</body>";
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * Provides the content to insert. Called once the tag is found, on the reading thread.
+   */
+  public interface InjectionProvider
+  {
+    /**
+     * @return the content to insert before the tag or `null` to skip the insertion
+     */
+    String getInjection();
+  }
+
+  private final InputStream source;
+  private final Charset charset;
+  private final InjectionProvider provider;
+  // the tag bytes in lower and upper case, `null` if the charset is not supported
+  private final byte[] lowerTag;
+  private final byte[] upperTag;
+  // the tag can start only at the offsets which are multiple of the char size
+  private final int charSize;
+
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private long bufferOffset = 0; // stream offset of `buffer[0]`
+  private int length = 0;        // bytes count in the buffer
+  private int readPos = 0;       // next byte to return
+  private int safeEnd = 0;       // the bytes before can be returned
+  private int searchPos = 0;     // the tag can't start before
+  private int matchPos = -1;     // the last tag found
+  private boolean passThrough;   // the script is inserted or can't be inserted
+  private boolean eof = false;
+
+  /**
+   * @param source the document content
+   * @param charset the document charset
+   * @param provider provides the script to insert
+   */
+  public ScriptInjectingInputStream(final InputStream source, final Charset charset,
+                                    final InjectionProvider provider)
+  {
+    this.source = source;
+    this.charset = charset;
+    this.provider = provider;
+
+    final byte[] lower = BODY_CLOSE_TAG.getBytes(charset);
+    final byte[] upper = BODY_CLOSE_TAG.toUpperCase(Locale.ROOT).getBytes(charset);
+    final byte[] lessThanSign = "<".getBytes(charset);
+    // stateful encodings (eg. BOM written on every encoding) are not supported
+    if (lower.length == upper.length &&
+        lower.length == BODY_CLOSE_TAG.length() * lessThanSign.length &&
+        Arrays.equals("<<".getBytes(charset), concat(lessThanSign, lessThanSign)))
+    {
+      this.lowerTag = lower;
+      this.upperTag = upper;
+      this.charSize = lessThanSign.length;
+      this.passThrough = false;
+    }
+    else
+    {
+      Timber.w("Charset %s is not supported, the script won't be injected", charset.name());
+      this.lowerTag = null;
+      this.upperTag = null;
+      this.charSize = 1;
+      this.passThrough = true;
+    }
+  }
+
+  private static byte[] concat(final byte[] first, final byte[] second)
+  {
+    final byte[] result = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    final byte[] single = new byte[1];
+    final int count = read(single, 0, 1);
+    return (count == -1 ? -1 : single[0] & 0xFF);
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException
+  {
+    if (len == 0)
+    {
+      return 0;
+    }
+    while (readPos >= safeEnd)
+    {
+      if (eof)
+      {
+        return -1;
+      }
+      fill();
+    }
+    final int count = Math.min(len, safeEnd - readPos);
+    System.arraycopy(buffer, readPos, b, off, count);
+    readPos += count;
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException
+  {
+    return safeEnd - readPos;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    source.close();
+  }
+
+  private void fill() throws IOException
+  {
+    compact();
+    if (length == buffer.length)
+    {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    final int count = source.read(buffer, length, buffer.length - length);
+    if (count < 0)
+    {
+      eof = true;
+      if (matchPos >= 0)
+      {
+        inject();
+      }
+      safeEnd = length;
+      return;
+    }
+    length += count;
+
+    if (passThrough)
+    {
+      safeEnd = length;
+      return;
+    }
+
+    search();
+    if (matchPos >= 0 && length - matchPos > MAX_HELD_BYTES)
+    {
+      Timber.w("Too much content after `%s`, injecting the script before it", BODY_CLOSE_TAG);
+      inject();
+      safeEnd = length;
+    }
+  }
+
+  // drops the returned bytes from the buffer
+  private void compact()
+  {
+    if (readPos == 0)
+    {
+      return;
+    }
+    System.arraycopy(buffer, readPos, buffer, 0, length - readPos);
+    bufferOffset += readPos;
+    length -= readPos;
+    safeEnd -= readPos;
+    searchPos = Math.max(0, searchPos - readPos);
+    if (matchPos >= 0)
+    {
+      matchPos -= readPos;
+    }
+    readPos = 0;
+  }
+
+  private void search()
+  {
+    final int lastStart = length - lowerTag.length;
+    for (int i = searchPos; i <= lastStart; i++)
+    {
+      if ((bufferOffset + i) % charSize == 0 && matchesAt(i))
+      {
+        matchPos = i;
+      }
+    }
+    searchPos = Math.max(searchPos, lastStart + 1);
+    // the bytes starting from the last tag found are held until it's known to be the last one
+    safeEnd = (matchPos >= 0 ? matchPos : searchPos);
+  }
+
+  private boolean matchesAt(final int pos)
+  {
+    for (int i = 0; i < lowerTag.length; i++)
+    {
+      final byte value = buffer[pos + i];
+      if (value != lowerTag[i] && value != upperTag[i])
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // inserts the script at `matchPos` and switches to pass-through mode
+  private void inject()
+  {
+    passThrough = true;
+    final String injection = provider.getInjection();
+    final int pos = matchPos;
+    matchPos = -1;
+    if (injection == null)
+    {
+      return;
+    }
+    final byte[] injectionBytes = injection.getBytes(charset);
+    final byte[] newBuffer = new byte[Math.max(BUFFER_SIZE, length + injectionBytes.length)];
+    System.arraycopy(buffer, 0, newBuffer, 0, pos);
+    System.arraycopy(injectionBytes, 0, newBuffer, pos, injectionBytes.length);
+    System.arraycopy(buffer, pos, newBuffer, pos + injectionBytes.length, length - pos);
+    buffer = newBuffer;
+    length += injectionBytes.length;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android.webview.test
+
+package org.adblockplus.libadblockplus.android.webview.test
+
+import org.adblockplus.libadblockplus.android.webview.CspScriptSrcRewriter
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class CspScriptSrcRewriterTest {
+
+    @Test
+    fun testNonceIsGeneratedPerResponse() {
+        val rewriter = CspScriptSrcRewriter()
+        val header = "default-src 'self'; script-src 'self' https://cdn.com;object-src 'none'"
+
+        val first = rewriter.rewrite(header)
+        val second = rewriter.rewrite(header)
+        assertNotNull(first.nonce)
+        assertNotNull(second.nonce)
+        assertNotEquals(first.nonce, second.nonce)
+        assertEquals("default-src 'self'; script-src 'nonce-${first.nonce}' 'self' https://cdn.com;object-src 'none'",
+            first.header)
+        assertEquals(header.replace("script-src", "script-src 'nonce-${second.nonce}'"), second.header)
+        assertEquals(1, rewriter.cacheSize)
+    }
+
+    @Test
+    fun testDirectiveNameIsMatchedExactly() {
+        val rewriter = CspScriptSrcRewriter()
+
+        // `script-src-elem` is not `script-src`
+        val elemOnly = rewriter.rewrite("script-src-elem 'nonce-abc'")
+        assertNull(elemOnly.nonce)
+        assertNull(elemOnly.header)
+
+        // case-insensitive
+        val upperCase = rewriter.rewrite("Script-Src 'NONCE-abc' 'self'")
+        assertEquals("abc", upperCase.nonce)
+        assertNull(upperCase.header)
+    }
+
+    @Test
+    fun testUnsafeInlineIsIgnoredWithHash() {
+        val rewriter = CspScriptSrcRewriter()
+
+        val unsafeInline = rewriter.rewrite("script-src 'self' 'unsafe-inline'")
+        assertNull(unsafeInline.nonce)
+        assertNull(unsafeInline.header)
+
+        val unsafeInlineWithHash = rewriter.rewrite("script-src 'unsafe-inline' 'sha256-abc='")
+        assertNotNull(unsafeInlineWithHash.nonce)
+        assertEquals("script-src 'nonce-${unsafeInlineWithHash.nonce}' 'unsafe-inline' 'sha256-abc='",
+            unsafeInlineWithHash.header)
+    }
+
+    @Test
+    fun testCacheIsBounded() {
+        val rewriter = CspScriptSrcRewriter(2)
+        rewriter.rewrite("script-src 'self'")
+        rewriter.rewrite("script-src 'none'")
+        rewriter.rewrite("script-src *")
+        assertEquals(2, rewriter.cacheSize)
+    }
+}
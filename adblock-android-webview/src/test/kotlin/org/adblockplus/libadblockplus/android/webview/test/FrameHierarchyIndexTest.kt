@@ -0,0 +1,130 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android.webview.test
+
+import org.adblockplus.libadblockplus.android.webview.FrameHierarchyIndex
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FrameHierarchyIndexTest {
+
+    @Test
+    fun testReferrerChain() {
+        val index = FrameHierarchyIndex()
+        index.put("https://domain.com/image.png", "https://domain.com/frame.html")
+        index.put("https://domain.com/frame.html", "https://domain.com/")
+
+        val expected = listOf("https://domain.com/frame.html", "https://domain.com/")
+        assertEquals(expected, index.getReferrerChain("https://domain.com/image.png"))
+        // cached one
+        assertEquals(expected, index.getReferrerChain("https://domain.com/image.png"))
+        assertEquals(emptyList<String>(), index.getReferrerChain("https://domain.com/"))
+    }
+
+    @Test
+    fun testReturnedChainIsModifiable() {
+        val index = FrameHierarchyIndex()
+        index.put("https://domain.com/image.png", "https://domain.com/")
+
+        index.getReferrerChain("https://domain.com/image.png").add("https://other.com/")
+        assertEquals(listOf("https://domain.com/"), index.getReferrerChain("https://domain.com/image.png"))
+    }
+
+    @Test
+    fun testCachedChainIsUpdated() {
+        val index = FrameHierarchyIndex()
+        index.put("https://domain.com/image.png", "https://domain.com/frame.html")
+        assertEquals(listOf("https://domain.com/frame.html"),
+            index.getReferrerChain("https://domain.com/image.png"))
+
+        // the chain tail gets a parent
+        index.put("https://domain.com/frame.html", "https://domain.com/")
+        assertEquals(listOf("https://domain.com/frame.html", "https://domain.com/"),
+            index.getReferrerChain("https://domain.com/image.png"))
+
+        // the mapping in the middle is changed
+        index.put("https://domain.com/frame.html", "https://other.com/")
+        assertEquals(listOf("https://domain.com/frame.html", "https://other.com/"),
+            index.getReferrerChain("https://domain.com/image.png"))
+    }
+
+    @Test
+    fun testEvictionInvalidatesDependentChains() {
+        // a single mapping per segment
+        val index = FrameHierarchyIndex(1)
+        index.put("https://domain.com/frame.html", "https://domain.com/")
+        index.put("https://domain.com/image.png", "https://domain.com/frame.html")
+
+        for (i in 0 until 100) {
+            val frameChain = index.getReferrerChain("https://domain.com/frame.html")
+            val imageChain = index.getReferrerChain("https://domain.com/image.png")
+            if (imageChain.isNotEmpty()) {
+                // the cached chain is the same as the resolved one after `frame.html` is evicted
+                assertEquals(if (frameChain.isEmpty()) listOf("https://domain.com/frame.html")
+                    else listOf("https://domain.com/frame.html", "https://domain.com/"), imageChain)
+            }
+            index.put("https://other.com/$i", "https://other.com/")
+        }
+    }
+
+    @Test
+    fun testReparentingInvalidatesDependentChainsOnly() {
+        val index = FrameHierarchyIndex()
+        index.put("https://a.com/image.png", "https://a.com/frame.html")
+        index.put("https://a.com/frame.html", "https://a.com/")
+        index.put("https://b.com/image.png", "https://b.com/")
+        assertEquals(listOf("https://a.com/frame.html", "https://a.com/"),
+            index.getReferrerChain("https://a.com/image.png"))
+        assertEquals(listOf("https://b.com/"), index.getReferrerChain("https://b.com/image.png"))
+
+        index.put("https://a.com/frame.html", "https://c.com/")
+        assertEquals(listOf("https://a.com/frame.html", "https://c.com/"),
+            index.getReferrerChain("https://a.com/image.png"))
+        assertEquals(listOf("https://b.com/"), index.getReferrerChain("https://b.com/image.png"))
+
+        index.put("https://a.com/image.png", "https://b.com/image.png")
+        assertEquals(listOf("https://b.com/image.png", "https://b.com/"),
+            index.getReferrerChain("https://a.com/image.png"))
+    }
+
+    @Test
+    fun testLoopDetection() {
+        val index = FrameHierarchyIndex()
+        index.put("https://a.com/", "https://b.com/")
+        index.put("https://b.com/", "https://c.com/")
+        index.put("https://c.com/", "https://b.com/")
+
+        assertEquals(listOf("https://b.com/", "https://c.com/"),
+            index.getReferrerChain("https://a.com/"))
+    }
+
+    @Test
+    fun testBoundedSize() {
+        val capacity = 64
+        val index = FrameHierarchyIndex(capacity)
+        for (i in 0 until 10 * capacity) {
+            index.put("https://domain.com/$i", "https://domain.com/")
+        }
+        assertTrue(index.size() <= capacity)
+        assertTrue(index.memoryFootprint > 0)
+
+        index.clear()
+        assertEquals(0, index.size())
+        assertEquals(0L, index.memoryFootprint)
+    }
+}
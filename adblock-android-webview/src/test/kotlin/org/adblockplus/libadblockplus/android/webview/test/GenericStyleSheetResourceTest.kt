@@ -0,0 +1,70 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview.test
+
+import org.adblockplus.libadblockplus.android.webview.GenericStyleSheetResource
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class GenericStyleSheetResourceTest {
+
+    private val prefix = "/abp123/generic-"
+    private val styleSheet = "#ad {display: none !important;}\n"
+
+    @Test
+    fun testPathIsStableForStyleSheet() {
+        val resource = GenericStyleSheetResource(prefix)
+        val path = resource.getPath(styleSheet)
+
+        assertTrue(path.startsWith(prefix))
+        assertTrue(resource.isResourcePath(path))
+        assertEquals(path, resource.getPath(String(styleSheet.toCharArray())))
+        assertFalse(resource.isResourcePath("/generic-1.css"))
+        assertFalse(resource.isResourcePath(null))
+    }
+
+    @Test
+    fun testBytes() {
+        val resource = GenericStyleSheetResource(prefix)
+        assertNull(resource.getBytes(prefix + "1.css"))
+
+        val path = resource.getPath(styleSheet)
+        val bytes = resource.getBytes(path)
+        assertArrayEquals(styleSheet.toByteArray(Charsets.UTF_8), bytes)
+        // encoded once
+        assertSame(bytes, resource.getBytes(path))
+    }
+
+    @Test
+    fun testNewStyleSheetGetsNewPath() {
+        val resource = GenericStyleSheetResource(prefix)
+        val path = resource.getPath(styleSheet)
+        val newStyleSheet = "#banner {display: none !important;}\n"
+        val newPath = resource.getPath(newStyleSheet)
+
+        assertNotEquals(path, newPath)
+        assertNull(resource.getBytes(path))
+        assertArrayEquals(newStyleSheet.toByteArray(Charsets.UTF_8), resource.getBytes(newPath))
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android.webview.test
+
+import org.adblockplus.ContentType
+import org.adblockplus.libadblockplus.android.webview.RequestDecisionCache
+import org.adblockplus.libadblockplus.android.webview.RequestDecisionCache.Decision
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class RequestDecisionCacheTest {
+
+    private val url = "https://tracker.com/pixel.gif"
+    private val chain = listOf("https://domain.com/frame.html", "https://domain.com/")
+
+    @Test
+    fun testPutGet() {
+        val cache = RequestDecisionCache()
+        assertNull(cache.get(cache.newKey(url, ContentType.IMAGE, chain, null)))
+        cache.put(cache.newKey(url, ContentType.IMAGE, chain, null), Decision.BLOCKED)
+
+        assertSame(Decision.BLOCKED, cache.get(cache.newKey(url, ContentType.IMAGE, ArrayList(chain), null)))
+        assertEquals(1, cache.hitCount)
+        assertEquals(1, cache.missCount)
+    }
+
+    @Test
+    fun testKeyComponents() {
+        val cache = RequestDecisionCache()
+        cache.put(cache.newKey(url, ContentType.IMAGE, chain, "siteKey"), Decision.ALLOWLISTED_FILTER)
+
+        assertNull(cache.get(cache.newKey(url, ContentType.SCRIPT, chain, "siteKey")))
+        assertNull(cache.get(cache.newKey(url, ContentType.IMAGE, chain, null)))
+        assertNull(cache.get(cache.newKey(url, ContentType.IMAGE, chain.subList(0, 1), "siteKey")))
+        assertNull(cache.get(cache.newKey("$url?q", ContentType.IMAGE, chain, "siteKey")))
+        assertSame(Decision.ALLOWLISTED_FILTER,
+            cache.get(cache.newKey(url, ContentType.IMAGE, chain, "siteKey")))
+    }
+
+    @Test
+    fun testLruEviction() {
+        val cache = RequestDecisionCache(2)
+        cache.put(cache.newKey("1", ContentType.IMAGE, chain, null), Decision.BLOCKED)
+        cache.put(cache.newKey("2", ContentType.IMAGE, chain, null), Decision.NOT_FOUND)
+        // touch "1" so "2" becomes the eldest one
+        cache.get(cache.newKey("1", ContentType.IMAGE, chain, null))
+        cache.put(cache.newKey("3", ContentType.IMAGE, chain, null), Decision.NOT_FOUND)
+
+        assertEquals(2, cache.size())
+        assertSame(Decision.BLOCKED, cache.get(cache.newKey("1", ContentType.IMAGE, chain, null)))
+        assertNull(cache.get(cache.newKey("2", ContentType.IMAGE, chain, null)))
+    }
+
+    @Test
+    fun testStalePutIsIgnoredAfterClear() {
+        val cache = RequestDecisionCache()
+        val key = cache.newKey(url, ContentType.IMAGE, chain, null)
+        cache.clear()
+        cache.put(key, Decision.BLOCKED)
+
+        assertEquals(0, cache.size())
+        assertNull(cache.get(cache.newKey(url, ContentType.IMAGE, chain, null)))
+    }
+}
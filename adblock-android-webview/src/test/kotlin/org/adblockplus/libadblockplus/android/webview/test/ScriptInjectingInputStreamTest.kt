@@ -0,0 +1,85 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android.webview.test
+
+import org.adblockplus.libadblockplus.android.webview.ScriptInjectingInputStream
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.InputStream
+import java.nio.charset.Charset
+
+class ScriptInjectingInputStreamTest {
+
+    private val script = "<script>js</script>"
+
+    // returns at most 1 byte per read to check the tag split between the reads
+    private class SlowInputStream(private val source: InputStream) : InputStream() {
+        override fun read(): Int = source.read()
+        override fun read(b: ByteArray, off: Int, len: Int): Int = source.read(b, off, minOf(len, 1))
+    }
+
+    private fun inject(html: String, charset: Charset = Charsets.UTF_8, injection: String? = script,
+                       slow: Boolean = false): String {
+        var source: InputStream = html.toByteArray(charset).inputStream()
+        if (slow) {
+            source = SlowInputStream(source)
+        }
+        val stream = ScriptInjectingInputStream(source, charset,
+            ScriptInjectingInputStream.InjectionProvider { injection })
+        return stream.use { String(it.readBytes(), charset) }
+    }
+
+    @Test
+    fun testInjectsBeforeLastBodyCloseTag() {
+        listOf(false, true).forEach { slow ->
+            assertEquals("<html><body>$script</body></html>",
+                inject("<html><body></body></html>", slow = slow))
+            assertEquals("<p>ü</BoDy>x$script</BODY>end",
+                inject("<p>ü</BoDy>x</BODY>end", slow = slow))
+        }
+    }
+
+    @Test
+    fun testNoBodyCloseTag() {
+        listOf(false, true).forEach { slow ->
+            assertEquals("<html><body></bod", inject("<html><body></bod", slow = slow))
+        }
+    }
+
+    @Test
+    fun testNullInjection() {
+        assertEquals("<body></body>", inject("<body></body>", injection = null))
+    }
+
+    @Test
+    fun testCharset() {
+        listOf(false, true).forEach { slow ->
+            assertEquals("<body>ж$script</body>",
+                inject("<body>ж</body>", Charsets.UTF_16LE, slow = slow))
+        }
+        // stateful encoding (BOM) is passed as is
+        assertEquals("<body>ж</body>", inject("<body>ж</body>", Charsets.UTF_16))
+    }
+
+    @Test
+    fun testHeldContentIsBounded() {
+        val content = "x".repeat(ScriptInjectingInputStream.MAX_HELD_BYTES + 1)
+        // the content after the tag is too large, so the script is injected before the first one
+        assertEquals("<body>$script</body>$content</body>",
+            inject("<body></body>$content</body>", slow = true))
+    }
+}
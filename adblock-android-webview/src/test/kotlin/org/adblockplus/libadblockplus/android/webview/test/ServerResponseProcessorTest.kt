@@ -24,6 +24,7 @@ import org.adblockplus.libadblockplus.ServerResponse
 import org.adblockplus.libadblockplus.android.webview.AdblockWebView
 import org.adblockplus.libadblockplus.android.webview.HttpHeaderSiteKeyExtractor.ServerResponseProcessor
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNull
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertTrue
@@ -165,6 +166,31 @@ class ServerResponseProcessorTest {
         }
     }
 
+    @Test
+    fun testInjectJavascriptIsDeferredUntilRead() {
+        val testServerResponseProcessor = TestServerResponseProcessorForInject()
+        testServerResponseProcessor.updateCspHeaderReturnValue = "testNonce"
+        var generateStylesheetCalled = false
+        val adblockWebViewMock = Mockito.mock(AdblockWebView::class.java)
+        whenever(adblockWebViewMock.generateStylesheetForUrl(anyOrNull(), anyOrNull())).thenAnswer {
+            generateStylesheetCalled = true
+            true
+        }
+        whenever(adblockWebViewMock.getInjectJs()).thenAnswer { "empty" }
+
+        val serverResponse = ServerResponse()
+        serverResponse.inputStream = "<html><body></body></html>".byteInputStream()
+        testServerResponseProcessor.injectJavascriptWrapper(
+            adblockWebViewMock, "testUrl.html", serverResponse, mutableMapOf())?.let { assertTrue(it) }
+
+        // the content is not read and the stylesheet is not generated until WebView reads it
+        assertFalse(generateStylesheetCalled)
+        assertEquals("<html><body><script nonce=\"testNonce\">empty</script></body></html>",
+            serverResponse.inputStream.reader().readText())
+        assertTrue(generateStylesheetCalled)
+        serverResponse.inputStream.close()
+    }
+
     @Test
     fun testUpdateCSPheader() {
         val NONCE_PREFIX = "nonce"
@@ -31,7 +31,13 @@ import org.adblockplus.libadblockplus.android.ConnectionInputStream;
 import org.adblockplus.libadblockplus.android.Utils;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -39,6 +45,7 @@ import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
 import wiremock.org.apache.http.HttpStatus;
@@ -258,6 +265,132 @@ public class AndroidHttpClientTest extends BaseFilterEngineTest
     }
   }
 
+  /**
+   * Minimal HTTP/1.1 keep-alive server counting the accepted connections
+   */
+  private static class KeepAliveServer implements Runnable
+  {
+    private static final String BODY = "Hello, World";
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connectionsCount = new AtomicInteger(0);
+
+    KeepAliveServer() throws IOException
+    {
+      serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+      new Thread(this).start();
+    }
+
+    String getUrl()
+    {
+      return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/index.html";
+    }
+
+    @Override
+    public void run()
+    {
+      while (!serverSocket.isClosed())
+      {
+        try
+        {
+          final Socket socket = serverSocket.accept();
+          connectionsCount.incrementAndGet();
+          new Thread(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              serve(socket);
+            }
+          }).start();
+        }
+        catch (final IOException e)
+        {
+          // closed
+        }
+      }
+    }
+
+    private void serve(final Socket socket)
+    {
+      try
+      {
+        final BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), charset));
+        final OutputStream outputStream = socket.getOutputStream();
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+          if (!line.isEmpty())
+          {
+            continue;
+          }
+          // end of the request headers
+          outputStream.write(("HTTP/1.1 200 OK\r\n" +
+              "Content-Type: text/plain\r\n" +
+              "Content-Length: " + BODY.length() + "\r\n" +
+              "Connection: keep-alive\r\n" +
+              "\r\n" + BODY).getBytes(charset));
+          outputStream.flush();
+        }
+        socket.close();
+      }
+      catch (final IOException e)
+      {
+        Timber.e(e, "Serving the connection failed");
+      }
+    }
+
+    int getConnectionsCount()
+    {
+      return connectionsCount.get();
+    }
+
+    void stop() throws IOException
+    {
+      serverSocket.close();
+    }
+  }
+
+  @Test
+  public void testConnectionReuseLocal() throws IOException
+  {
+    final int requestsCount = 5;
+    final KeepAliveServer server = new KeepAliveServer();
+    final AndroidHttpClient httpClient = (AndroidHttpClient) androidHttpClient;
+    httpClient.getConnectionMetrics().reset();
+    try
+    {
+      for (int i = 0; i < requestsCount; i++)
+      {
+        // the content is read completely by the client, so the connection is kept alive
+        final ServerResponse response =
+            makeHttpRequest(server.getUrl(), HttpClient.REQUEST_METHOD_GET, true, false);
+        assertNotNull(response);
+        assertEquals(HTTP_OK, response.getResponseStatus());
+      }
+      for (int i = 0; i < requestsCount; i++)
+      {
+        // the content is read completely by the caller
+        final ServerResponse response =
+            makeHttpRequest(server.getUrl(), HttpClient.REQUEST_METHOD_GET, true, true);
+        assertNotNull(response);
+        Utils.toByteArray(response.getInputStream());
+        response.getInputStream().close();
+      }
+
+      // new connections are not established for every request
+      Timber.d("%d connections accepted for %d requests",
+          server.getConnectionsCount(), 2 * requestsCount);
+      assertTrue(server.getConnectionsCount() < requestsCount);
+      assertEquals(2 * requestsCount, httpClient.getConnectionMetrics().getRequestsCount());
+    }
+    finally
+    {
+      server.stop();
+    }
+  }
+
   @Test
   public void testNotFollowingRedirectedHttpRequest()
   {
@@ -0,0 +1,209 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.HeaderEntry;
+import org.adblockplus.libadblockplus.HttpClient;
+import org.adblockplus.libadblockplus.HttpRequest;
+import org.adblockplus.libadblockplus.ServerResponse;
+import org.adblockplus.libadblockplus.android.ConditionalRequestHttpClient;
+import org.adblockplus.libadblockplus.android.Utils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ConditionalRequestHttpClientTest extends BaseTest
+{
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String URL = "https://easylist-downloads.adblockplus.org/easylist.txt";
+  private static final String ETAG = "\"5f3a-1\"";
+  private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+  private static final String LIST = "[Adblock Plus 2.0]\n! Diff-URL: diff/1.json\n||a.com^\n||b.com^\n";
+
+  private static final class ScriptedHttpClient extends HttpClient
+  {
+    private final List<HttpRequest> requests = new ArrayList<>();
+    private final LinkedList<ServerResponse> responses = new LinkedList<>();
+
+    @Override
+    public void request(final HttpRequest request, final Callback callback)
+    {
+      requests.add(request);
+      callback.onFinished(responses.removeFirst());
+    }
+  }
+
+  private static final class ResponseHolder implements HttpClient.Callback
+  {
+    private ServerResponse response;
+
+    @Override
+    public void onFinished(final ServerResponse response)
+    {
+      this.response = response;
+    }
+  }
+
+  private static ServerResponse buildResponse(final int status, final String body,
+                                              final List<HeaderEntry> headers)
+  {
+    final ServerResponse response = new ServerResponse();
+    response.setStatus(ServerResponse.NsStatus.OK);
+    response.setResponseStatus(status);
+    response.setResponseHeaders(headers);
+    if (body != null)
+    {
+      response.setResponse(Utils.stringToByteBuffer(body, UTF_8));
+    }
+    return response;
+  }
+
+  private static String getHeader(final HttpRequest request, final String name)
+  {
+    for (final HeaderEntry header : request.getHeaders())
+    {
+      if (header.getKey().equals(name))
+      {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static ServerResponse request(final HttpClient httpClient, final String url)
+  {
+    final ResponseHolder holder = new ResponseHolder();
+    httpClient.request(new HttpRequest(url), holder);
+    assertNotNull(holder.response);
+    return holder.response;
+  }
+
+  private static String getBody(final ServerResponse response)
+  {
+    return new String(Utils.byteBufferToByteArray(response.getResponse()), UTF_8);
+  }
+
+  private File getCacheDirectory()
+  {
+    return new File(basePath, ConditionalRequestHttpClient.CACHE_DIRECTORY);
+  }
+
+  @Test
+  public void testNotModifiedIsAnsweredWithStoredBody()
+  {
+    final ScriptedHttpClient scriptedHttpClient = new ScriptedHttpClient();
+    final ConditionalRequestHttpClient httpClient =
+      new ConditionalRequestHttpClient(scriptedHttpClient, getCacheDirectory(), false);
+
+    final List<HeaderEntry> headers = new ArrayList<>();
+    headers.add(HeaderEntry.of(HttpClient.HEADER_ETAG, ETAG));
+    headers.add(HeaderEntry.of(HttpClient.HEADER_LAST_MODIFIED, LAST_MODIFIED));
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK, LIST, headers));
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_NOT_MODIFIED, null,
+      Collections.<HeaderEntry>emptyList()));
+
+    assertEquals(LIST, getBody(request(httpClient, URL + "?lastVersion=0")));
+    assertNull(getHeader(scriptedHttpClient.requests.get(0), HttpClient.HEADER_IF_NONE_MATCH));
+
+    // the parameters are ignored
+    final ServerResponse response = request(httpClient, URL + "?lastVersion=1");
+    assertEquals(ETAG,
+      getHeader(scriptedHttpClient.requests.get(1), HttpClient.HEADER_IF_NONE_MATCH));
+    assertEquals(LAST_MODIFIED,
+      getHeader(scriptedHttpClient.requests.get(1), HttpClient.HEADER_IF_MODIFIED_SINCE));
+    assertEquals(HttpClient.STATUS_CODE_OK, response.getResponseStatus());
+    assertEquals(LIST, getBody(response));
+    assertEquals(1, httpClient.getNotModifiedCount());
+  }
+
+  @Test
+  public void testNotStoredWithoutValidators()
+  {
+    final ScriptedHttpClient scriptedHttpClient = new ScriptedHttpClient();
+    final ConditionalRequestHttpClient httpClient =
+      new ConditionalRequestHttpClient(scriptedHttpClient, getCacheDirectory(), false);
+
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK, LIST,
+      Collections.<HeaderEntry>emptyList()));
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK, LIST,
+      Collections.<HeaderEntry>emptyList()));
+
+    request(httpClient, URL);
+    request(httpClient, URL);
+    assertNull(getHeader(scriptedHttpClient.requests.get(1), HttpClient.HEADER_IF_NONE_MATCH));
+    assertNull(getHeader(scriptedHttpClient.requests.get(1), HttpClient.HEADER_IF_MODIFIED_SINCE));
+  }
+
+  @Test
+  public void testDiffIsAppliedToStoredBody()
+  {
+    final ScriptedHttpClient scriptedHttpClient = new ScriptedHttpClient();
+    final ConditionalRequestHttpClient httpClient =
+      new ConditionalRequestHttpClient(scriptedHttpClient, getCacheDirectory(), true);
+
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK, LIST,
+      Collections.singletonList(HeaderEntry.of(HttpClient.HEADER_ETAG, ETAG))));
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK,
+      "{\"filters\": {\"add\": [\"||c.com^\"], \"remove\": [\"||a.com^\"]}}",
+      Collections.<HeaderEntry>emptyList()));
+
+    request(httpClient, URL);
+    final ServerResponse response = request(httpClient, URL + "?lastVersion=1");
+
+    assertEquals("https://easylist-downloads.adblockplus.org/diff/1.json",
+      scriptedHttpClient.requests.get(1).getUrl());
+    assertEquals(HttpClient.STATUS_CODE_OK, response.getResponseStatus());
+    assertEquals("[Adblock Plus 2.0]\n! Diff-URL: diff/1.json\n||b.com^\n||c.com^\n",
+      getBody(response));
+    assertEquals(1, httpClient.getDiffCount());
+  }
+
+  @Test
+  public void testFullRequestIfDiffIsNotAvailable()
+  {
+    final ScriptedHttpClient scriptedHttpClient = new ScriptedHttpClient();
+    final ConditionalRequestHttpClient httpClient =
+      new ConditionalRequestHttpClient(scriptedHttpClient, getCacheDirectory(), true);
+
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_OK, LIST,
+      Collections.singletonList(HeaderEntry.of(HttpClient.HEADER_ETAG, ETAG))));
+    scriptedHttpClient.responses.add(buildResponse(404, null,
+      Collections.<HeaderEntry>emptyList()));
+    scriptedHttpClient.responses.add(buildResponse(HttpClient.STATUS_CODE_NOT_MODIFIED, null,
+      Collections.<HeaderEntry>emptyList()));
+
+    request(httpClient, URL);
+    final ServerResponse response = request(httpClient, URL);
+
+    assertEquals(3, scriptedHttpClient.requests.size());
+    assertEquals(ETAG,
+      getHeader(scriptedHttpClient.requests.get(2), HttpClient.HEADER_IF_NONE_MATCH));
+    assertEquals(LIST, getBody(response));
+    assertEquals(0, httpClient.getDiffCount());
+    assertEquals(1, httpClient.getNotModifiedCount());
+  }
+}
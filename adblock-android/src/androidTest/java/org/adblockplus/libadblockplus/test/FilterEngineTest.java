@@ -19,7 +19,10 @@ package org.adblockplus.libadblockplus.test;
 
 import org.adblockplus.ContentType;
 import org.adblockplus.EmulationSelector;
+import org.adblockplus.EvaluationResult;
 import org.adblockplus.Filter;
+import org.adblockplus.MatchesResult;
+import org.adblockplus.RequestDescriptor;
 import org.adblockplus.Subscription;
 import org.adblockplus.libadblockplus.FilterEngine;
 import org.junit.Test;
@@ -433,6 +436,93 @@ public class FilterEngineTest extends BaseFilterEngineTest
         Arrays.asList("http://example.co.uk", "http://example.de"), FilterEngine.EMPTY_SITEKEY));
   }
 
+  @Test
+  public void testMatchesWithIntMask()
+  {
+    filterEngine.addFilter(filterEngine.getFilterFromText("adbanner.gif$image"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("@@notbanner.gif$script"));
+
+    assertNotNull(filterEngine.matches("http://example.org/adbanner.gif",
+        ContentType.MASK_IMAGE | ContentType.MASK_SCRIPT, "", FilterEngine.EMPTY_SITEKEY, false));
+    assertNull(filterEngine.matches("http://example.org/adbanner.gif",
+        ContentType.MASK_SCRIPT, "", FilterEngine.EMPTY_SITEKEY, false));
+
+    final List<String> referrerChain = Collections.singletonList("http://example.org/");
+    assertTrue(filterEngine.isContentAllowlisted("http://example.org/notbanner.gif",
+        ContentType.MASK_SCRIPT, referrerChain, FilterEngine.EMPTY_SITEKEY));
+    assertFalse(filterEngine.isContentAllowlisted("http://example.org/notbanner.gif",
+        ContentType.MASK_IMAGE, referrerChain, FilterEngine.EMPTY_SITEKEY));
+  }
+
+  @Test
+  public void testMatchesBatch()
+  {
+    filterEngine.addFilter(filterEngine.getFilterFromText("adbanner.gif"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("@@notbanner.gif"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("||example.org/script.js$script"));
+
+    final List<RequestDescriptor> requests = Arrays.asList(
+        new RequestDescriptor("http://example.org/adbanner.gif", ContentType.MASK_IMAGE, ""),
+        new RequestDescriptor("http://example.org/notbanner.gif", ContentType.MASK_IMAGE, ""),
+        new RequestDescriptor("http://example.org/image.gif", ContentType.MASK_IMAGE, ""),
+        new RequestDescriptor("http://example.org/script.js", ContentType.MASK_SCRIPT, ""),
+        new RequestDescriptor("http://example.org/script.js", ContentType.MASK_IMAGE, ""));
+
+    final boolean[] blocked = filterEngine.matchesBatch(requests);
+    assertEquals(requests.size(), blocked.length);
+    assertTrue(blocked[0]);
+    assertFalse(blocked[1]);
+    assertFalse(blocked[2]);
+    assertTrue(blocked[3]);
+    assertFalse(blocked[4]);
+
+    assertEquals(0, filterEngine.matchesBatch(new ArrayList<RequestDescriptor>()).length);
+  }
+
+  @Test
+  public void testEvaluateRequest()
+  {
+    filterEngine.addFilter(filterEngine.getFilterFromText("adbanner.gif"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("@@notbanner.gif"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("@@||example.org^$document"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("/generic.gif"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("@@||example.net^$genericblock"));
+
+    final List<String> referrerChain = Collections.singletonList("http://example.com/index.html");
+
+    EvaluationResult result = filterEngine.evaluateRequest("http://example.com/adbanner.gif",
+        maskOf(ContentType.IMAGE), referrerChain, FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.BLOCKED, result.verdict);
+    assertEquals(EvaluationResult.Reason.BLOCKING_FILTER, result.reason);
+    assertEquals("adbanner.gif", result.filterText);
+
+    result = filterEngine.evaluateRequest("http://example.com/notbanner.gif",
+        maskOf(ContentType.IMAGE), referrerChain, FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.ALLOWLISTED, result.verdict);
+    assertEquals(EvaluationResult.Reason.FILTER_ALLOWLISTED, result.reason);
+    assertNull(result.filterText);
+
+    result = filterEngine.evaluateRequest("http://example.com/adbanner.gif",
+        maskOf(ContentType.IMAGE), Collections.singletonList("http://example.org/index.html"),
+        FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.ALLOWLISTED, result.verdict);
+    assertEquals(EvaluationResult.Reason.DOCUMENT_ALLOWLISTED, result.reason);
+
+    result = filterEngine.evaluateRequest("http://example.com/image.gif",
+        maskOf(ContentType.IMAGE), referrerChain, FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.NOT_FOUND, result.verdict);
+    assertEquals(EvaluationResult.Reason.NO_FILTER, result.reason);
+
+    // genericblock makes only domain specific filters to be checked
+    result = filterEngine.evaluateRequest("http://example.com/generic.gif",
+        maskOf(ContentType.IMAGE), referrerChain, FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.BLOCKED, result.verdict);
+    result = filterEngine.evaluateRequest("http://example.com/generic.gif",
+        maskOf(ContentType.IMAGE), Collections.singletonList("http://example.net/index.html"),
+        FilterEngine.EMPTY_SITEKEY);
+    assertEquals(MatchesResult.NOT_FOUND, result.verdict);
+  }
+
   @Test
   public void testElemhideAllowlisting()
   {
@@ -649,6 +739,20 @@ public class FilterEngineTest extends BaseFilterEngineTest
     assertTrue(sheetNonExisting.isEmpty());
   }
 
+  @Test
+  public void testElementHidingGenericStyleSheet()
+  {
+    filterEngine.addFilter(filterEngine.getFilterFromText("###testcase-eh-id"));
+    filterEngine.addFilter(filterEngine.getFilterFromText("example.org##.testcase-eh-class"));
+
+    final String generic = filterEngine.getElementHidingGenericStyleSheet();
+    assertEquals("#testcase-eh-id {display: none !important;}\n", generic);
+
+    final String specific = filterEngine.getElementHidingStyleSheet("example.org", true);
+    assertEquals(".testcase-eh-class {display: none !important;}\n", specific);
+    assertEquals(filterEngine.getElementHidingStyleSheet("example.org"), generic + specific);
+  }
+
   @Test
   public void testElementHidingStyleSheetGenerichide()
   {
@@ -155,6 +155,45 @@ class AdblockEngineSettingsTest {
         assertEquals(AdblockEngineSettings.FiltersChangedListener.FilterEvent.FILTER_REMOVED, action)
     }
 
+    @Test
+    fun testBulkFilterChanges() {
+        // Verify preconditions
+        assertEquals(0, adblockEngine.settings().listedFilters.size)
+
+        val filters = (0 until 1000).map {
+            AdblockFilterBuilder(adblockEngine).allowlistAddress("domain$it.com").build()
+        }
+        var eventsCount = 0
+        val listener = object : AdblockEngineSettings.FiltersChangedListener {
+            override fun onFilterEvent(filterToEventMap: MutableMap<Filter,
+                    AdblockEngineSettings.FiltersChangedListener.FilterEvent>) {
+                eventsCount += filterToEventMap.size
+            }
+        }
+        adblockEngine.settings().addFiltersChangedListener(listener)
+
+        // Add all the filters in a single save
+        val addOperation = adblockEngine.settings().edit()
+        filters.forEach { addOperation.addCustomFilter(it) }
+        addOperation.save()
+        assertEquals(filters.size, eventsCount)
+        assertEquals(filters.size, adblockEngine.settings().listedFilters.size)
+
+        // Remove half of them in a single save
+        val removeOperation = adblockEngine.settings().edit()
+        filters.subList(0, filters.size / 2).forEach { removeOperation.removeCustomFilter(it) }
+        removeOperation.save()
+        assertEquals(filters.size / 2, adblockEngine.settings().listedFilters.size)
+        assertFalse(adblockEngine.settings().listedFilters.contains(filters[0]))
+        assertTrue(adblockEngine.settings().listedFilters.contains(filters[filters.size - 1]))
+
+        // Clear the rest, the actually removed filters are notified
+        eventsCount = 0
+        adblockEngine.settings().edit().clearCustomFilters().save()
+        assertEquals(filters.size / 2, eventsCount)
+        assertEquals(0, adblockEngine.settings().listedFilters.size)
+    }
+
     @Test
     fun testSubscriptionChangesAndListeners() {
         // Verify preconditions
@@ -40,6 +40,22 @@ public interface AdblockEngine
   @NotNull
   String getElementHidingStyleSheet(@NotNull String domain, boolean specificOnly);
 
+  /**
+   * Obtains element hiding CSS stylesheet for a domain split into the generic and the domain
+   * specific parts. The generic part is the stylesheet generated for no domain once per filter
+   * lists state and the same String instance is returned for all the domains, so it can be
+   * injected (and cached) separately from the usually much smaller domain specific part
+   * (see {@link #getElementHidingStyleSheet(String, boolean)} with `specificOnly` set).
+   * The generic part does not take the domain element hiding exceptions into account.
+   *
+   * @param domain the domain for which you want the stylesheet, if empty or incorrect then
+   *               {@link ElementHidingStyleSheet#EMPTY} is returned
+   * @param specificOnly if true the generic part is always empty
+   * @return the stylesheet parts
+   */
+  @NotNull
+  ElementHidingStyleSheet getElementHidingStyleSheets(@NotNull String domain, boolean specificOnly);
+
   /**
    * Obtains element hiding emulation selectors for a domain.
    *
@@ -64,6 +80,20 @@ public interface AdblockEngine
   boolean isContentAllowlisted(@NotNull String url, @NotNull Set<ContentType> contentTypes,
                                @NotNull List<String> referrerChain, @NotNull String siteKey);
 
+  /**
+   * Checks whether the resource at the supplied URL is allowlisted.
+   * Allocation-free alternative of {@link AdblockEngine#isContentAllowlisted(String, Set, List, String)}.
+   *
+   * @param url URL of the resource
+   * @param contentTypeMask Content types of requested resource, a combination of
+   *                        `ContentType.MASK_*` bits, eg. {@link ContentType#MASK_IMAGE}
+   * @param referrerChain Chain of URLs requesting the resource
+   * @param siteKey Public key provided by the document, can be empty
+   * @return `true` if the URL is allowlisted
+   */
+  boolean isContentAllowlisted(@NotNull String url, int contentTypeMask,
+                               @NotNull List<String> referrerChain, @NotNull String siteKey);
+
   /**
    * Checks whether the resource at the supplied URL has a blocking filter.
    * For checking allowlisting filters use {@link AdblockEngine#isContentAllowlisted}.
@@ -81,6 +111,69 @@ public interface AdblockEngine
   MatchesResult matches(@NotNull String url, @NotNull Set<ContentType> contentTypes, @NotNull String parent,
                         @NotNull String siteKey, boolean domainSpecificOnly);
 
+  /**
+   * Checks whether the resource at the supplied URL has a blocking filter.
+   * Allocation-free alternative of {@link AdblockEngine#matches(String, Set, String, String, boolean)}.
+   *
+   * @param url URL of the resource
+   * @param contentTypeMask Content types of requested resource, a combination of
+   *                        `ContentType.MASK_*` bits, eg. {@link ContentType#MASK_IMAGE}
+   * @param parent Immediate parent of the {@param url}.
+   * @param siteKey Public key provided by the document, can be empty
+   * @param domainSpecificOnly If `true` then we check only domain specific filters
+   * @return {@link MatchesResult#NOT_ENABLED} if FilterEngine is not enabled,
+   *         {@link MatchesResult#BLOCKED} when blocking filter was found or
+   *         {@link MatchesResult#NOT_FOUND} when blocking filter was not found.
+   */
+  @NotNull
+  MatchesResult matches(@NotNull String url, int contentTypeMask, @NotNull String parent,
+                        @NotNull String siteKey, boolean domainSpecificOnly);
+
+  /**
+   * Checks many resources for blocking filters in a single call into the engine, eg. to
+   * pre-classify resources found by a preload scanner or a prefetcher.
+   * Every result is the same as {@link AdblockEngine#matches(String, int, String, String, boolean)}
+   * would return for the request.
+   *
+   * @param requests Resources to be checked
+   * @return results in the order of {@param requests}, all of them are
+   *         {@link MatchesResult#NOT_ENABLED} if FilterEngine is not enabled
+   */
+  @NotNull
+  MatchesResult[] matchesBatch(@NotNull List<RequestDescriptor> requests);
+
+  /**
+   * Evaluates the full filtering verdict for a resource in a single call into the engine.
+   * It's equivalent to checking {@link AdblockEngine#isContentAllowlisted} for
+   * {@link ContentType#DOCUMENT}, then for {@link ContentType#GENERICBLOCK} (to find out if
+   * only domain specific filters should be checked), then for the {@param contentTypes} and
+   * finally calling {@link AdblockEngine#matches}.
+   *
+   * @param url URL of the resource
+   * @param contentTypes Set of content types for requested resource
+   * @param referrerChain Chain of URLs requesting the resource, the first one is the immediate parent
+   * @param siteKey Public key provided by the document, can be empty
+   * @return {@link EvaluationResult} with the verdict, its reason and the blocking filter
+   */
+  @NotNull
+  EvaluationResult evaluateRequest(@NotNull String url, @NotNull Set<ContentType> contentTypes,
+                                   @NotNull List<String> referrerChain, @NotNull String siteKey);
+
+  /**
+   * Evaluates the full filtering verdict for a resource in a single call into the engine.
+   * Allocation-free alternative of {@link AdblockEngine#evaluateRequest(String, Set, List, String)}.
+   *
+   * @param url URL of the resource
+   * @param contentTypeMask Content types of requested resource, a combination of
+   *                        `ContentType.MASK_*` bits, eg. {@link ContentType#MASK_IMAGE}
+   * @param referrerChain Chain of URLs requesting the resource, the first one is the immediate parent
+   * @param siteKey Public key provided by the document, can be empty
+   * @return {@link EvaluationResult} with the verdict, its reason and the blocking filter
+   */
+  @NotNull
+  EvaluationResult evaluateRequest(@NotNull String url, int contentTypeMask,
+                                   @NotNull List<String> referrerChain, @NotNull String siteKey);
+
   /**
    * Creates a {@link Subscription} object from url.
    *
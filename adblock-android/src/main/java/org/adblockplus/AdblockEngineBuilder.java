@@ -59,4 +59,26 @@ public interface AdblockEngineBuilder
    */
   @NotNull
   AdblockEngineBuilder preloadSubscriptions(@NotNull Map<String, Integer> resourceMap, boolean forceUpdate);
+
+  /**
+   * Call it to revalidate the {@link Subscription} updates with `If-None-Match`/`If-Modified-Since` requests
+   * instead of downloading unchanged {@link Subscription}s again. The downloaded {@link Subscription}s are stored
+   * in the base path along with their validators.
+   *
+   * @param diffUpdates When set to true then the {@link Subscription}s providing `! Diff-URL:` are updated by
+   *                    downloading the diffs only.
+   * @return {@link AdblockEngineBuilder} to allow chaining
+   */
+  @NotNull
+  AdblockEngineBuilder revalidateSubscriptions(boolean diffUpdates);
+
+  /**
+   * Call it to keep a memory-mapped snapshot of the host-anchored filters next to `patterns.ini`. The snapshot is
+   * loaded without parsing the filter lists and is updated in the background whenever the {@link Subscription}s
+   * or the filters are saved by {@link AdblockEngine}.
+   *
+   * @return {@link AdblockEngineBuilder} to allow chaining
+   */
+  @NotNull
+  AdblockEngineBuilder useFilterIndexSnapshot();
 }
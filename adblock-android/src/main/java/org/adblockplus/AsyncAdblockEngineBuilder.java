@@ -20,6 +20,7 @@ package org.adblockplus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
@@ -43,6 +44,13 @@ public interface AsyncAdblockEngineBuilder
      */
     CREATING,
 
+    /**
+     * Creating in progress, the snapshot of the host-anchored filters is loaded
+     * and {@link AsyncAdblockEngineBuilder#matchesPartially} answers the requests in the meantime
+     * (see {@link AsyncAdblockEngineBuilder#useFilterIndexSnapshot()})
+     */
+    PARTIALLY_READY,
+
     /**
      * Created, ready for work
      */
@@ -85,6 +93,7 @@ public interface AsyncAdblockEngineBuilder
 
   /**
    * Triggers asynchronous {@link AdblockEngine} building in provided ExecutorService object.
+   * If the building fails the state is reset to {@link State#INITIAL}.
    *
    * @param executorService to run the build operation
    * @return current build {@link State}
@@ -110,6 +119,22 @@ public interface AsyncAdblockEngineBuilder
   @Nullable
   AdblockEngine getAdblockEngine();
 
+  /**
+   * Checks whether the resource at the supplied URL has a host-anchored blocking filter
+   * (`||host^`) while {@link AdblockEngine} is being created, ie. in {@link State#PARTIALLY_READY} state.
+   * It does not wait for the filter lists to be parsed, but it does not apply the other filters and the sitekeys,
+   * so {@link AdblockEngine#matches} should be used once the state is {@link State#CREATED}.
+   *
+   * @param url URL to match
+   * @param referrerChain Chain of URLs requesting the resource
+   * @return {@link MatchesResult#ALLOWLISTED} when any of the referrers is allowlisted with a `$document` filter,
+   *         {@link MatchesResult#BLOCKED} when the resource is blocked,
+   *         {@link MatchesResult#NOT_FOUND} when blocking filter was not found or an exception filter was found,
+   *         {@link MatchesResult#NOT_ENABLED} when the snapshot is not available or ad filtering is disabled.
+   */
+  @NotNull
+  MatchesResult matchesPartially(@NotNull String url, @NotNull List<String> referrerChain);
+
   /**
    * Call it to register {@link StateListener}.
    *
@@ -148,4 +173,26 @@ public interface AsyncAdblockEngineBuilder
    */
   @NotNull
   AsyncAdblockEngineBuilder preloadSubscriptions(@NotNull Map<String, Integer> resourceMap, boolean forceUpdate);
+
+  /**
+   * Call it to revalidate the {@link Subscription} updates with `If-None-Match`/`If-Modified-Since` requests
+   * instead of downloading unchanged {@link Subscription}s again. The downloaded {@link Subscription}s are stored
+   * in the base path along with their validators.
+   *
+   * @param diffUpdates When set to true then the {@link Subscription}s providing `! Diff-URL:` are updated by
+   *                    downloading the diffs only.
+   * @return {@link AsyncAdblockEngineBuilder} to allow chaining
+   */
+  @NotNull
+  AsyncAdblockEngineBuilder revalidateSubscriptions(boolean diffUpdates);
+
+  /**
+   * Call it to keep a memory-mapped snapshot of the host-anchored filters next to `patterns.ini`. The snapshot is
+   * loaded without parsing the filter lists and is updated in the background whenever the {@link Subscription}s
+   * or the filters are saved by {@link AdblockEngine}.
+   *
+   * @return {@link AsyncAdblockEngineBuilder} to allow chaining
+   */
+  @NotNull
+  AsyncAdblockEngineBuilder useFilterIndexSnapshot();
 }
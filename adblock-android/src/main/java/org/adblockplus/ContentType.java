@@ -19,6 +19,7 @@ package org.adblockplus;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -27,23 +28,56 @@ import java.util.Set;
  */
 public enum ContentType
 {
-  DOCUMENT,
-  ELEMHIDE,
-  FONT,
-  GENERICBLOCK,
-  GENERICHIDE,
-  IMAGE,
-  MEDIA,
-  OBJECT,
-  OBJECT_SUBREQUEST,
-  OTHER,
-  PING,
-  SCRIPT,
-  STYLESHEET,
-  SUBDOCUMENT,
-  WEBRTC,
-  WEBSOCKET,
-  XMLHTTPREQUEST;
+  DOCUMENT(ContentType.MASK_DOCUMENT),
+  ELEMHIDE(ContentType.MASK_ELEMHIDE),
+  FONT(ContentType.MASK_FONT),
+  GENERICBLOCK(ContentType.MASK_GENERICBLOCK),
+  GENERICHIDE(ContentType.MASK_GENERICHIDE),
+  IMAGE(ContentType.MASK_IMAGE),
+  MEDIA(ContentType.MASK_MEDIA),
+  OBJECT(ContentType.MASK_OBJECT),
+  OBJECT_SUBREQUEST(ContentType.MASK_OBJECT_SUBREQUEST),
+  OTHER(ContentType.MASK_OTHER),
+  PING(ContentType.MASK_PING),
+  SCRIPT(ContentType.MASK_SCRIPT),
+  STYLESHEET(ContentType.MASK_STYLESHEET),
+  SUBDOCUMENT(ContentType.MASK_SUBDOCUMENT),
+  WEBRTC(ContentType.MASK_WEBRTC),
+  WEBSOCKET(ContentType.MASK_WEBSOCKET),
+  XMLHTTPREQUEST(ContentType.MASK_XMLHTTPREQUEST);
+
+  /*
+   * Precomputed bits of the content types to be used in the allocation-free `int` mask overloads
+   * of the matching API, eg. `ContentType.MASK_IMAGE | ContentType.MASK_SCRIPT`.
+   * Every content type takes a single bit, there must be not more than 32 of them.
+   */
+  public static final int MASK_DOCUMENT = 1 << 0;
+  public static final int MASK_ELEMHIDE = 1 << 1;
+  public static final int MASK_FONT = 1 << 2;
+  public static final int MASK_GENERICBLOCK = 1 << 3;
+  public static final int MASK_GENERICHIDE = 1 << 4;
+  public static final int MASK_IMAGE = 1 << 5;
+  public static final int MASK_MEDIA = 1 << 6;
+  public static final int MASK_OBJECT = 1 << 7;
+  public static final int MASK_OBJECT_SUBREQUEST = 1 << 8;
+  public static final int MASK_OTHER = 1 << 9;
+  public static final int MASK_PING = 1 << 10;
+  public static final int MASK_SCRIPT = 1 << 11;
+  public static final int MASK_STYLESHEET = 1 << 12;
+  public static final int MASK_SUBDOCUMENT = 1 << 13;
+  public static final int MASK_WEBRTC = 1 << 14;
+  public static final int MASK_WEBSOCKET = 1 << 15;
+  public static final int MASK_XMLHTTPREQUEST = 1 << 16;
+
+  /**
+   * The bit of this content type in the `int` mask
+   */
+  public final int mask;
+
+  ContentType(final int mask)
+  {
+    this.mask = mask;
+  }
 
   /**
    * Creates a set of {@link ContentType}s
@@ -60,4 +94,36 @@ public enum ContentType
     }
     return set;
   }
+
+  /**
+   * Creates an `int` mask of {@link ContentType}s
+   *
+   * @param contentTypes
+   * @return an `int` mask of {@link ContentType#mask} bits
+   */
+  public static int maskBitsOf(@NotNull final ContentType... contentTypes)
+  {
+    int mask = 0;
+    for (final ContentType contentType : contentTypes)
+    {
+      mask |= contentType.mask;
+    }
+    return mask;
+  }
+
+  /**
+   * Converts a collection of {@link ContentType}s into an `int` mask
+   *
+   * @param contentTypes
+   * @return an `int` mask of {@link ContentType#mask} bits
+   */
+  public static int maskBitsOf(@NotNull final Collection<ContentType> contentTypes)
+  {
+    int mask = 0;
+    for (final ContentType contentType : contentTypes)
+    {
+      mask |= contentType.mask;
+    }
+    return mask;
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Element hiding stylesheet for a domain split into the generic part, which is the same
+ * (shared String instance) for most of the domains, and the domain specific part.
+ * Applying both parts is equivalent to applying the full domain stylesheet, except for
+ * the generic rules disabled on the domain with the element hiding exceptions.
+ */
+public final class ElementHidingStyleSheet
+{
+  /**
+   * Stylesheet returned when ad filtering is disabled or the domain is invalid
+   */
+  public static final ElementHidingStyleSheet EMPTY = new ElementHidingStyleSheet("", "");
+
+  /**
+   * Generic part of the stylesheet, can be empty
+   */
+  @NotNull
+  public final String generic;
+
+  /**
+   * Domain specific part of the stylesheet, can be empty
+   */
+  @NotNull
+  public final String specific;
+
+  public ElementHidingStyleSheet(@NotNull final String generic, @NotNull final String specific)
+  {
+    this.generic = generic;
+    this.specific = specific;
+  }
+
+  /**
+   * @return `true` if both the parts are empty
+   */
+  public boolean isEmpty()
+  {
+    return generic.isEmpty() && specific.isEmpty();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The result of `evaluateRequest()` call: the full filtering verdict for a resource request.
+ */
+public final class EvaluationResult
+{
+  /**
+   * Result returned when ad filtering is disabled
+   */
+  public static final EvaluationResult NOT_ENABLED = new EvaluationResult(Reason.NOT_ENABLED, null);
+
+  /**
+   * The reason of the verdict
+   */
+  public enum Reason
+  {
+    /**
+     * The document (any of the frames hierarchy) is allowlisted
+     */
+    DOCUMENT_ALLOWLISTED,
+
+    /**
+     * Allowlisting filter is found for the resource
+     */
+    FILTER_ALLOWLISTED,
+
+    /**
+     * Blocking filter is found for the resource
+     */
+    BLOCKING_FILTER,
+
+    /**
+     * No filter is found
+     */
+    NO_FILTER,
+
+    /**
+     * Ad filtering is disabled
+     */
+    NOT_ENABLED
+  }
+
+  /**
+   * The verdict: {@link MatchesResult#ALLOWLISTED}, {@link MatchesResult#BLOCKED},
+   * {@link MatchesResult#NOT_FOUND} or {@link MatchesResult#NOT_ENABLED}
+   */
+  @NotNull
+  public final MatchesResult verdict;
+
+  /**
+   * The reason of the verdict
+   */
+  @NotNull
+  public final Reason reason;
+
+  /**
+   * The raw text of the blocking filter if {@link #reason} is {@link Reason#BLOCKING_FILTER},
+   * `null` otherwise
+   */
+  @Nullable
+  public final String filterText;
+
+  /**
+   * EvaluationResult objects are created by a native code, hence private constructor
+   *
+   * @param reason the non-null reason of the verdict
+   * @param filterText the matching filter raw text or `null`
+   */
+  private EvaluationResult(@NotNull final Reason reason, @Nullable final String filterText)
+  {
+    this.reason = reason;
+    this.filterText = filterText;
+    switch (reason)
+    {
+      case DOCUMENT_ALLOWLISTED:
+      case FILTER_ALLOWLISTED:
+        this.verdict = MatchesResult.ALLOWLISTED;
+        break;
+
+      case BLOCKING_FILTER:
+        this.verdict = MatchesResult.BLOCKED;
+        break;
+
+      case NOT_ENABLED:
+        this.verdict = MatchesResult.NOT_ENABLED;
+        break;
+
+      default:
+        this.verdict = MatchesResult.NOT_FOUND;
+        break;
+    }
+  }
+}
@@ -47,6 +47,12 @@ public final class Filter
     return this.text.equals(((Filter) other).text);
   }
 
+  @Override
+  public int hashCode()
+  {
+    return this.text.hashCode();
+  }
+
   /**
    * Possible resource filter types
    */
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Data class describing a resource request to be matched in
+ * {@link AdblockEngine#matchesBatch(java.util.List)}
+ */
+public class RequestDescriptor
+{
+  @NotNull
+  public final String url;
+
+  /**
+   * Content types of the resource, a combination of `ContentType.MASK_*` bits
+   */
+  public final int contentTypeMask;
+
+  /**
+   * Immediate parent of the {@link #url}
+   */
+  @NotNull
+  public final String parent;
+
+  /**
+   * Public key provided by the document, can be empty
+   */
+  @NotNull
+  public final String siteKey;
+
+  /**
+   * If `true` then only domain specific filters are checked
+   */
+  public final boolean domainSpecificOnly;
+
+  public RequestDescriptor(@NotNull final String url,
+                           final int contentTypeMask,
+                           @NotNull final String parent,
+                           @NotNull final String siteKey,
+                           final boolean domainSpecificOnly)
+  {
+    this.url = url;
+    this.contentTypeMask = contentTypeMask;
+    this.parent = parent;
+    this.siteKey = siteKey;
+    this.domainSpecificOnly = domainSpecificOnly;
+  }
+
+  public RequestDescriptor(@NotNull final String url,
+                           final int contentTypeMask,
+                           @NotNull final String parent)
+  {
+    this(url, contentTypeMask, parent, "", false);
+  }
+}
@@ -19,9 +19,12 @@ package org.adblockplus.libadblockplus;
 
 import org.adblockplus.ContentType;
 import org.adblockplus.EmulationSelector;
+import org.adblockplus.EvaluationResult;
 import org.adblockplus.Filter;
+import org.adblockplus.RequestDescriptor;
 import org.adblockplus.Subscription;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -29,6 +32,7 @@ public final class FilterEngine
 {
   public static final String EMPTY_PARENT = "";
   public static final String EMPTY_SITEKEY = "";
+  private static final String GENERIC_STYLESHEET_DOMAIN = "";
   protected final long ptr;
 
   static
@@ -81,6 +85,15 @@ public final class FilterEngine
     return getElementHidingStyleSheet(this.ptr, domain, specificOnly);
   }
 
+  /**
+   * Get the generic part of the element hiding stylesheets: the stylesheet generated for no domain.
+   * @return generic stylesheet
+   */
+  public String getElementHidingGenericStyleSheet()
+  {
+    return getElementHidingStyleSheet(this.ptr, GENERIC_STYLESHEET_DOMAIN, false);
+  }
+
   public List<EmulationSelector> getElementHidingEmulationSelectors(final String domain)
   {
     return getElementHidingEmulationSelectors(this.ptr, domain);
@@ -99,8 +112,24 @@ public final class FilterEngine
                         final String parent, final String siteKey,
                         final boolean specificOnly)
   {
-    return matches(this.ptr, url, contentTypes.toArray(new ContentType[contentTypes.size()]),
-        parent, siteKey, specificOnly);
+    return matches(url, ContentType.maskBitsOf(contentTypes), parent, siteKey, specificOnly);
+  }
+
+  /**
+   * Checks if any active filter matches the supplied URL.
+   * @param url url URL to match.
+   * @param contentTypeMask Content type mask of the requested resource,
+   *                        a combination of `ContentType.MASK_*` bits.
+   * @param parent immediate parent of the {@param url}.
+   * @param siteKey sitekey or null/empty string
+   * @param specificOnly if set to `true` then skips generic filters
+   * @return Matching filter, or a `null` if there was no match.
+   */
+  public Filter matches(final String url, final int contentTypeMask,
+                        final String parent, final String siteKey,
+                        final boolean specificOnly)
+  {
+    return matches(this.ptr, url, contentTypeMask, parent, siteKey, specificOnly);
   }
 
   /**
@@ -117,8 +146,88 @@ public final class FilterEngine
                                       final List<String> documentUrls,
                                       final String siteKey)
   {
-    return isContentAllowlisted(this.ptr, url,
-        contentTypes.toArray(new ContentType[contentTypes.size()]), documentUrls, siteKey);
+    return isContentAllowlisted(url, ContentType.maskBitsOf(contentTypes), documentUrls, siteKey);
+  }
+
+  /**
+   * Checks whether the resource at the supplied URL is allowlisted.
+   *
+   * @param url URL of the resource.
+   * @param contentTypeMask Content types of requested resource,
+   *                        a combination of `ContentType.MASK_*` bits.
+   * @param documentUrls Chain of URLs requesting the resource
+   * @param siteKey public key provided by the document, can be empty.
+   * @return `true` if the URL is allowlisted.
+   */
+  public boolean isContentAllowlisted(final String url,
+                                      final int contentTypeMask,
+                                      final List<String> documentUrls,
+                                      final String siteKey)
+  {
+    return isContentAllowlisted(this.ptr, url, contentTypeMask, documentUrls, siteKey);
+  }
+
+  /**
+   * Evaluates the full filtering verdict for a resource in a single call:
+   * checks the document allowlisting, genericblock allowlisting, content allowlisting and
+   * finally matches the blocking filters.
+   *
+   * @param url URL of the resource.
+   * @param contentTypes Set of content types for requested resource.
+   * @param documentUrls Chain of URLs requesting the resource, the first one is the immediate parent.
+   * @param siteKey public key provided by the document, can be empty.
+   * @return evaluation result.
+   */
+  public EvaluationResult evaluateRequest(final String url,
+                                          final Set<ContentType> contentTypes,
+                                          final List<String> documentUrls,
+                                          final String siteKey)
+  {
+    return evaluateRequest(url, ContentType.maskBitsOf(contentTypes), documentUrls, siteKey);
+  }
+
+  /**
+   * Evaluates the full filtering verdict for a resource in a single call.
+   *
+   * @param url URL of the resource.
+   * @param contentTypeMask Content types of requested resource,
+   *                        a combination of `ContentType.MASK_*` bits.
+   * @param documentUrls Chain of URLs requesting the resource, the first one is the immediate parent.
+   * @param siteKey public key provided by the document, can be empty.
+   * @return evaluation result.
+   */
+  public EvaluationResult evaluateRequest(final String url,
+                                          final int contentTypeMask,
+                                          final List<String> documentUrls,
+                                          final String siteKey)
+  {
+    return evaluateRequest(this.ptr, url, contentTypeMask, documentUrls, siteKey);
+  }
+
+  /**
+   * Checks many resources at once in a single native call, see {@link #matches}.
+   *
+   * @param requests resources to be checked.
+   * @return packed results: `true` at the index of the request if a blocking filter matches it.
+   */
+  public boolean[] matchesBatch(final List<RequestDescriptor> requests)
+  {
+    final int size = requests.size();
+    final String[] urls = new String[size];
+    final int[] contentTypeMasks = new int[size];
+    final String[] parents = new String[size];
+    final String[] siteKeys = new String[size];
+    final boolean[] specificOnly = new boolean[size];
+    for (int i = 0; i < size; i++)
+    {
+      final RequestDescriptor request = requests.get(i);
+      urls[i] = request.url;
+      contentTypeMasks[i] = request.contentTypeMask;
+      parents[i] = request.parent;
+      siteKeys[i] = request.siteKey;
+      specificOnly[i] = request.domainSpecificOnly;
+    }
+    return matchesBatch(this.ptr, urls, contentTypeMasks, parents, siteKeys, specificOnly);
   }
 
   public JsValue getPref(final String pref)
@@ -219,6 +328,87 @@ public final class FilterEngine
     removeFilter(this.ptr, filter.text);
   }
 
+  /**
+   * Checks if the filter is listed without getting all the listed filters
+   * @param text filter text
+   * @return `true` if the filter is listed
+   */
+  public boolean hasFilter(final String text)
+  {
+    return hasFilter(this.ptr, text);
+  }
+
+  /**
+   * Checks if the subscription is listed without getting all the listed subscriptions
+   * @param url subscription URL
+   * @return `true` if the subscription is listed
+   */
+  public boolean hasSubscription(final String url)
+  {
+    return hasSubscription(this.ptr, url);
+  }
+
+  /**
+   * Removes and adds the subscriptions and the filters in a single native call.
+   * Unlike calling {@link #removeFilter(Filter)} for every filter, the listed filters are
+   * scanned only once for all the removed filters. The subscriptions are removed first,
+   * then added, then the filters are removed and finally added.
+   *
+   * @param removedSubscriptions subscriptions to remove from the list
+   * @param addedSubscriptions subscriptions to add to the list
+   * @param removedFilters filters to remove from the list, ignored if `removeAllFilters` is set
+   * @param removeAllFilters remove all the listed filters
+   * @param addedFilters filters to add to the list
+   * @param versions optional array of 2 elements receiving the filter lists versions
+   *                 (see {@link #getFilterListVersion()}) before and after the changes,
+   *                 or `-1` if the filter lists were also changed concurrently
+   * @return the filters actually removed
+   */
+  public List<Filter> applyChanges(final Collection<Subscription> removedSubscriptions,
+                                   final Collection<Subscription> addedSubscriptions,
+                                   final Collection<Filter> removedFilters,
+                                   final boolean removeAllFilters,
+                                   final Collection<Filter> addedFilters,
+                                   final long[] versions)
+  {
+    return applyChanges(this.ptr,
+      toSubscriptionUrls(removedSubscriptions), toSubscriptionUrls(addedSubscriptions),
+      removeAllFilters ? new String[0] : toFilterTexts(removedFilters), removeAllFilters,
+      toFilterTexts(addedFilters), versions);
+  }
+
+  private static String[] toSubscriptionUrls(final Collection<Subscription> subscriptions)
+  {
+    final String[] urls = new String[subscriptions.size()];
+    int i = 0;
+    for (final Subscription subscription : subscriptions)
+    {
+      urls[i++] = subscription.url;
+    }
+    return urls;
+  }
+
+  private static String[] toFilterTexts(final Collection<Filter> filters)
+  {
+    final String[] texts = new String[filters.size()];
+    int i = 0;
+    for (final Filter filter : filters)
+    {
+      texts[i++] = filter.text;
+    }
+    return texts;
+  }
+
+  /**
+   * Get the version of the filter lists. It's incremented by the engine on every filter and
+   * subscription event, including the subscriptions updates downloaded automatically, and can
+   * be used to invalidate the data derived from the filters (eg. cached element hiding stylesheets).
+   * @return filter lists version
+   */
+  public long getFilterListVersion()
+  {
+    return getFilterListVersion(this.ptr);
+  }
 
   private static native void registerNatives();
 
@@ -238,13 +428,20 @@ public final class FilterEngine
 
   private static native JsValue getPref(long ptr, String pref);
 
-  private static native Filter matches(long ptr, String url, ContentType[] contentType,
+  private static native Filter matches(long ptr, String url, int contentTypeMask,
                                        String parent, String siteKey,
                                        boolean specificOnly);
 
-  private static native boolean isContentAllowlisted(long ptr, String url, ContentType[] contentType,
+  private static native boolean isContentAllowlisted(long ptr, String url, int contentTypeMask,
                                                      List<String> referrerChain, String siteKey);
 
+  private static native EvaluationResult evaluateRequest(long ptr, String url, int contentTypeMask,
+                                                        List<String> referrerChain, String siteKey);
+
+  private static native boolean[] matchesBatch(long ptr, String[] urls, int[] contentTypeMasks,
+                                               String[] parents, String[] siteKeys,
+                                               boolean[] specificOnly);
+
   private static native void setPref(long ptr, String pref, long valuePtr);
 
   private static native String getHostFromURL(long ptr, String url);
@@ -268,4 +465,15 @@ public final class FilterEngine
   private static native void addSubscription(long ptr, String subscriptionUrl);
 
   private static native void removeSubscription(long ptr, String subscriptionUrl);
+
+  private static native boolean hasFilter(long ptr, String text);
+
+  private static native boolean hasSubscription(long ptr, String url);
+
+  private static native List<Filter> applyChanges(long ptr, String[] removedSubscriptionUrls,
+                                                  String[] addedSubscriptionUrls, String[] removedFilters,
+                                                  boolean removeAllFilters, String[] addedFilters,
+                                                  long[] versions);
+
+  private static native long getFilterListVersion(long ptr);
 }
@@ -28,6 +28,8 @@ public abstract class HttpClient
   public static final String HEADER_USER_AGENT = "User-Agent";
   public static final String HEADER_ACCEPT = "Accept";
   public static final String HEADER_REFRESH = "Refresh";
+  public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
   // use low-case strings as in WebResponse all header keys are lowered-case
   public static final String HEADER_SET_COOKIE = "set-cookie";
   public static final String HEADER_WWW_AUTHENTICATE = "www-authenticate";
@@ -41,6 +43,7 @@ public abstract class HttpClient
   public static final String HEADER_CONTENT_TYPE = "content-type";
   public static final String HEADER_CONTENT_LENGTH = "content-length";
   public static final String HEADER_CSP = "content-security-policy";
+  public static final String HEADER_ETAG = "etag";
 
   static
   {
@@ -49,6 +52,7 @@ public abstract class HttpClient
   }
 
   public static final int STATUS_CODE_OK = 200;
+  public static final int STATUS_CODE_NOT_MODIFIED = 304;
 
   /**
    * Possible values for request method argument (see `request(..)` method)
@@ -27,9 +27,12 @@ import org.adblockplus.AdblockEngineSettings;
 import org.adblockplus.AppInfo;
 import org.adblockplus.ConnectionType;
 import org.adblockplus.ContentType;
+import org.adblockplus.ElementHidingStyleSheet;
 import org.adblockplus.EmulationSelector;
+import org.adblockplus.EvaluationResult;
 import org.adblockplus.Filter;
 import org.adblockplus.MatchesResult;
+import org.adblockplus.RequestDescriptor;
 import org.adblockplus.Subscription;
 import org.adblockplus.libadblockplus.FileSystem;
 import org.adblockplus.libadblockplus.FilterEngine;
@@ -41,6 +44,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -72,13 +78,68 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
   volatile LogSystem logSystem;
   volatile FileSystem fileSystem;
   volatile HttpClient httpClient;
+  volatile FilterIndexSnapshotUpdater filterIndexSnapshotUpdater;
   AtomicBoolean enabled = new AtomicBoolean(true);
+  // shared by all the clients (eg. WebViews) of this engine instance
+  private final ElementHidingCache elementHidingCache = new ElementHidingCache();
+  private final Object genericStyleSheetLock = new Object();
+  // guarded by genericStyleSheetLock, generated for `genericStyleSheetVersion`
+  private String genericStyleSheet;
+  private long genericStyleSheetVersion;
 
   private AdblockEngineSettings adblockEngineSettings = new AdblockEngineSettings()
   {
     private final Set<EnableStateChangedListener> enableStateChangedListeners = new HashSet<>();
     private final Set<FiltersChangedListener> filtersChangedListeners = new HashSet<>();
     private final Set<SubscriptionsChangedListener> subscriptionsChangedListeners = new HashSet<>();
+    private final ListedItemsMirror listedFiltersMirror = new ListedItemsMirror(new ListedItemsMirror.Source()
+    {
+      @Override
+      public Collection<String> getListedItems()
+      {
+        return getFilterTexts(filterEngine.getListedFilters());
+      }
+
+      @Override
+      public boolean isListed(final String item)
+      {
+        return filterEngine.hasFilter(item);
+      }
+    });
+    private final ListedItemsMirror listedSubscriptionsMirror = new ListedItemsMirror(new ListedItemsMirror.Source()
+    {
+      @Override
+      public Collection<String> getListedItems()
+      {
+        return getSubscriptionUrls(filterEngine.getListedSubscriptions());
+      }
+
+      @Override
+      public boolean isListed(final String item)
+      {
+        return filterEngine.hasSubscription(item);
+      }
+    });
+
+    private List<String> getFilterTexts(final Collection<Filter> filters)
+    {
+      final List<String> texts = new ArrayList<>(filters.size());
+      for (final Filter filter : filters)
+      {
+        texts.add(filter.text);
+      }
+      return texts;
+    }
+
+    private List<String> getSubscriptionUrls(final Collection<Subscription> subscriptions)
+    {
+      final List<String> urls = new ArrayList<>(subscriptions.size());
+      for (final Subscription subscription : subscriptions)
+      {
+        urls.add(subscription.url);
+      }
+      return urls;
+    }
 
     class EditOperationIml implements EditOperation
     {
@@ -194,19 +255,36 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
       @Override
       public synchronized void save()
       {
+        // Apply all the Subscriptions and Filters changes in a single call
+        final Set<Subscription> finalRemoveSubscriptionSet = clearSubscriptions ?
+          new HashSet(getListedSubscriptions()) : removeSubscriptionSet;
+        Collection<Filter> removedFilters = Collections.emptyList();
+        if (!finalRemoveSubscriptionSet.isEmpty() || !addSubscriptionSet.isEmpty()
+          || clearCustomFilters || !removeCustomFilterSet.isEmpty() || !addCustomFilterSet.isEmpty())
+        {
+          final long[] versions = new long[2];
+          removedFilters = filterEngine.applyChanges(finalRemoveSubscriptionSet, addSubscriptionSet,
+            removeCustomFilterSet, clearCustomFilters, addCustomFilterSet, versions);
+          // keep isListed() mirrors valid (and up to date for the listeners notified below)
+          // unless the filter lists were changed concurrently
+          if (versions[1] >= 0)
+          {
+            listedSubscriptionsMirror.update(getSubscriptionUrls(finalRemoveSubscriptionSet),
+              getSubscriptionUrls(addSubscriptionSet), versions[0], versions[1]);
+            listedFiltersMirror.update(getFilterTexts(clearCustomFilters ? removedFilters : removeCustomFilterSet),
+              getFilterTexts(addCustomFilterSet), versions[0], versions[1]);
+          }
+        }
+
         // Handle Subscriptions
         final Map<Subscription, SubscriptionsChangedListener.SubscriptionEvent> subscriptionToEventMap
           = new HashMap<>();
-        final Set<Subscription> finalRemoveSubscriptionSet = clearSubscriptions ?
-          new HashSet(getListedSubscriptions()) : removeSubscriptionSet;
         for (final Subscription subscription : finalRemoveSubscriptionSet)
         {
-          filterEngine.removeSubscription(subscription);
           subscriptionToEventMap.put(subscription, SubscriptionsChangedListener.SubscriptionEvent.SUBSCRIPTION_REMOVED);
         }
         for (final Subscription subscription : addSubscriptionSet)
         {
-          filterEngine.addSubscription(subscription);
           subscriptionToEventMap.put(subscription,
             SubscriptionsChangedListener.SubscriptionEvent.SUBSCRIPTION_ADDED);
         }
@@ -222,16 +300,14 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
 
         // Handle Filters
         final Map<Filter, FiltersChangedListener.FilterEvent> filterToEventMap = new HashMap<>();
-        final Set<Filter> finalRemoveCustomFilterSet = clearCustomFilters ?
-          new HashSet(getListedFilters()) : removeCustomFilterSet;
+        final Collection<Filter> finalRemoveCustomFilterSet = clearCustomFilters ?
+          removedFilters : removeCustomFilterSet;
         for (final Filter filter : finalRemoveCustomFilterSet)
         {
-          filterEngine.removeFilter(filter);
           filterToEventMap.put(filter, FiltersChangedListener.FilterEvent.FILTER_REMOVED);
         }
         for (final Filter filter : addCustomFilterSet)
         {
-          filterEngine.addFilter(filter);
           filterToEventMap.put(filter, FiltersChangedListener.FilterEvent.FILTER_ADDED);
         }
         // Send notification
@@ -263,6 +339,11 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
         {
           AdblockEngine.this.enabled.set(enabled);
           filterEngine.setEnabled(enabled);
+          final FilterIndexSnapshotUpdater updater = filterIndexSnapshotUpdater;
+          if (updater != null)
+          {
+            updater.setEngineEnabled(enabled);
+          }
           for (final EnableStateChangedListener enableStateChangedListener : enableStateChangedListeners)
           {
             enableStateChangedListener.onAdblockEngineEnableStateChanged(enabled);
@@ -317,7 +398,7 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
     @Override
     public boolean isListed(@NotNull final Subscription subscription)
     {
-      return getListedSubscriptions().contains(subscription);
+      return listedSubscriptionsMirror.isListed(subscription.url, filterEngine.getFilterListVersion());
     }
 
     @Override
@@ -330,8 +411,7 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
     @Override
     public boolean isListed(@NotNull final Filter filter)
     {
-      // This is a bit expensive if there are many custom filters. A note to change if Core will offer other way.
-      return getListedFilters().contains(filter);
+      return listedFiltersMirror.isListed(filter.text, filterEngine.getFilterListVersion());
     }
 
     @Override
@@ -405,7 +485,45 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
       return "";
     }
 
-    return filterEngine.getElementHidingStyleSheet(domain, specificOnly);
+    final long version = filterEngine.getFilterListVersion();
+    String styleSheet = elementHidingCache.getStyleSheet(domain, specificOnly, version);
+    if (styleSheet == null)
+    {
+      styleSheet = filterEngine.getElementHidingStyleSheet(domain, specificOnly);
+      elementHidingCache.putStyleSheet(domain, specificOnly, version, styleSheet);
+    }
+    return styleSheet;
+  }
+
+  @Override
+  @NotNull
+  public ElementHidingStyleSheet getElementHidingStyleSheets(@NotNull final String domain,
+                                                             final boolean specificOnly)
+  {
+    if (!enabled.get() || domain.isEmpty())
+    {
+      return ElementHidingStyleSheet.EMPTY;
+    }
+
+    // the domain specific rules are generated by the engine separately,
+    // so the generic stylesheet is not generated for every domain again
+    final String generic = specificOnly
+      ? "" : getGenericStyleSheet(filterEngine.getFilterListVersion());
+    return new ElementHidingStyleSheet(generic, getElementHidingStyleSheet(domain, true));
+  }
+
+  private String getGenericStyleSheet(final long version)
+  {
+    synchronized (genericStyleSheetLock)
+    {
+      if (genericStyleSheet == null || genericStyleSheetVersion != version)
+      {
+        Timber.d("Generating generic elemhide stylesheet for filter lists version %d", version);
+        genericStyleSheet = filterEngine.getElementHidingGenericStyleSheet();
+        genericStyleSheetVersion = version;
+      }
+      return genericStyleSheet;
+    }
   }
 
   @Override
@@ -417,7 +535,25 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
       return new ArrayList<>();
     }
 
-    return filterEngine.getElementHidingEmulationSelectors(domain);
+    final long version = filterEngine.getFilterListVersion();
+    List<EmulationSelector> selectors = elementHidingCache.getEmulationSelectors(domain, version);
+    if (selectors == null)
+    {
+      selectors = filterEngine.getElementHidingEmulationSelectors(domain);
+      elementHidingCache.putEmulationSelectors(domain, version, selectors);
+    }
+    return selectors;
+  }
+
+  /**
+   * Get the cache of the element hiding stylesheets and emulation selectors,
+   * eg. to read its hit/miss counters
+   * @return element hiding cache
+   */
+  @NotNull
+  public ElementHidingCache getElementHidingCache()
+  {
+    return elementHidingCache;
   }
 
   @Override
@@ -425,7 +561,14 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
   public boolean isContentAllowlisted(@NotNull final String url, @NotNull final Set<ContentType> contentTypes,
                                       @NotNull final List<String> referrerChain, @NotNull final String siteKey)
   {
-    return filterEngine.isContentAllowlisted(url, contentTypes, referrerChain, siteKey);
+    return isContentAllowlisted(url, ContentType.maskBitsOf(contentTypes), referrerChain, siteKey);
+  }
+
+  @Override
+  public boolean isContentAllowlisted(@NotNull final String url, final int contentTypeMask,
+                                      @NotNull final List<String> referrerChain, @NotNull final String siteKey)
+  {
+    return filterEngine.isContentAllowlisted(url, contentTypeMask, referrerChain, siteKey);
   }
 
   @Override
@@ -433,13 +576,22 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
   public MatchesResult matches(@NotNull final String url, @NotNull final Set<ContentType> contentTypes,
                                @NotNull final String parent, @NotNull final String siteKey,
                                final boolean domainSpecificOnly)
+  {
+    return matches(url, ContentType.maskBitsOf(contentTypes), parent, siteKey, domainSpecificOnly);
+  }
+
+  @Override
+  @NotNull
+  public MatchesResult matches(@NotNull final String url, final int contentTypeMask,
+                               @NotNull final String parent, @NotNull final String siteKey,
+                               final boolean domainSpecificOnly)
   {
     if (!enabled.get())
     {
       return MatchesResult.NOT_ENABLED;
     }
 
-    final Filter filter = filterEngine.matches(url, contentTypes, parent, siteKey, domainSpecificOnly);
+    final Filter filter = filterEngine.matches(url, contentTypeMask, parent, siteKey, domainSpecificOnly);
 
     if (filter == null)
     {
@@ -453,6 +605,57 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
       : MatchesResult.NOT_FOUND;
   }
 
+  @Override
+  @NotNull
+  public MatchesResult[] matchesBatch(@NotNull final List<RequestDescriptor> requests)
+  {
+    final MatchesResult[] results = new MatchesResult[requests.size()];
+    if (!enabled.get())
+    {
+      Arrays.fill(results, MatchesResult.NOT_ENABLED);
+      return results;
+    }
+
+    final boolean[] blocked = filterEngine.matchesBatch(requests);
+    for (int i = 0; i < results.length; i++)
+    {
+      results[i] = blocked[i] ? MatchesResult.BLOCKED : MatchesResult.NOT_FOUND;
+    }
+    return results;
+  }
+
+  @Override
+  @NotNull
+  public EvaluationResult evaluateRequest(@NotNull final String url,
+                                          @NotNull final Set<ContentType> contentTypes,
+                                          @NotNull final List<String> referrerChain,
+                                          @NotNull final String siteKey)
+  {
+    return evaluateRequest(url, ContentType.maskBitsOf(contentTypes), referrerChain, siteKey);
+  }
+
+  @Override
+  @NotNull
+  public EvaluationResult evaluateRequest(@NotNull final String url,
+                                          final int contentTypeMask,
+                                          @NotNull final List<String> referrerChain,
+                                          @NotNull final String siteKey)
+  {
+    if (!enabled.get())
+    {
+      return EvaluationResult.NOT_ENABLED;
+    }
+
+    final EvaluationResult result = filterEngine.evaluateRequest(url, contentTypeMask, referrerChain, siteKey);
+
+    if (result.filterText != null)
+    {
+      Timber.d("Found filter `%s` for url `%s`", result.filterText, url);
+    }
+
+    return result;
+  }
+
   @Override
   @NotNull
   public Subscription getSubscription(@NotNull final String url)
@@ -544,6 +747,12 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
   {
     Timber.w("Dispose");
 
+    if (filterIndexSnapshotUpdater != null)
+    {
+      filterIndexSnapshotUpdater.stop();
+      filterIndexSnapshotUpdater = null;
+    }
+
     // engines first
     if (filterEngine != null)
     {
@@ -557,6 +766,19 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
     return filterEngine;
   }
 
+  /**
+   * Get the snapshot of the host-anchored filters
+   * (see {@link org.adblockplus.AdblockEngineBuilder#useFilterIndexSnapshot()})
+   * @return the latest snapshot or `null` if it's not used, not available yet or can't be used
+   *         (see {@link FilterIndexSnapshotUpdater#getSnapshot()})
+   */
+  @Nullable
+  public FilterIndexSnapshot getFilterIndexSnapshot()
+  {
+    final FilterIndexSnapshotUpdater updater = filterIndexSnapshotUpdater;
+    return updater != null ? updater.getSnapshot() : null;
+  }
+
   AdblockEngine()
   {
   }
@@ -602,6 +824,11 @@ public final class AdblockEngine implements org.adblockplus.AdblockEngine
       return !enabledByDefault;
     }
 
+    public String getBasePath()
+    {
+      return basePath;
+    }
+
     public Builder preloadSubscriptions(final Context context,
                                         final Map<String, Integer> urlToResourceIdMap,
                                         final AndroidHttpClientResourceWrapper.Storage storage)
@@ -23,6 +23,7 @@ import android.net.ConnectivityManager;
 import org.adblockplus.AdblockEngine;
 import org.adblockplus.AppInfo;
 import org.adblockplus.AsyncAdblockEngineBuilder;
+import org.adblockplus.MatchesResult;
 import org.adblockplus.libadblockplus.HttpClient;
 import org.adblockplus.libadblockplus.IsAllowedConnectionCallback;
 import org.adblockplus.libadblockplus.Platform;
@@ -30,10 +31,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.File;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
@@ -49,10 +53,14 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
   private boolean disabledByDefault;
   private boolean forceUpdatePreloadedSubscriptions;
   private Map<String, Integer> resourceMap;
+  private boolean revalidateSubscriptions;
+  private boolean diffUpdates;
+  private boolean filterIndexSnapshot;
   private HttpClient httpClientForTesting = null;
 
   private final Set<StateListener> stateListenerSet = new HashSet<>();
   private AdblockEngine adblockEngine;
+  private FilterIndexSnapshotUpdater filterIndexSnapshotUpdater;
   private State state = State.INITIAL;
 
   public AdblockEngineBuilder(@NotNull final Context context, @Nullable final AppInfo appInfo,
@@ -92,6 +100,23 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
     forceUpdatePreloadedSubscriptions = forceUpdate;
     return this;
   }
+
+  @Override
+  @NotNull
+  public AdblockEngineBuilder revalidateSubscriptions(final boolean diffUpdates)
+  {
+    revalidateSubscriptions = true;
+    this.diffUpdates = diffUpdates;
+    return this;
+  }
+
+  @Override
+  @NotNull
+  public AdblockEngineBuilder useFilterIndexSnapshot()
+  {
+    filterIndexSnapshot = true;
+    return this;
+  }
   // Common Builder methods ends
 
   // AdblockEngineBuilder methods starts
@@ -103,7 +128,19 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
     {
       return adblockEngine;
     }
-    adblockEngine = buildInternal();
+    final FilterIndexSnapshotUpdater updater = startFilterIndexSnapshotUpdater();
+    try
+    {
+      adblockEngine = buildInternal(updater);
+    }
+    finally
+    {
+      // the engine failed to be created
+      if (adblockEngine == null && updater != null)
+      {
+        updater.stop();
+      }
+    }
     setState(State.CREATED);
     return adblockEngine;
   }
@@ -134,7 +171,7 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
   public synchronized State build(@NotNull final ExecutorService executorService)
   {
     // Check if created or creating and if so just return the current state
-    if (state == State.CREATING || state == State.CREATED)
+    if (state == State.CREATING || state == State.PARTIALLY_READY || state == State.CREATED)
     {
       return state;
     }
@@ -158,7 +195,38 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
             return;
           }
         }
-        adblockEngineLocalRef = buildInternal();
+        final FilterIndexSnapshotUpdater updater = startFilterIndexSnapshotUpdater();
+        try
+        {
+          synchronized (AdblockEngineBuilder.this)
+          {
+            AdblockEngineBuilder.this.filterIndexSnapshotUpdater = updater;
+            if (updater != null && updater.getSnapshot() != null
+              && AdblockEngineBuilder.this.state == State.CREATING)
+            {
+              setState(State.PARTIALLY_READY);
+            }
+          }
+          adblockEngineLocalRef = buildInternal(updater);
+        }
+        finally
+        {
+          synchronized (AdblockEngineBuilder.this)
+          {
+            AdblockEngineBuilder.this.filterIndexSnapshotUpdater = null;
+            // the engine failed to be created, it can be built again
+            if (adblockEngineLocalRef == null
+              && (AdblockEngineBuilder.this.state == State.CREATING
+              || AdblockEngineBuilder.this.state == State.PARTIALLY_READY))
+            {
+              setState(State.INITIAL);
+            }
+          }
+          if (adblockEngineLocalRef == null && updater != null)
+          {
+            updater.stop();
+          }
+        }
         synchronized (AdblockEngineBuilder.this)
         {
           if (AdblockEngineBuilder.this.adblockEngine == null)
@@ -230,6 +298,23 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
   {
     return adblockEngine;
   }
+
+  @Override
+  @NotNull
+  public MatchesResult matchesPartially(@NotNull final String url, @NotNull final List<String> referrerChain)
+  {
+    final FilterIndexSnapshotUpdater updater;
+    synchronized (this)
+    {
+      updater = filterIndexSnapshotUpdater;
+    }
+    final FilterIndexSnapshot snapshot = updater != null ? updater.getSnapshot() : null;
+    if (snapshot == null)
+    {
+      return MatchesResult.NOT_ENABLED;
+    }
+    return snapshot.matches(url, referrerChain);
+  }
   // AsyncAdblockEngineBuilder methods ends
 
   private synchronized void setState(final State state)
@@ -251,15 +336,40 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
     }
   }
 
-  private org.adblockplus.libadblockplus.android.AdblockEngine buildInternal()
+  private File getBaseDirectory()
+  {
+    final File baseDirectory = new File(basePath);
+    return baseDirectory.isAbsolute() ? baseDirectory : context.getDir(basePath, Context.MODE_PRIVATE);
+  }
+
+  // the snapshot is loaded before the engine is created to answer the requests in the meantime
+  private FilterIndexSnapshotUpdater startFilterIndexSnapshotUpdater()
+  {
+    if (!filterIndexSnapshot)
+    {
+      return null;
+    }
+    final FilterIndexSnapshotUpdater updater = new FilterIndexSnapshotUpdater(getBaseDirectory());
+    updater.start();
+    return updater;
+  }
+
+  private org.adblockplus.libadblockplus.android.AdblockEngine buildInternal(
+    @Nullable final FilterIndexSnapshotUpdater filterIndexSnapshotUpdater)
   {
     Timber.d("AdblockEngine buildInternal() started");
     final org.adblockplus.libadblockplus.android.AdblockEngine adblockEngine
       = new org.adblockplus.libadblockplus.android.AdblockEngine();
     adblockEngine.logSystem = new TimberLogSystem();
     adblockEngine.fileSystem = null; // using default
+    adblockEngine.filterIndexSnapshotUpdater = filterIndexSnapshotUpdater;
     HttpClient httpClient = this.httpClientForTesting == null ? new AndroidHttpClient(true)
       : this.httpClientForTesting;
+    if (revalidateSubscriptions)
+    {
+      httpClient = new ConditionalRequestHttpClient(httpClient,
+        new File(getBaseDirectory(), ConditionalRequestHttpClient.CACHE_DIRECTORY), diffUpdates);
+    }
     if (resourceMap != null)
     {
       httpClient = new AndroidHttpClientResourceWrapper(context, httpClient, resourceMap, null);
@@ -281,7 +391,10 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
     }
     adblockEngine.platform = new Platform(adblockEngine.logSystem, adblockEngine.fileSystem,
       httpClient, basePath);
+    final long setUpJsEngineStartNanos = System.nanoTime();
     adblockEngine.platform.setUpJsEngine(appInfo);
+    Timber.d("AdblockEngine setUpJsEngine() took %d ms",
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - setUpJsEngineStartNanos));
     final ConnectivityManager connectivityManager =
       (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
     final IsAllowedConnectionCallback isAllowedConnectionCallback =
@@ -289,6 +402,10 @@ public class AdblockEngineBuilder implements org.adblockplus.AdblockEngineBuilde
     adblockEngine.platform.setUpFilterEngine(isAllowedConnectionCallback, !disabledByDefault);
     adblockEngine.enabled.set(!disabledByDefault);
     adblockEngine.filterEngine = adblockEngine.platform.getFilterEngine();
+    if (filterIndexSnapshotUpdater != null)
+    {
+      filterIndexSnapshotUpdater.setEngineEnabled(adblockEngine.enabled.get());
+    }
     Timber.d("AdblockEngine buildInternal() finished");
     return adblockEngine;
   }
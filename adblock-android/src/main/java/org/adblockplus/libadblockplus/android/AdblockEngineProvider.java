@@ -34,7 +34,8 @@ public interface AdblockEngineProvider
 
   /**
    * Wait until everything is ready (used for `retain(true)`)
-   * Warning: locks current thread
+   * Warning: locks current thread while the engine is being created or disposed,
+   * returns immediately otherwise
    */
   void waitForReady();
 
@@ -68,6 +69,79 @@ public interface AdblockEngineProvider
    */
   ReentrantReadWriteLock.ReadLock getReadEngineLock();
 
+  /**
+   * Lease of AdblockEngine instance: the engine is not disposed until all the leases are released
+   */
+  interface EngineLease
+  {
+    /**
+     * Return leased AdblockEngine instance
+     * @return AdblockEngine instance, never `null`
+     */
+    AdblockEngine getEngine();
+
+    /**
+     * Release the lease. Must be called for every acquired lease, the engine must not be used
+     * after it. Can be called more than once, only the first call releases the lease
+     */
+    void release();
+  }
+
+  /**
+   * Acquire the lease of AdblockEngine instance.
+   * Unlike `getReadEngineLock()` it never blocks and is intended to be used in the hot paths.
+   * Dispose of the engine waits for all the acquired leases to be released.
+   * <p>
+   * The default implementation holds `getReadEngineLock()` (if it's available without blocking)
+   * for the lease, so the lease must be released by the acquiring thread.
+   * @return engine lease or `null` if the engine is not yet created or is being disposed
+   */
+  default EngineLease acquireEngine()
+  {
+    final ReentrantReadWriteLock.ReadLock lock = getReadEngineLock();
+    if (!lock.tryLock())
+    {
+      return null;
+    }
+    final AdblockEngine engine = getEngine();
+    if (engine == null)
+    {
+      lock.unlock();
+      return null;
+    }
+    return new EngineLease()
+    {
+      private boolean released = false;
+
+      @Override
+      public AdblockEngine getEngine()
+      {
+        return engine;
+      }
+
+      @Override
+      public void release()
+      {
+        if (!released)
+        {
+          released = true;
+          lock.unlock();
+        }
+      }
+    };
+  }
+
+  /**
+   * Get the snapshot of the host-anchored filters to match the requests with
+   * while the engine is being created (see `retain(true)`), instead of waiting for it.
+   * Never blocks.
+   * @return the snapshot or `null` if it's not used, not available or the engine can be acquired
+   */
+  default FilterIndexSnapshot getFilterIndexSnapshot()
+  {
+    return null;
+  }
+
   interface EngineCreatedListener
   {
     void onAdblockEngineCreated(AdblockEngine adblockEngine);
@@ -26,6 +26,7 @@ import org.adblockplus.libadblockplus.HttpRequest;
 import org.adblockplus.libadblockplus.ServerResponse;
 import org.adblockplus.libadblockplus.ServerResponse.NsStatus;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -36,6 +37,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
+import javax.net.ssl.HttpsURLConnection;
+
 import timber.log.Timber;
 
 import static org.adblockplus.libadblockplus.android.Utils.readFromInputStream;
@@ -47,15 +50,40 @@ public class AndroidHttpClient extends HttpClient
 
   protected static final int SOCKET_TAG = 1;
 
+  /**
+   * Opens the connections, allows to plug in another transport
+   * (eg. HTTP/2 capable `HttpURLConnection` implementation)
+   */
+  public interface ConnectionFactory
+  {
+    HttpURLConnection openConnection(URL url) throws IOException;
+  }
+
   private final boolean compressedStream;
+  private final ConnectionFactory connectionFactory;
+  private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
 
   /**
    * Ctor
    * @param compressedStream Request for gzip compressed stream from the server
+   * @param connectionFactory Connection factory or `null` for the platform `HttpURLConnection`
    */
-  public AndroidHttpClient(final boolean compressedStream)
+  public AndroidHttpClient(final boolean compressedStream,
+                           final ConnectionFactory connectionFactory)
   {
     this.compressedStream = compressedStream;
+    this.connectionFactory = (connectionFactory != null
+      ? connectionFactory
+      : new DefaultConnectionFactory(connectionMetrics));
+  }
+
+  /**
+   * Ctor
+   * @param compressedStream Request for gzip compressed stream from the server
+   */
+  public AndroidHttpClient(final boolean compressedStream)
+  {
+    this(compressedStream, null);
   }
 
   public AndroidHttpClient()
@@ -63,6 +91,55 @@ public class AndroidHttpClient extends HttpClient
     this(true);
   }
 
+  /**
+   * Opens the connections with the platform `HttpURLConnection` counting TLS handshakes
+   */
+  private static class DefaultConnectionFactory implements ConnectionFactory
+  {
+    private final CountingSSLSocketFactory sslSocketFactory;
+
+    DefaultConnectionFactory(final ConnectionMetrics connectionMetrics)
+    {
+      sslSocketFactory = new CountingSSLSocketFactory(
+        HttpsURLConnection.getDefaultSSLSocketFactory(), connectionMetrics);
+    }
+
+    @Override
+    public HttpURLConnection openConnection(final URL url) throws IOException
+    {
+      final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      if (connection instanceof HttpsURLConnection)
+      {
+        // the connections are pooled per SSLSocketFactory instance
+        ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+      }
+      return connection;
+    }
+  }
+
+  /**
+   * Configure the keep-alive connection pool of the platform `HttpURLConnection`.
+   * The pool is shared by all the `HttpURLConnection`s in the process and is configured once
+   * created, so this must be called before the first connection is opened.
+   * @param maxIdleConnections max idle connections count kept in the pool
+   * @param keepAliveDurationMillis time after which the idle connections are evicted
+   */
+  public static void configureConnectionPool(final int maxIdleConnections,
+                                             final long keepAliveDurationMillis)
+  {
+    System.setProperty("http.keepAlive", "true");
+    System.setProperty("http.maxConnections", String.valueOf(maxIdleConnections));
+    System.setProperty("http.keepAliveDuration", String.valueOf(keepAliveDurationMillis));
+  }
+
+  /**
+   * @return connection reuse and latency metrics
+   */
+  public ConnectionMetrics getConnectionMetrics()
+  {
+    return connectionMetrics;
+  }
+
   @Override
   public void request(final HttpRequest request, final Callback callback)
   {
@@ -80,12 +157,16 @@ public class AndroidHttpClient extends HttpClient
 
     HttpURLConnection connection = null;
     InputStream inputStream = null;
+    // the connection can be returned to the pool only if the response is read completely
+    boolean reusable = false;
     try
     {
       final URL url = new URL(request.getUrl());
       Timber.d("Downloading from: %s, request.getFollowRedirect() = %b", url, request.getFollowRedirect());
 
-      connection = (HttpURLConnection) url.openConnection();
+      final long startNanos = System.nanoTime();
+      connectionMetrics.onRequest("https".equalsIgnoreCase(url.getProtocol()));
+      connection = connectionFactory.openConnection(url);
       connection.setRequestMethod(request.getMethod());
 
       if (request.getMethod().equalsIgnoreCase(REQUEST_METHOD_GET))
@@ -100,12 +181,14 @@ public class AndroidHttpClient extends HttpClient
       connection.connect();
       Timber.d("Connected");
 
-      if (connection.getHeaderFields().size() > 0)
+      final Map<String, List<String>> headerFields = connection.getHeaderFields();
+      connectionMetrics.onFirstByte(System.nanoTime() - startNanos);
+      if (headerFields.size() > 0)
       {
         Timber.d("Received header fields");
 
         final List<HeaderEntry> responseHeaders = new LinkedList<>();
-        for (Map.Entry<String, List<String>> eachEntry : connection.getHeaderFields().entrySet())
+        for (Map.Entry<String, List<String>> eachEntry : headerFields.entrySet())
         {
           for (String eachValue : eachEntry.getValue())
           {
@@ -139,6 +222,10 @@ public class AndroidHttpClient extends HttpClient
 
         if (inputStream != null)
         {
+          // allows to read the body straight into the buffer of the right size,
+          // there is no body for HEAD requests despite Content-Length
+          long expectedLength = request.getMethod().equalsIgnoreCase(REQUEST_METHOD_GET)
+            && !isNoContentCode(responseStatus) ? connection.getContentLength() : -1;
           // DP-579: We need to also check if stream is not empty before creating GZIP, for example
           // this code throws: `new GZIPInputStream(new ByteArrayInputStream(new byte[0]))`
           if (compressedStream && ENCODING_GZIP.equals(connection.getContentEncoding()) &&
@@ -147,6 +234,8 @@ public class AndroidHttpClient extends HttpClient
             if (request.getMethod().equalsIgnoreCase(REQUEST_METHOD_GET))
             {
               inputStream = new GZIPInputStream(inputStream);
+              // the length of the decompressed data is unknown
+              expectedLength = -1;
             }
             else if (request.getMethod().equalsIgnoreCase(REQUEST_METHOD_HEAD))
             {
@@ -175,8 +264,9 @@ public class AndroidHttpClient extends HttpClient
           }
           else
           {
-            Timber.d("readFromInputStream(inputStream)");
-            response.setResponse(readFromInputStream(inputStream));
+            Timber.d("readFromInputStream(inputStream, %d)", expectedLength);
+            response.setResponse(readFromInputStream(inputStream, expectedLength));
+            reusable = true;
           }
         }
         else
@@ -222,8 +312,9 @@ public class AndroidHttpClient extends HttpClient
     }
     finally
     {
-      // when inputStream == null then connection won't be used anyway
-      if (!request.skipInputStreamReading() || (inputStream == null))
+      // when inputStream == null then connection won't be used anyway,
+      // the completely read connection is kept alive for the next requests
+      if ((!request.skipInputStreamReading() && !reusable) || (inputStream == null))
       {
         if (connection != null)
         {
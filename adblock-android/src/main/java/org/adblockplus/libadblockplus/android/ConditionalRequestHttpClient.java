@@ -0,0 +1,593 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.libadblockplus.HeaderEntry;
+import org.adblockplus.libadblockplus.HttpClient;
+import org.adblockplus.libadblockplus.HttpRequest;
+import org.adblockplus.libadblockplus.ServerResponse;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * HttpClient wrapper to revalidate the downloads instead of downloading them again.
+ * <p>
+ * The body of successful GET response is stored in the directory along with its `ETag` and
+ * `Last-Modified` validators. The next request for the same URL (ignoring the parameters the engine
+ * appends to track the downloads, eg. `downloadCount`) is sent
+ * with `If-None-Match`/`If-Modified-Since` headers and `304 Not Modified` response is
+ * answered with the stored body, so an unchanged subscription is not downloaded again.
+ * <p>
+ * If diff updates are enabled, the subscriptions having `! Diff-URL:` header are updated
+ * by downloading the diff against the stored (base) subscription only:
+ * `{"filters": {"add": [...], "remove": [...]}}`. The full subscription is requested if the diff
+ * is not available or the base is older than the max age.
+ */
+public class ConditionalRequestHttpClient extends HttpClient
+{
+  public static final String CACHE_DIRECTORY = "http-cache";
+  public static final long DEFAULT_MAX_DIFF_BASE_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+  private static final String DIFF_URL_HEADER = "! Diff-URL:";
+  // the subscription header is expected to be in the beginning
+  private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+  private static final String BODY_FILE_EXTENSION = ".txt";
+  private static final String META_FILE_EXTENSION = ".properties";
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
+  private static final String META_URL = "url";
+  private static final String META_ETAG = "etag";
+  private static final String META_LAST_MODIFIED = "lastModified";
+  private static final String META_DIFF_URL = "diffUrl";
+  private static final String META_STORED_MILLIS = "storedMillis";
+
+  // appended by the engine to the subscription URLs, they do not identify the subscription
+  private static final Set<String> TRACKING_PARAMS = new HashSet<>(Arrays.asList(
+    "addonName", "addonVersion", "application", "applicationVersion", "platform",
+    "platformVersion", "lastVersion", "downloadCount", "disabled", "manifestVersion"));
+
+  private static final class Entry
+  {
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final String diffUrl;
+    private final long storedMillis;
+
+    private Entry(final String url, final String etag, final String lastModified,
+                  final String diffUrl, final long storedMillis)
+    {
+      this.url = url;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.diffUrl = diffUrl;
+      this.storedMillis = storedMillis;
+    }
+  }
+
+  private final HttpClient httpClient;
+  private final File directory;
+  private final boolean diffUpdates;
+  private final long maxDiffBaseAgeMillis;
+  private final Object lock = new Object();
+  private final AtomicLong notModifiedCount = new AtomicLong(0);
+  private final AtomicLong diffCount = new AtomicLong(0);
+
+  /**
+   * Constructor
+   * @param httpClient wrapped http client to perform the requests
+   * @param directory directory to store the bodies and the validators in,
+   *                  see {@link #CACHE_DIRECTORY}
+   * @param diffUpdates `true` to download the diffs for the subscriptions supporting it
+   */
+  public ConditionalRequestHttpClient(final HttpClient httpClient, final File directory,
+                                      final boolean diffUpdates)
+  {
+    this(httpClient, directory, diffUpdates, DEFAULT_MAX_DIFF_BASE_AGE_MILLIS);
+  }
+
+  /**
+   * Constructor
+   * @param httpClient wrapped http client to perform the requests
+   * @param directory directory to store the bodies and the validators in
+   * @param diffUpdates `true` to download the diffs for the subscriptions supporting it
+   * @param maxDiffBaseAgeMillis max age of the stored subscription to apply the diffs to
+   */
+  public ConditionalRequestHttpClient(final HttpClient httpClient, final File directory,
+                                      final boolean diffUpdates, final long maxDiffBaseAgeMillis)
+  {
+    this.httpClient = httpClient;
+    this.directory = directory;
+    this.diffUpdates = diffUpdates;
+    this.maxDiffBaseAgeMillis = maxDiffBaseAgeMillis;
+  }
+
+  /**
+   * @return count of the requests answered with the stored body after `304 Not Modified`
+   */
+  public long getNotModifiedCount()
+  {
+    return notModifiedCount.get();
+  }
+
+  /**
+   * @return count of the requests answered by applying the diff to the stored body
+   */
+  public long getDiffCount()
+  {
+    return diffCount.get();
+  }
+
+  /**
+   * Remove all the stored bodies and validators
+   */
+  public void clear()
+  {
+    synchronized (lock)
+    {
+      final File[] files = directory.listFiles();
+      if (files != null)
+      {
+        for (final File file : files)
+        {
+          if (!file.delete())
+          {
+            Timber.w("Failed to delete %s", file);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void request(final HttpRequest request, final Callback callback)
+  {
+    if (!isRevalidatable(request))
+    {
+      httpClient.request(request, callback);
+      return;
+    }
+
+    final String url = Utils.getUrlWithoutParams(request.getUrl(), TRACKING_PARAMS);
+    final Entry entry = loadEntry(url);
+    if (entry != null && diffUpdates && entry.diffUrl != null
+      && System.currentTimeMillis() - entry.storedMillis <= maxDiffBaseAgeMillis)
+    {
+      requestDiff(request, entry, callback);
+      return;
+    }
+    requestConditionally(request, entry, callback);
+  }
+
+  private static boolean isRevalidatable(final HttpRequest request)
+  {
+    if (!REQUEST_METHOD_GET.equalsIgnoreCase(request.getMethod())
+      || request.skipInputStreamReading())
+    {
+      return false;
+    }
+    // the caller revalidates on its own
+    for (final HeaderEntry header : request.getHeaders())
+    {
+      if (HEADER_IF_NONE_MATCH.equalsIgnoreCase(header.getKey())
+        || HEADER_IF_MODIFIED_SINCE.equalsIgnoreCase(header.getKey()))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void requestConditionally(final HttpRequest request, final Entry entry,
+                                    final Callback callback)
+  {
+    HttpRequest conditionalRequest = request;
+    if (entry != null && (entry.etag != null || entry.lastModified != null))
+    {
+      final List<HeaderEntry> headers = new ArrayList<>(request.getHeaders());
+      if (entry.etag != null)
+      {
+        headers.add(HeaderEntry.of(HEADER_IF_NONE_MATCH, entry.etag));
+      }
+      if (entry.lastModified != null)
+      {
+        headers.add(HeaderEntry.of(HEADER_IF_MODIFIED_SINCE, entry.lastModified));
+      }
+      conditionalRequest = new HttpRequest(request.getUrl(), request.getMethod(), headers,
+        request.getFollowRedirect(), request.skipInputStreamReading());
+    }
+
+    httpClient.request(conditionalRequest, new Callback()
+    {
+      @Override
+      public void onFinished(final ServerResponse response)
+      {
+        callback.onFinished(processResponse(entry, request, response));
+      }
+    });
+  }
+
+  private ServerResponse processResponse(final Entry entry, final HttpRequest request,
+                                         final ServerResponse response)
+  {
+    if (response == null || response.getStatus() != ServerResponse.NsStatus.OK)
+    {
+      return response;
+    }
+
+    final String url = Utils.getUrlWithoutParams(request.getUrl(), TRACKING_PARAMS);
+    if (response.getResponseStatus() == STATUS_CODE_NOT_MODIFIED && entry != null)
+    {
+      final ByteBuffer body = loadBody(url);
+      if (body == null)
+      {
+        return response;
+      }
+      Timber.d("Not modified %s, answering with the stored body", url);
+      notModifiedCount.incrementAndGet();
+      response.setResponse(body);
+      response.setResponseStatus(STATUS_CODE_OK);
+      return response;
+    }
+
+    if (response.getResponseStatus() == STATUS_CODE_OK && response.getResponse() != null)
+    {
+      store(url, response);
+    }
+    return response;
+  }
+
+  private void requestDiff(final HttpRequest request, final Entry entry, final Callback callback)
+  {
+    final String diffUrl;
+    try
+    {
+      diffUrl = Utils.getAbsoluteUrl(request.getUrl(), entry.diffUrl);
+    }
+    catch (final IOException e)
+    {
+      Timber.w(e, "Invalid diff url %s", entry.diffUrl);
+      requestConditionally(request, entry, callback);
+      return;
+    }
+
+    Timber.d("Requesting diff %s for %s", diffUrl, entry.url);
+    httpClient.request(new HttpRequest(diffUrl), new Callback()
+    {
+      @Override
+      public void onFinished(final ServerResponse diffResponse)
+      {
+        final ByteBuffer body = applyDiff(entry.url, diffResponse);
+        if (body == null)
+        {
+          // no diff for the base anymore or it's broken
+          requestConditionally(request, entry, callback);
+          return;
+        }
+        diffCount.incrementAndGet();
+        final ServerResponse response = new ServerResponse();
+        response.setStatus(ServerResponse.NsStatus.OK);
+        response.setResponseStatus(STATUS_CODE_OK);
+        response.setFinalUrl(request.getUrl());
+        response.setResponse(body);
+        callback.onFinished(response);
+      }
+    });
+  }
+
+  private ByteBuffer applyDiff(final String url, final ServerResponse diffResponse)
+  {
+    if (diffResponse == null
+      || diffResponse.getStatus() != ServerResponse.NsStatus.OK
+      || diffResponse.getResponseStatus() != STATUS_CODE_OK
+      || diffResponse.getResponse() == null)
+    {
+      return null;
+    }
+
+    final ByteBuffer base = loadBody(url);
+    if (base == null)
+    {
+      return null;
+    }
+
+    try
+    {
+      final JSONObject filters = new JSONObject(
+        new String(Utils.byteBufferToByteArray(diffResponse.getResponse()), CHARSET))
+        .getJSONObject("filters");
+      final Set<String> removed = new HashSet<>(toList(filters.optJSONArray("remove")));
+      final List<String> added = toList(filters.optJSONArray("add"));
+
+      final StringBuilder sb = new StringBuilder(base.capacity() + MAX_HEADER_BYTES);
+      final BufferedReader reader = new BufferedReader(new StringReader(
+        new String(Utils.byteBufferToByteArray(base), CHARSET)));
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (!removed.contains(line))
+        {
+          sb.append(line).append('\n');
+        }
+      }
+      for (final String filter : added)
+      {
+        sb.append(filter).append('\n');
+      }
+
+      final ByteBuffer body = Utils.stringToByteBuffer(sb.toString(), CHARSET);
+      body.rewind();
+      return body;
+    }
+    catch (final JSONException | IOException e)
+    {
+      Timber.w(e, "Failed to apply the diff for %s", url);
+      return null;
+    }
+  }
+
+  private static List<String> toList(final JSONArray array) throws JSONException
+  {
+    if (array == null)
+    {
+      return Collections.emptyList();
+    }
+    final List<String> list = new ArrayList<>(array.length());
+    for (int i = 0; i < array.length(); i++)
+    {
+      list.add(array.getString(i));
+    }
+    return list;
+  }
+
+  private static String getDiffUrl(final ByteBuffer body)
+  {
+    final ByteBuffer head = body.duplicate();
+    head.rewind();
+    final byte[] bytes = new byte[Math.min(head.remaining(), MAX_HEADER_BYTES)];
+    head.get(bytes);
+
+    final BufferedReader reader = new BufferedReader(new StringReader(new String(bytes, CHARSET)));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.startsWith(DIFF_URL_HEADER))
+        {
+          return line.substring(DIFF_URL_HEADER.length()).trim();
+        }
+        // the header is over
+        if (!line.startsWith("!") && !line.startsWith("["))
+        {
+          break;
+        }
+      }
+    }
+    catch (final IOException e)
+    {
+      Timber.w(e, "Failed to read the subscription header");
+    }
+    return null;
+  }
+
+  private static String getHeader(final ServerResponse response, final String name)
+  {
+    for (final HeaderEntry header : response.getResponseHeaders())
+    {
+      if (name.equalsIgnoreCase(header.getKey()))
+      {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private File getFile(final String url, final String extension)
+  {
+    // collisions are resolved by comparing the url stored in the metadata
+    return new File(directory, Integer.toHexString(url.hashCode()) + extension);
+  }
+
+  private Entry loadEntry(final String url)
+  {
+    synchronized (lock)
+    {
+      final File metaFile = getFile(url, META_FILE_EXTENSION);
+      if (!metaFile.exists() || !getFile(url, BODY_FILE_EXTENSION).exists())
+      {
+        return null;
+      }
+
+      final Properties properties = new Properties();
+      InputStream is = null;
+      try
+      {
+        is = new FileInputStream(metaFile);
+        properties.load(is);
+      }
+      catch (final IOException e)
+      {
+        Timber.w(e, "Failed to load the validators for %s", url);
+        return null;
+      }
+      finally
+      {
+        closeQuietly(is);
+      }
+
+      if (!url.equals(properties.getProperty(META_URL)))
+      {
+        return null;
+      }
+      long storedMillis = 0;
+      try
+      {
+        storedMillis = Long.parseLong(properties.getProperty(META_STORED_MILLIS, "0"));
+      }
+      catch (final NumberFormatException e)
+      {
+        Timber.w(e, "Invalid stored time for %s", url);
+      }
+      return new Entry(url,
+        properties.getProperty(META_ETAG),
+        properties.getProperty(META_LAST_MODIFIED),
+        properties.getProperty(META_DIFF_URL),
+        storedMillis);
+    }
+  }
+
+  private ByteBuffer loadBody(final String url)
+  {
+    synchronized (lock)
+    {
+      InputStream is = null;
+      try
+      {
+        is = new FileInputStream(getFile(url, BODY_FILE_EXTENSION));
+        return Utils.readFromInputStream(is);
+      }
+      catch (final IOException e)
+      {
+        Timber.w(e, "Failed to load the stored body for %s", url);
+        return null;
+      }
+      finally
+      {
+        closeQuietly(is);
+      }
+    }
+  }
+
+  private void store(final String url, final ServerResponse response)
+  {
+    final String etag = getHeader(response, HEADER_ETAG);
+    final String lastModified = getHeader(response, HEADER_LAST_MODIFIED);
+    final String diffUrl = diffUpdates ? getDiffUrl(response.getResponse()) : null;
+    if (etag == null && lastModified == null && diffUrl == null)
+    {
+      return;
+    }
+
+    final Properties properties = new Properties();
+    properties.setProperty(META_URL, url);
+    if (etag != null)
+    {
+      properties.setProperty(META_ETAG, etag);
+    }
+    if (lastModified != null)
+    {
+      properties.setProperty(META_LAST_MODIFIED, lastModified);
+    }
+    if (diffUrl != null)
+    {
+      properties.setProperty(META_DIFF_URL, diffUrl);
+    }
+    properties.setProperty(META_STORED_MILLIS, String.valueOf(System.currentTimeMillis()));
+
+    synchronized (lock)
+    {
+      final File bodyFile = getFile(url, BODY_FILE_EXTENSION);
+      final File metaFile = getFile(url, META_FILE_EXTENSION);
+      final File tempBodyFile = getFile(url, BODY_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+      final File tempMetaFile = getFile(url, META_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+      OutputStream os = null;
+      try
+      {
+        if (!directory.exists() && !directory.mkdirs())
+        {
+          throw new IOException("Failed to create " + directory);
+        }
+
+        final FileOutputStream bodyStream = new FileOutputStream(tempBodyFile);
+        os = bodyStream;
+        final ByteBuffer body = response.getResponse().duplicate();
+        body.rewind();
+        final FileChannel channel = bodyStream.getChannel();
+        while (body.hasRemaining())
+        {
+          channel.write(body);
+        }
+        os.close();
+
+        os = new FileOutputStream(tempMetaFile);
+        properties.store(os, null);
+        os.close();
+        os = null;
+
+        // the entry is valid only if both files exist, so remove the outdated metadata first
+        if ((metaFile.exists() && !metaFile.delete())
+          || !tempBodyFile.renameTo(bodyFile)
+          || !tempMetaFile.renameTo(metaFile))
+        {
+          throw new IOException("Failed to replace the stored files for " + url);
+        }
+        Timber.d("Stored %s for revalidation", url);
+      }
+      catch (final IOException e)
+      {
+        Timber.w(e, "Failed to store %s", url);
+        closeQuietly(os);
+        tempBodyFile.delete();
+        tempMetaFile.delete();
+        metaFile.delete();
+      }
+    }
+  }
+
+  private static void closeQuietly(final Closeable closeable)
+  {
+    if (closeable != null)
+    {
+      try
+      {
+        closeable.close();
+      }
+      catch (final IOException e)
+      {
+        // ignored
+      }
+    }
+  }
+}
@@ -26,12 +26,14 @@ import timber.log.Timber;
 
 /**
  * InputStream wrapper that wraps `HttpURLConnection`s inputStream and closes wrapped connection
- * when it's input stream is closed.
+ * when it's input stream is closed before the end of stream is reached. The completely read
+ * connection is just released, so it can be kept alive and reused.
  */
 public class ConnectionInputStream extends InputStream
 {
   private final HttpURLConnection httpURLConnection;
   private boolean closed = false;
+  private volatile boolean exhausted = false;
   private static final int CACHE_SIZE = 4096;
   private final BufferedInputStream bufferedInputStream;
 
@@ -59,22 +61,31 @@ public class ConnectionInputStream extends InputStream
     }
   }
 
+  private int checkExhausted(final int result)
+  {
+    if (result == -1)
+    {
+      exhausted = true;
+    }
+    return result;
+  }
+
   @Override
   public int read() throws IOException
   {
-    return bufferedInputStream.read();
+    return checkExhausted(bufferedInputStream.read());
   }
 
   @Override
   public int read(final byte b[]) throws IOException
   {
-    return bufferedInputStream.read(b);
+    return checkExhausted(bufferedInputStream.read(b));
   }
 
   @Override
   public int read(final byte b[], final int off, final int len) throws IOException
   {
-    return bufferedInputStream.read(b, off, len);
+    return checkExhausted(bufferedInputStream.read(b, off, len));
   }
 
   @Override
@@ -101,7 +112,10 @@ public class ConnectionInputStream extends InputStream
     }
     finally
     {
-      httpURLConnection.disconnect();
+      if (!exhausted)
+      {
+        httpURLConnection.disconnect();
+      }
     }
   }
 
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection metrics of {@link AndroidHttpClient}.
+ * <p>
+ * The TLS handshakes are counted for the connections opened by the default connection factory
+ * only, so the reuse ratio is known for the HTTPS requests made with it.
+ * <p>
+ * Thread-safe.
+ */
+public final class ConnectionMetrics
+{
+  private final AtomicLong requestsCount = new AtomicLong(0);
+  private final AtomicLong secureRequestsCount = new AtomicLong(0);
+  private final AtomicLong handshakesCount = new AtomicLong(0);
+  private final AtomicLong timeToFirstByteNanos = new AtomicLong(0);
+  private final AtomicLong firstBytesCount = new AtomicLong(0);
+
+  void onRequest(final boolean secure)
+  {
+    requestsCount.incrementAndGet();
+    if (secure)
+    {
+      secureRequestsCount.incrementAndGet();
+    }
+  }
+
+  void onHandshake()
+  {
+    handshakesCount.incrementAndGet();
+  }
+
+  void onFirstByte(final long nanos)
+  {
+    timeToFirstByteNanos.addAndGet(nanos);
+    firstBytesCount.incrementAndGet();
+  }
+
+  public long getRequestsCount()
+  {
+    return requestsCount.get();
+  }
+
+  public long getSecureRequestsCount()
+  {
+    return secureRequestsCount.get();
+  }
+
+  /**
+   * @return TLS handshakes count, i.e. the count of the HTTPS connections opened
+   */
+  public long getHandshakesCount()
+  {
+    return handshakesCount.get();
+  }
+
+  /**
+   * @return the part of the HTTPS requests made over the reused connections [0..1]
+   */
+  public float getReuseRatio()
+  {
+    final long secureRequests = secureRequestsCount.get();
+    if (secureRequests == 0)
+    {
+      return 0;
+    }
+    return Math.max(0, 1 - (float) handshakesCount.get() / secureRequests);
+  }
+
+  /**
+   * @return average time from the request start till the response headers are received
+   */
+  public long getAverageTimeToFirstByteMillis()
+  {
+    final long count = firstBytesCount.get();
+    if (count == 0)
+    {
+      return 0;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(timeToFirstByteNanos.get() / count);
+  }
+
+  public void reset()
+  {
+    requestsCount.set(0);
+    secureRequestsCount.set(0);
+    handshakesCount.set(0);
+    timeToFirstByteNanos.set(0);
+    firstBytesCount.set(0);
+  }
+}
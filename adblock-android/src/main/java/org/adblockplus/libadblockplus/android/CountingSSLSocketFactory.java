@@ -0,0 +1,111 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.adblockplus.libadblockplus.android;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * SSLSocketFactory that counts TLS handshakes of the created sockets.
+ * The same instance must be used for all the connections, as the connections are pooled
+ * per SSLSocketFactory.
+ */
+final class CountingSSLSocketFactory extends SSLSocketFactory
+{
+  private final SSLSocketFactory delegate;
+  private final ConnectionMetrics metrics;
+  private final HandshakeCompletedListener listener = new HandshakeCompletedListener()
+  {
+    @Override
+    public void handshakeCompleted(final HandshakeCompletedEvent event)
+    {
+      metrics.onHandshake();
+    }
+  };
+
+  CountingSSLSocketFactory(final SSLSocketFactory delegate, final ConnectionMetrics metrics)
+  {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  private Socket observe(final Socket socket)
+  {
+    if (socket instanceof SSLSocket)
+    {
+      ((SSLSocket) socket).addHandshakeCompletedListener(listener);
+    }
+    return socket;
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites()
+  {
+    return delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites()
+  {
+    return delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public Socket createSocket() throws IOException
+  {
+    return observe(delegate.createSocket());
+  }
+
+  @Override
+  public Socket createSocket(final Socket socket, final String host, final int port,
+                             final boolean autoClose) throws IOException
+  {
+    return observe(delegate.createSocket(socket, host, port, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(final String host, final int port) throws IOException
+  {
+    return observe(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(final String host, final int port, final InetAddress localHost,
+                             final int localPort) throws IOException
+  {
+    return observe(delegate.createSocket(host, port, localHost, localPort));
+  }
+
+  @Override
+  public Socket createSocket(final InetAddress host, final int port) throws IOException
+  {
+    return observe(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(final InetAddress address, final int port,
+                             final InetAddress localAddress, final int localPort) throws IOException
+  {
+    return observe(delegate.createSocket(address, port, localAddress, localPort));
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.EmulationSelector;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded LRU cache of the element hiding stylesheets and emulation selectors per domain.
+ * <p>
+ * The cached data is valid for a single filter lists version only (see
+ * {@link org.adblockplus.libadblockplus.FilterEngine#getFilterListVersion()}), the whole cache is
+ * dropped once a newer version is requested. The entries also expire after the max age
+ * to bound the memory held for the rarely visited domains.
+ * <p>
+ * Thread-safe.
+ */
+public final class ElementHidingCache
+{
+  // stylesheets for the popular domains with EasyList are several hundreds of KB each
+  public static final int DEFAULT_MAX_CHARS = 4 * 1024 * 1024;
+  public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  // estimated per entry overhead in chars
+  private static final int ENTRY_OVERHEAD_CHARS = 64;
+
+  private enum Kind
+  {
+    STYLESHEET,
+    STYLESHEET_SPECIFIC_ONLY,
+    EMULATION_SELECTORS
+  }
+
+  private static final class Key
+  {
+    private final String domain;
+    private final Kind kind;
+
+    private Key(final String domain, final Kind kind)
+    {
+      this.domain = domain;
+      this.kind = kind;
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+      if (this == other)
+      {
+        return true;
+      }
+      if (!(other instanceof Key))
+      {
+        return false;
+      }
+      final Key key = (Key) other;
+      return kind == key.kind && domain.equals(key.domain);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * domain.hashCode() + kind.hashCode();
+    }
+  }
+
+  private static final class Entry
+  {
+    private final Object value;
+    private final int weight;
+    private final long createdNanos;
+
+    private Entry(final Object value, final int weight, final long createdNanos)
+    {
+      this.value = value;
+      this.weight = weight;
+      this.createdNanos = createdNanos;
+    }
+  }
+
+  private final Map<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+  private final int maxChars;
+  private final long maxAgeNanos;
+  private long version = 0;
+  private long chars = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  public ElementHidingCache()
+  {
+    this(DEFAULT_MAX_CHARS, DEFAULT_MAX_AGE_MILLIS);
+  }
+
+  /**
+   * @param maxChars max total chars count of the cached data
+   * @param maxAgeMillis max age of the cached data in milliseconds
+   */
+  public ElementHidingCache(final int maxChars, final long maxAgeMillis)
+  {
+    if (maxChars <= 0 || maxAgeMillis <= 0)
+    {
+      throw new IllegalArgumentException("Max chars and max age must be positive");
+    }
+    this.maxChars = maxChars;
+    this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+  }
+
+  /**
+   * Get cached element hiding stylesheet
+   * @param domain domain
+   * @param specificOnly `true` for the domain specific stylesheet
+   * @param version current filter lists version
+   * @return cached stylesheet or `null` if not cached
+   */
+  public synchronized String getStyleSheet(final String domain, final boolean specificOnly,
+                                           final long version)
+  {
+    return (String) get(new Key(domain, stylesheetKind(specificOnly)), version);
+  }
+
+  /**
+   * Put element hiding stylesheet into the cache
+   * @param domain domain
+   * @param specificOnly `true` for the domain specific stylesheet
+   * @param version filter lists version the stylesheet was generated for
+   * @param styleSheet stylesheet
+   */
+  public synchronized void putStyleSheet(final String domain, final boolean specificOnly,
+                                         final long version, final String styleSheet)
+  {
+    put(new Key(domain, stylesheetKind(specificOnly)), version, styleSheet, styleSheet.length());
+  }
+
+  /**
+   * Get cached element hiding emulation selectors
+   * @param domain domain
+   * @param version current filter lists version
+   * @return a new List of the cached selectors or `null` if not cached
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized List<EmulationSelector> getEmulationSelectors(final String domain,
+                                                                    final long version)
+  {
+    final List<EmulationSelector> selectors =
+      (List<EmulationSelector>) get(new Key(domain, Kind.EMULATION_SELECTORS), version);
+    return (selectors != null ? new ArrayList<>(selectors) : null);
+  }
+
+  /**
+   * Put element hiding emulation selectors into the cache
+   * @param domain domain
+   * @param version filter lists version the selectors were obtained for
+   * @param selectors selectors
+   */
+  public synchronized void putEmulationSelectors(final String domain, final long version,
+                                                 final List<EmulationSelector> selectors)
+  {
+    int weight = 0;
+    for (final EmulationSelector selector : selectors)
+    {
+      weight += selector.selector.length() + selector.text.length();
+    }
+    put(new Key(domain, Kind.EMULATION_SELECTORS), version, new ArrayList<>(selectors), weight);
+  }
+
+  /**
+   * Remove all the cached data
+   */
+  public synchronized void clear()
+  {
+    map.clear();
+    chars = 0;
+  }
+
+  public synchronized int size()
+  {
+    return map.size();
+  }
+
+  /**
+   * @return total chars count of the cached data
+   */
+  public synchronized long getCharsCount()
+  {
+    return chars;
+  }
+
+  public synchronized long getHitCount()
+  {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount()
+  {
+    return missCount;
+  }
+
+  private static Kind stylesheetKind(final boolean specificOnly)
+  {
+    return specificOnly ? Kind.STYLESHEET_SPECIFIC_ONLY : Kind.STYLESHEET;
+  }
+
+  // the versions are never decreased, so the older one means the data is already outdated
+  private boolean ensureVersion(final long version)
+  {
+    if (version < this.version)
+    {
+      return false;
+    }
+    if (version > this.version)
+    {
+      clear();
+      this.version = version;
+    }
+    return true;
+  }
+
+  private Object get(final Key key, final long version)
+  {
+    if (!ensureVersion(version))
+    {
+      missCount++;
+      return null;
+    }
+    final Entry entry = map.get(key);
+    if (entry == null)
+    {
+      missCount++;
+      return null;
+    }
+    if (System.nanoTime() - entry.createdNanos > maxAgeNanos)
+    {
+      remove(key);
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.value;
+  }
+
+  private void put(final Key key, final long version, final Object value, final int weight)
+  {
+    if (!ensureVersion(version))
+    {
+      // the filter lists were changed while the data was being generated
+      return;
+    }
+    final int entryWeight = weight + ENTRY_OVERHEAD_CHARS;
+    if (entryWeight > maxChars)
+    {
+      return;
+    }
+    remove(key);
+    map.put(key, new Entry(value, entryWeight, System.nanoTime()));
+    chars += entryWeight;
+
+    final Iterator<Entry> iterator = map.values().iterator();
+    while (chars > maxChars && iterator.hasNext())
+    {
+      chars -= iterator.next().weight;
+      iterator.remove();
+    }
+  }
+
+  private void remove(final Key key)
+  {
+    final Entry removed = map.remove(key);
+    if (removed != null)
+    {
+      chars -= removed.weight;
+    }
+  }
+}
@@ -0,0 +1,777 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.MatchesResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import timber.log.Timber;
+
+/**
+ * Binary, versioned and memory-mappable snapshot of the host-anchored blocking filters
+ * (`||host^`) and of all the exception filters listed in `patterns.ini`.
+ * <p>
+ * The snapshot is stored next to `patterns.ini` and is valid for the `patterns.ini` file
+ * it was built from only (same length and modification time). Loading it requires no parsing,
+ * so it can answer the host lookups while the engine is still parsing the full filter lists.
+ * Only the filters of the enabled subscriptions are indexed. The exception filters are applied
+ * regardless of their options: the host-anchored ones (and the ones with `domain=` option) are
+ * indexed by the hosts, the rest are kept as URL patterns. So the snapshot can miss a blocking
+ * filter, but it never blocks a request allowlisted by the engine, except for the ones
+ * allowlisted with `$sitekey` exception filters: the sitekeys are not known before the engine
+ * is ready, so these filters are not indexed (eg. Acceptable Ads `@@$sitekey=...,document`
+ * has no URL pattern and would allowlist all the documents).
+ * <p>
+ * Thread-safe.
+ */
+public final class FilterIndexSnapshot
+{
+  public static final String PATTERNS_FILE_NAME = "patterns.ini";
+  public static final String FILE_NAME = PATTERNS_FILE_NAME + ".snapshot";
+
+  // increment when the layout or the hash function is changed
+  public static final int FORMAT_VERSION = 3;
+
+  private static final int MAGIC = 0x41425053; // "ABPS"
+
+  /*
+   * Layout (big-endian):
+   * int magic, int format version, long source length, long source modification time,
+   * int blocking hashes count, int exception hashes count, int document exception hashes count,
+   * int unbound exceptions size, then the sorted hashes (long) of all the three tables
+   * one after another and the unbound exceptions (UTF-8, one per line: `R` or `D` for `$document`
+   * followed by the URL pattern of the filter).
+   */
+  private static final int HEADER_SIZE = 40;
+  private static final int HASH_SIZE = 8;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  private static final String SECTION_SUBSCRIPTION = "[Subscription]";
+  private static final String SECTION_SUBSCRIPTION_FILTERS = "[Subscription filters]";
+  private static final String SECTION_FILTER = "[Filter]";
+  private static final String PROPERTY_DISABLED = "disabled=true";
+  private static final String PROPERTY_TEXT = "text=";
+  private static final String BLOCKING_PREFIX = "||";
+  private static final String EXCEPTION_MARK = "@@";
+  private static final String EXCEPTION_PREFIX = EXCEPTION_MARK + "||";
+  private static final String ANCHORED_EXCEPTION_PREFIX = EXCEPTION_MARK + "|";
+  private static final String SCHEME_SEPARATOR = "://";
+  private static final Set<String> WEB_SCHEMES =
+    new HashSet<>(Arrays.asList("http", "https", "ws", "wss"));
+  private static final String DOCUMENT_OPTION = "document";
+  private static final String GENERICBLOCK_OPTION = "genericblock";
+  private static final String DOMAIN_OPTION = "domain=";
+  private static final String SITEKEY_OPTION = "sitekey=";
+  private static final char REQUEST_EXCEPTION_TYPE = 'R';
+  private static final char DOCUMENT_EXCEPTION_TYPE = 'D';
+  private static final char LINE_SEPARATOR = '\n';
+
+  // same as in core `Filter` class
+  private static final Pattern OPTIONS_REGEX =
+    Pattern.compile("\\$(~?[\\w-]+(?:=[^,]*)?(?:,~?[\\w-]+(?:=[^,]*)?)*)$");
+  private static final String HOST_ANCHOR_REGEX = "^[\\w\\-]+:\\/+(?:[^\\/]+\\.)?";
+  private static final String SEPARATOR_REGEX =
+    "(?:[\\x00-\\x24\\x26-\\x2C\\x2F\\x3A-\\x40\\x5B-\\x5E\\x60\\x7B-\\x7F]|$)";
+
+  private final ByteBuffer buffer;
+  private final long sourceLength;
+  private final long sourceModified;
+  private final int blockingCount;
+  private final int exceptionCount;
+  private final int documentExceptionCount;
+  private final int unboundExceptionsSize;
+  private final List<Pattern> unboundExceptions = new ArrayList<>();
+  private final List<Pattern> unboundDocumentExceptions = new ArrayList<>();
+
+  private FilterIndexSnapshot(final ByteBuffer buffer)
+  {
+    this.buffer = buffer;
+    this.sourceLength = buffer.getLong(8);
+    this.sourceModified = buffer.getLong(16);
+    this.blockingCount = buffer.getInt(24);
+    this.exceptionCount = buffer.getInt(28);
+    this.documentExceptionCount = buffer.getInt(32);
+    this.unboundExceptionsSize = buffer.getInt(36);
+  }
+
+  // a few dozens of filters at most, they are compiled on load
+  private void compileUnboundExceptions()
+  {
+    final byte[] data = new byte[unboundExceptionsSize];
+    final ByteBuffer source = buffer.duplicate();
+    source.position(unboundExceptionsOffset());
+    source.get(data);
+    for (final String line : new String(data, CHARSET).split(String.valueOf(LINE_SEPARATOR)))
+    {
+      if (line.isEmpty())
+      {
+        continue;
+      }
+      final Pattern pattern = Pattern.compile(
+        toRegex(line.substring(1)), Pattern.CASE_INSENSITIVE);
+      if (line.charAt(0) == DOCUMENT_EXCEPTION_TYPE)
+      {
+        unboundDocumentExceptions.add(pattern);
+      }
+      unboundExceptions.add(pattern);
+    }
+  }
+
+  /**
+   * Build the snapshot parsing `patterns.ini` text
+   * @param patternsFile `patterns.ini` file
+   * @return snapshot (in memory, see {@link #write(File)})
+   * @throws IOException if the file can't be read
+   */
+  public static FilterIndexSnapshot build(final File patternsFile) throws IOException
+  {
+    final long sourceLength = patternsFile.length();
+    final long sourceModified = patternsFile.lastModified();
+
+    final Set<String> blockingHosts = new HashSet<>();
+    final Set<String> disabledFilters = new HashSet<>();
+    final Set<Long> blocking = new HashSet<>();
+    final Set<Long> exceptions = new HashSet<>();
+    final Set<Long> documentExceptions = new HashSet<>();
+    final StringBuilder unboundExceptions = new StringBuilder();
+
+    final BufferedReader reader = new BufferedReader(
+      new InputStreamReader(new FileInputStream(patternsFile), CHARSET));
+    try
+    {
+      String section = null;
+      boolean subscriptionDisabled = false;
+      String filterText = null;
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.startsWith("["))
+        {
+          section = line;
+          if (section.equals(SECTION_SUBSCRIPTION))
+          {
+            subscriptionDisabled = false;
+          }
+          filterText = null;
+          continue;
+        }
+        if (SECTION_SUBSCRIPTION_FILTERS.equals(section))
+        {
+          if (!subscriptionDisabled)
+          {
+            indexFilter(line, blockingHosts, exceptions, documentExceptions, unboundExceptions);
+          }
+        }
+        else if (SECTION_SUBSCRIPTION.equals(section))
+        {
+          if (line.equals(PROPERTY_DISABLED))
+          {
+            subscriptionDisabled = true;
+          }
+        }
+        else if (SECTION_FILTER.equals(section))
+        {
+          if (line.startsWith(PROPERTY_TEXT))
+          {
+            filterText = line.substring(PROPERTY_TEXT.length());
+          }
+          else if (line.equals(PROPERTY_DISABLED) && filterText != null)
+          {
+            disabledFilters.add(filterText);
+          }
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    // the filters can be disabled individually (the states can be listed after the filters)
+    for (final String host : blockingHosts)
+    {
+      if (!disabledFilters.contains(BLOCKING_PREFIX + host + "^"))
+      {
+        blocking.add(hash(host, 0));
+      }
+    }
+
+    final byte[] unboundExceptionsData = unboundExceptions.toString().getBytes(CHARSET);
+    final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + unboundExceptionsData.length +
+      HASH_SIZE * (blocking.size() + exceptions.size() + documentExceptions.size()));
+    buffer.putInt(MAGIC);
+    buffer.putInt(FORMAT_VERSION);
+    buffer.putLong(sourceLength);
+    buffer.putLong(sourceModified);
+    buffer.putInt(blocking.size());
+    buffer.putInt(exceptions.size());
+    buffer.putInt(documentExceptions.size());
+    buffer.putInt(unboundExceptionsData.length);
+    putSorted(buffer, blocking);
+    putSorted(buffer, exceptions);
+    putSorted(buffer, documentExceptions);
+    buffer.put(unboundExceptionsData);
+    buffer.rewind();
+    final FilterIndexSnapshot snapshot = new FilterIndexSnapshot(buffer);
+    snapshot.compileUnboundExceptions();
+    return snapshot;
+  }
+
+  /**
+   * Load the snapshot memory-mapping the file
+   * @param snapshotFile snapshot file
+   * @param patternsFile `patterns.ini` file the snapshot is expected to be built from
+   * @return snapshot or `null` if there is no snapshot or it's outdated or in other format version
+   */
+  public static FilterIndexSnapshot load(final File snapshotFile, final File patternsFile)
+  {
+    if (!snapshotFile.exists() || !patternsFile.exists())
+    {
+      return null;
+    }
+    try
+    {
+      final RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+      final ByteBuffer buffer;
+      try
+      {
+        final FileChannel channel = file.getChannel();
+        if (channel.size() < HEADER_SIZE)
+        {
+          Timber.w("Snapshot file %s is truncated", snapshotFile);
+          return null;
+        }
+        // the mapping stays valid after the channel is closed
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      finally
+      {
+        file.close();
+      }
+
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+      {
+        Timber.d("Snapshot file %s is in other format version", snapshotFile);
+        return null;
+      }
+      final FilterIndexSnapshot snapshot = new FilterIndexSnapshot(buffer);
+      if (buffer.capacity() != HEADER_SIZE + snapshot.unboundExceptionsSize +
+        (long) HASH_SIZE * (snapshot.blockingCount + snapshot.exceptionCount +
+          snapshot.documentExceptionCount))
+      {
+        Timber.w("Snapshot file %s is truncated", snapshotFile);
+        return null;
+      }
+      if (!snapshot.isBuiltFrom(patternsFile))
+      {
+        Timber.d("Snapshot file %s is outdated", snapshotFile);
+        return null;
+      }
+      snapshot.compileUnboundExceptions();
+      return snapshot;
+    }
+    catch (final IOException e)
+    {
+      Timber.e(e, "Failed to load snapshot file %s", snapshotFile);
+      return null;
+    }
+    catch (final PatternSyntaxException e)
+    {
+      Timber.e(e, "Snapshot file %s is corrupted", snapshotFile);
+      return null;
+    }
+  }
+
+  /**
+   * Write the snapshot atomically
+   * @param snapshotFile snapshot file
+   * @throws IOException if the file can't be written
+   */
+  public void write(final File snapshotFile) throws IOException
+  {
+    final File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+    final FileOutputStream outputStream = new FileOutputStream(tmpFile);
+    try
+    {
+      final FileChannel channel = outputStream.getChannel();
+      final ByteBuffer data = buffer.duplicate();
+      data.clear();
+      while (data.hasRemaining())
+      {
+        channel.write(data);
+      }
+      outputStream.getFD().sync();
+    }
+    finally
+    {
+      outputStream.close();
+    }
+    if (!tmpFile.renameTo(snapshotFile))
+    {
+      tmpFile.delete();
+      throw new IOException("Failed to rename " + tmpFile + " to " + snapshotFile);
+    }
+  }
+
+  /**
+   * @param patternsFile `patterns.ini` file
+   * @return `true` if the snapshot was built from the current version of the file
+   */
+  public boolean isBuiltFrom(final File patternsFile)
+  {
+    return patternsFile.length() == sourceLength && patternsFile.lastModified() == sourceModified;
+  }
+
+  /**
+   * Check if the requests to the host are blocked by a host-anchored blocking filter
+   * and not allowlisted by a host-anchored exception filter
+   * @param host request host
+   * @return `true` if blocked
+   */
+  public boolean isBlocked(final String host)
+  {
+    if (host == null || host.isEmpty())
+    {
+      return false;
+    }
+    return containsAnySuffix(host, blockingOffset(), blockingCount)
+      && !containsAnySuffix(host, exceptionsOffset(), exceptionCount);
+  }
+
+  /**
+   * Check if the documents of the host are allowlisted by `@@||host^$document` filter
+   * (or by any exception filter with `domain=` option applied on the host)
+   * @param host document host
+   * @return `true` if allowlisted
+   */
+  public boolean isDocumentAllowlisted(final String host)
+  {
+    if (host == null || host.isEmpty())
+    {
+      return false;
+    }
+    return containsAnySuffix(host, documentExceptionsOffset(), documentExceptionCount);
+  }
+
+  /**
+   * Match the request like {@link org.adblockplus.AdblockEngine#matches} does,
+   * but with the host-anchored blocking filters only
+   * @param url request URL
+   * @param referrerChain URLs of the parent documents
+   * @return {@link MatchesResult#ALLOWLISTED} if any of the parent documents is allowlisted,
+   *         {@link MatchesResult#BLOCKED} if the request is blocked,
+   *         {@link MatchesResult#NOT_FOUND} otherwise
+   */
+  @NotNull
+  public MatchesResult matches(@NotNull final String url, @NotNull final List<String> referrerChain)
+  {
+    for (final String referrer : referrerChain)
+    {
+      if (isDocumentAllowlisted(ParsedRequestUrl.parse(referrer).getHost())
+        || matchesAny(unboundDocumentExceptions, referrer))
+      {
+        return MatchesResult.ALLOWLISTED;
+      }
+    }
+    // the unbound exceptions are checked for the blocked requests only (the rare case)
+    return isBlocked(ParsedRequestUrl.parse(url).getHost()) && !matchesAny(unboundExceptions, url)
+      ? MatchesResult.BLOCKED
+      : MatchesResult.NOT_FOUND;
+  }
+
+  public int getBlockingCount()
+  {
+    return blockingCount;
+  }
+
+  public int getExceptionCount()
+  {
+    return exceptionCount;
+  }
+
+  public int getDocumentExceptionCount()
+  {
+    return documentExceptionCount;
+  }
+
+  /**
+   * @return count of the exception filters that can't be indexed by the hosts
+   */
+  public int getUnboundExceptionCount()
+  {
+    return unboundExceptions.size();
+  }
+
+  private int blockingOffset()
+  {
+    return HEADER_SIZE;
+  }
+
+  private int exceptionsOffset()
+  {
+    return blockingOffset() + HASH_SIZE * blockingCount;
+  }
+
+  private int documentExceptionsOffset()
+  {
+    return exceptionsOffset() + HASH_SIZE * exceptionCount;
+  }
+
+  private int unboundExceptionsOffset()
+  {
+    return documentExceptionsOffset() + HASH_SIZE * documentExceptionCount;
+  }
+
+  private static boolean matchesAny(final List<Pattern> patterns, final String url)
+  {
+    for (final Pattern pattern : patterns)
+    {
+      if (pattern.matcher(url).find())
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // `||example.com^` matches `example.com` and all its subdomains
+  private boolean containsAnySuffix(final String host, final int offset, final int count)
+  {
+    if (count == 0)
+    {
+      return false;
+    }
+    int start = 0;
+    while (start < host.length())
+    {
+      if (contains(offset, count, hash(host, start)))
+      {
+        return true;
+      }
+      final int dot = host.indexOf('.', start);
+      if (dot < 0)
+      {
+        break;
+      }
+      start = dot + 1;
+    }
+    return false;
+  }
+
+  private boolean contains(final int offset, final int count, final long hash)
+  {
+    int low = 0;
+    int high = count - 1;
+    while (low <= high)
+    {
+      final int middle = (low + high) >>> 1;
+      final long value = buffer.getLong(offset + HASH_SIZE * middle);
+      if (value < hash)
+      {
+        low = middle + 1;
+      }
+      else if (value > hash)
+      {
+        high = middle - 1;
+      }
+      else
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void putSorted(final ByteBuffer buffer, final Set<Long> hashes)
+  {
+    final long[] sorted = new long[hashes.size()];
+    int i = 0;
+    for (final Long hash : hashes)
+    {
+      sorted[i++] = hash;
+    }
+    Arrays.sort(sorted);
+    for (final long hash : sorted)
+    {
+      buffer.putLong(hash);
+    }
+  }
+
+  // case-insensitive FNV-1a of the host suffix starting at `start`
+  private static long hash(final String host, final int start)
+  {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = start; i < host.length(); i++)
+    {
+      hash ^= Character.toLowerCase(host.charAt(i));
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static void indexFilter(final String filter,
+                                  final Set<String> blockingHosts,
+                                  final Set<Long> exceptions,
+                                  final Set<Long> documentExceptions,
+                                  final StringBuilder unboundExceptions)
+  {
+    if (filter.startsWith(EXCEPTION_MARK))
+    {
+      final Matcher optionsMatcher = OPTIONS_REGEX.matcher(filter);
+      final int optionsStart = optionsMatcher.find() ? optionsMatcher.start() : -1;
+      if (optionsStart >= 0 && hasValueOption(filter, optionsStart + 1, SITEKEY_OPTION))
+      {
+        return;
+      }
+      // `$genericblock` disables the generic `||host^` filters on the page, so it's a document one here
+      final boolean documentException = optionsStart >= 0
+        && (hasOption(filter, optionsStart + 1, DOCUMENT_OPTION)
+        || hasOption(filter, optionsStart + 1, GENERICBLOCK_OPTION));
+      if (filter.startsWith(EXCEPTION_PREFIX))
+      {
+        final int hostEnd = findHostEnd(filter, EXCEPTION_PREFIX.length());
+        if (hostEnd > EXCEPTION_PREFIX.length())
+        {
+          indexException(filter.substring(EXCEPTION_PREFIX.length(), hostEnd),
+            exceptions, documentExceptions, documentException);
+          return;
+        }
+      }
+      // not host-anchored: allowlist the whole documents of the domains it's applied on
+      if (optionsStart >= 0 && indexDomains(filter, optionsStart + 1, documentExceptions))
+      {
+        return;
+      }
+      if (indexAnchoredHost(filter, exceptions, documentExceptions, documentException))
+      {
+        return;
+      }
+      unboundExceptions
+        .append(documentException ? DOCUMENT_EXCEPTION_TYPE : REQUEST_EXCEPTION_TYPE)
+        .append(filter, EXCEPTION_MARK.length(), optionsStart >= 0 ? optionsStart : filter.length())
+        .append(LINE_SEPARATOR);
+    }
+    else if (filter.startsWith(BLOCKING_PREFIX))
+    {
+      final int hostEnd = findHostEnd(filter, BLOCKING_PREFIX.length());
+      // `||host^` only, the filters with the path or the options are not indexed
+      if (hostEnd > BLOCKING_PREFIX.length() && hostEnd == filter.length() - 1
+        && filter.charAt(hostEnd) == '^')
+      {
+        blockingHosts.add(filter.substring(BLOCKING_PREFIX.length(), hostEnd));
+      }
+    }
+  }
+
+  // the exceptions are applied regardless of their options not to block allowlisted hosts
+  private static void indexException(final String host,
+                                     final Set<Long> exceptions,
+                                     final Set<Long> documentExceptions,
+                                     final boolean documentException)
+  {
+    final long hash = hash(host, 0);
+    exceptions.add(hash);
+    if (documentException)
+    {
+      documentExceptions.add(hash);
+    }
+  }
+
+  private static boolean hasValueOption(final String filter, final int optionsStart,
+                                        final String option)
+  {
+    for (final String each : filter.substring(optionsStart).split(","))
+    {
+      if (each.trim().regionMatches(true, 0, option, 0, option.length()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // `domain=` option domains, the excluded (`~domain`) ones are not indexed
+  private static boolean indexDomains(final String filter, final int optionsStart,
+                                      final Set<Long> documentExceptions)
+  {
+    boolean indexed = false;
+    for (final String option : filter.substring(optionsStart).split(","))
+    {
+      final String trimmedOption = option.trim();
+      if (!trimmedOption.regionMatches(true, 0, DOMAIN_OPTION, 0, DOMAIN_OPTION.length()))
+      {
+        continue;
+      }
+      for (final String domain : trimmedOption.substring(DOMAIN_OPTION.length()).split("\\|"))
+      {
+        if (!domain.isEmpty() && !domain.startsWith("~"))
+        {
+          documentExceptions.add(hash(domain, 0));
+          indexed = true;
+        }
+      }
+    }
+    return indexed;
+  }
+
+  // `@@|scheme://host...` filters, returns `false` if the filter is not bound to a host
+  private static boolean indexAnchoredHost(final String filter,
+                                           final Set<Long> exceptions,
+                                           final Set<Long> documentExceptions,
+                                           final boolean documentException)
+  {
+    if (!filter.startsWith(ANCHORED_EXCEPTION_PREFIX))
+    {
+      return false;
+    }
+    final int schemeEnd = filter.indexOf(SCHEME_SEPARATOR);
+    if (schemeEnd < 0)
+    {
+      return false;
+    }
+    final String scheme = filter.substring(ANCHORED_EXCEPTION_PREFIX.length(), schemeEnd);
+    if (!WEB_SCHEMES.contains(scheme.toLowerCase(Locale.ENGLISH)))
+    {
+      // can't allowlist the web requests, eg. `@@|blob:resource://`
+      return true;
+    }
+    final int hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+    final int hostEnd = findHostEnd(filter, hostStart);
+    if (hostEnd <= hostStart)
+    {
+      return false;
+    }
+    indexException(filter.substring(hostStart, hostEnd),
+      exceptions, documentExceptions, documentException);
+    return true;
+  }
+
+  // same as core `Filter.toRegExp()`, the invalid regular expressions match any URL
+  private static String toRegex(final String text)
+  {
+    if (text.length() >= 2 && text.startsWith("/") && text.endsWith("/"))
+    {
+      final String regex = text.substring(1, text.length() - 1);
+      try
+      {
+        Pattern.compile(regex);
+        return regex;
+      }
+      catch (final PatternSyntaxException e)
+      {
+        return "";
+      }
+    }
+    final StringBuilder regex = new StringBuilder();
+    int start = 0;
+    if (text.startsWith(BLOCKING_PREFIX))
+    {
+      regex.append(HOST_ANCHOR_REGEX);
+      start = BLOCKING_PREFIX.length();
+    }
+    else if (text.startsWith("|"))
+    {
+      regex.append('^');
+      start = 1;
+    }
+    for (int i = start; i < text.length(); i++)
+    {
+      final char c = text.charAt(i);
+      if (c == '*')
+      {
+        regex.append(".*");
+      }
+      else if (c == '^')
+      {
+        regex.append(SEPARATOR_REGEX);
+      }
+      else if (c == '|' && i == text.length() - 1)
+      {
+        regex.append('$');
+      }
+      else if (Character.isLetterOrDigit(c))
+      {
+        regex.append(c);
+      }
+      else
+      {
+        regex.append('\\').append(c);
+      }
+    }
+    return regex.toString();
+  }
+
+  private static int findHostEnd(final String filter, final int start)
+  {
+    int i = start;
+    while (i < filter.length())
+    {
+      final char c = filter.charAt(i);
+      if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')
+        && c != '.' && c != '-' && c != '_')
+      {
+        break;
+      }
+      i++;
+    }
+    // the wildcards and the partial hosts (eg. `||ads.example.com.`) are not indexed
+    if (i < filter.length() && filter.charAt(i) != '^' && filter.charAt(i) != '$'
+      && filter.charAt(i) != '/')
+    {
+      return -1;
+    }
+    return i;
+  }
+
+  private static boolean hasOption(final String filter, final int start, final String option)
+  {
+    for (final String each : filter.substring(start).split(","))
+    {
+      if (each.trim().equalsIgnoreCase(option))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+}
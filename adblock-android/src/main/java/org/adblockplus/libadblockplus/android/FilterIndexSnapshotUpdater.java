@@ -0,0 +1,212 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import android.os.FileObserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import timber.log.Timber;
+
+/**
+ * Keeps {@link FilterIndexSnapshot} in sync with `patterns.ini`.
+ * <p>
+ * The engine saves `patterns.ini` after the subscriptions are synchronized or the filters are
+ * changed, the snapshot is rebuilt in the background every time the file is written.
+ * The latest valid snapshot is available with {@link #getSnapshot()}.
+ * <p>
+ * The engine enabled state is persisted too, so the snapshot is not used on the next start
+ * if ad filtering was disabled.
+ */
+public class FilterIndexSnapshotUpdater
+{
+  private static final String DISABLED_FILE_NAME = FilterIndexSnapshot.FILE_NAME + ".disabled";
+
+  private final File patternsFile;
+  private final File snapshotFile;
+  private final File disabledFile;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+  {
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+      final Thread thread = new Thread(runnable, "FilterIndexSnapshotUpdater");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  });
+  private final FileObserver fileObserver;
+  private volatile FilterIndexSnapshot snapshot;
+  private volatile boolean engineEnabled = true;
+
+  /**
+   * Constructor
+   * @param baseDirectory directory `patterns.ini` is stored in
+   */
+  public FilterIndexSnapshotUpdater(final File baseDirectory)
+  {
+    this.patternsFile = new File(baseDirectory, FilterIndexSnapshot.PATTERNS_FILE_NAME);
+    this.snapshotFile = new File(baseDirectory, FilterIndexSnapshot.FILE_NAME);
+    this.disabledFile = new File(baseDirectory, DISABLED_FILE_NAME);
+    // the file can be written in place or moved from a temporary file
+    this.fileObserver = new FileObserver(baseDirectory.getAbsolutePath(),
+      FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO)
+    {
+      @Override
+      public void onEvent(final int event, final String path)
+      {
+        if (FilterIndexSnapshot.PATTERNS_FILE_NAME.equals(path))
+        {
+          scheduleUpdate();
+        }
+      }
+    };
+  }
+
+  /**
+   * Load the snapshot memory-mapping it and start watching `patterns.ini` changes.
+   * If the snapshot is missing or outdated it's rebuilt in the background.
+   * @return loaded snapshot or `null` if it can't be used (see {@link #getSnapshot()})
+   */
+  public FilterIndexSnapshot start()
+  {
+    engineEnabled = !disabledFile.exists();
+    snapshot = FilterIndexSnapshot.load(snapshotFile, patternsFile);
+    fileObserver.startWatching();
+    if (snapshot == null)
+    {
+      // fall back to `patterns.ini` text parsing
+      scheduleUpdate();
+    }
+    else
+    {
+      Timber.d("Loaded filter index snapshot with %d blocking hosts",
+        snapshot.getBlockingCount());
+    }
+    return getSnapshot();
+  }
+
+  public void stop()
+  {
+    fileObserver.stopWatching();
+    executor.shutdown();
+  }
+
+  /**
+   * @return the latest snapshot or `null` if it's not available yet or ad filtering is disabled
+   */
+  public FilterIndexSnapshot getSnapshot()
+  {
+    return engineEnabled ? snapshot : null;
+  }
+
+  /**
+   * Set the engine enabled state and persist it for the next start
+   * @param enabled `true` if ad filtering is enabled
+   */
+  public void setEngineEnabled(final boolean enabled)
+  {
+    if (engineEnabled == enabled)
+    {
+      return;
+    }
+    engineEnabled = enabled;
+    scheduleMarkerUpdate(disabledFile, !enabled);
+  }
+
+  private void scheduleMarkerUpdate(final File markerFile, final boolean exists)
+  {
+    if (executor.isShutdown())
+    {
+      return;
+    }
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          // the latest state wins as the tasks are executed in the order of scheduling
+          if (!exists)
+          {
+            if (markerFile.exists() && !markerFile.delete())
+            {
+              Timber.e("Failed to delete %s", markerFile);
+            }
+          }
+          else if (!markerFile.exists() && !markerFile.createNewFile())
+          {
+            Timber.e("Failed to create %s", markerFile);
+          }
+        }
+        catch (final IOException e)
+        {
+          Timber.e(e, "Failed to persist the state to %s", markerFile);
+        }
+      }
+    });
+  }
+
+  private void scheduleUpdate()
+  {
+    if (executor.isShutdown())
+    {
+      return;
+    }
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        update();
+      }
+    });
+  }
+
+  private void update()
+  {
+    if (!patternsFile.exists())
+    {
+      return;
+    }
+    final FilterIndexSnapshot current = snapshot;
+    if (current != null && current.isBuiltFrom(patternsFile))
+    {
+      return;
+    }
+    try
+    {
+      final long startNanos = System.nanoTime();
+      final FilterIndexSnapshot updated = FilterIndexSnapshot.build(patternsFile);
+      updated.write(snapshotFile);
+      snapshot = updated;
+      Timber.d("Built filter index snapshot with %d blocking hosts in %d ms",
+        updated.getBlockingCount(), (System.nanoTime() - startNanos) / 1000000);
+    }
+    catch (final IOException e)
+    {
+      Timber.e(e, "Failed to build filter index snapshot");
+    }
+  }
+}
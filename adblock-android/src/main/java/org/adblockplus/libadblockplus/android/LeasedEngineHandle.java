@@ -0,0 +1,134 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.AdblockEngine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted source of the leases of AdblockEngine instance
+ * (see {@link AdblockEngineProvider#acquireEngine()}).
+ * <p>
+ * The owner holds one reference while the engine is available and drops it with {@link #drain()}
+ * before disposing the engine, so the counter drops to zero (and no new leases can be acquired)
+ * only when the engine is about to be disposed. Every acquired lease holds its own reference
+ * which is released at most once, so releasing a lease twice does not affect the other leases.
+ * <p>
+ * Thread-safe.
+ */
+public final class LeasedEngineHandle
+{
+  private final AdblockEngine engine;
+  private final AtomicInteger references = new AtomicInteger(1);
+  private final CountDownLatch drainedLatch = new CountDownLatch(1);
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
+  private final class Lease implements AdblockEngineProvider.EngineLease
+  {
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    @Override
+    public AdblockEngine getEngine()
+    {
+      return engine;
+    }
+
+    @Override
+    public void release()
+    {
+      if (released.compareAndSet(false, true))
+      {
+        releaseReference();
+      }
+    }
+  }
+
+  public LeasedEngineHandle(final AdblockEngine engine)
+  {
+    this.engine = engine;
+  }
+
+  /**
+   * Acquire the lease of the engine, never blocks
+   * @return engine lease or `null` if the engine is being disposed
+   */
+  public AdblockEngineProvider.EngineLease tryAcquire()
+  {
+    while (true)
+    {
+      final int count = references.get();
+      if (count == 0)
+      {
+        return null;
+      }
+      if (references.compareAndSet(count, count + 1))
+      {
+        return new Lease();
+      }
+    }
+  }
+
+  private void releaseReference()
+  {
+    if (references.decrementAndGet() == 0)
+    {
+      drainedLatch.countDown();
+    }
+  }
+
+  /**
+   * Drop the owner's reference and wait for all the leases to be released.
+   * Can be called more than once, only the first call drops the reference.
+   */
+  public void drain()
+  {
+    if (draining.compareAndSet(false, true))
+    {
+      releaseReference();
+    }
+    boolean interrupted = false;
+    while (true)
+    {
+      try
+      {
+        drainedLatch.await();
+        break;
+      }
+      catch (final InterruptedException e)
+      {
+        // the engine can't be disposed while it's in use, keep waiting
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return `true` if all the leases are released after {@link #drain()} is called
+   */
+  public boolean isDrained()
+  {
+    return drainedLatch.getCount() == 0;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Java-side mirror of the listed items (filter texts or subscription URLs) to check
+ * if an item is listed without marshalling all the listed items from the engine.
+ * <p>
+ * The mirror is valid for a single filter lists version only (see
+ * {@link org.adblockplus.libadblockplus.FilterEngine#getFilterListVersion()}).
+ * A single lookup for a newer version is forwarded to the engine, the mirror is reloaded
+ * only when the items are looked up repeatedly, eg. for every row of a list.
+ * The changes made with `AdblockEngineSettings.EditOperation` are applied to the mirror
+ * directly, so it stays valid.
+ * <p>
+ * Thread-safe.
+ */
+public final class ListedItemsMirror
+{
+  /**
+   * Source of the listed items, usually the engine
+   */
+  public interface Source
+  {
+    /**
+     * @return all the listed items
+     */
+    Collection<String> getListedItems();
+
+    /**
+     * @param item item
+     * @return `true` if the item is listed
+     */
+    boolean isListed(String item);
+  }
+
+  private final Source source;
+  // guarded by this
+  private Set<String> items;
+  private long itemsVersion;
+  private long lookupVersion = -1;
+
+  public ListedItemsMirror(final Source source)
+  {
+    this.source = source;
+  }
+
+  /**
+   * Check if the item is listed
+   * @param item item
+   * @param version current filter lists version
+   * @return `true` if the item is listed
+   */
+  public synchronized boolean isListed(final String item, final long version)
+  {
+    if (items != null && itemsVersion == version)
+    {
+      return items.contains(item);
+    }
+    if (lookupVersion != version)
+    {
+      // a single lookup is cheaper than loading all the items
+      lookupVersion = version;
+      return source.isListed(item);
+    }
+    items = new HashSet<>(source.getListedItems());
+    itemsVersion = version;
+    return items.contains(item);
+  }
+
+  /**
+   * Apply the changes made between the versions, so the mirror is not reloaded.
+   * Ignored if the mirror is not valid for `fromVersion`.
+   * @param removedItems removed items
+   * @param addedItems added items (applied after the removed ones)
+   * @param fromVersion filter lists version before the changes
+   * @param toVersion filter lists version after the changes
+   */
+  public synchronized void update(final Collection<String> removedItems,
+                                  final Collection<String> addedItems,
+                                  final long fromVersion,
+                                  final long toVersion)
+  {
+    if (items == null || itemsVersion != fromVersion)
+    {
+      return;
+    }
+    items.removeAll(removedItems);
+    items.addAll(addedItems);
+    itemsVersion = toVersion;
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.net.MalformedURLException;
+
+/**
+ * URL parsed once into the component offsets.
+ * <p>
+ * The components are extracted (and cached) only when requested. The results are the same as
+ * of the corresponding {@link Utils} methods, which are used as a fallback for the URLs
+ * the fast path does not handle (eg. having user info, IPv6 or percent-encoded hosts).
+ * <p>
+ * Thread-safe: the extracted components are published with the volatile fields,
+ * so the same component can be extracted concurrently more than once with the equal results.
+ */
+public final class ParsedRequestUrl
+{
+  private static final String SCHEME_SEPARATOR = "://";
+  private static final String HTTP = "http";
+  private static final String HTTPS = "https";
+  private static final int MAX_PORT_LENGTH = 5;
+
+  // URI characters allowed besides alphanumerics ("unreserved" and "reserved" of RFC 2396)
+  private static final String URI_PUNCTUATION = "-_.!~*'();/?:@&=+$,";
+
+  // `null` domain marker (compared by reference), as `null` field means "not extracted yet"
+  private static final String NO_DOMAIN = new String();
+
+  private final String url;
+  private final int schemeEnd;      // index of ':' or -1
+  private final int authorityStart; // index after "//" or -1
+  private final int hostStart;
+  private final int hostEnd;
+  private final int portStart;      // index after ':' or -1
+  private final int pathStart;
+  private final int queryStart;     // index of '?' or -1
+  private final int fragmentStart;  // index of '#' or -1
+  private final boolean hasUserInfo;
+  private final boolean isHostname; // the host is a valid hostname (not IP address)
+  private final int firstNonUriCharIndex;
+
+  // lazily extracted, the races are benign as the values are equal
+  private volatile String urlWithoutFragment;
+  private volatile String domain;
+  private volatile String origin;
+
+  private ParsedRequestUrl(final String url)
+  {
+    this.url = url;
+    final int length = url.length();
+
+    final int fragment = url.indexOf('#');
+    final int end = fragment >= 0 ? fragment : length;
+
+    // scheme = alpha *( alpha | digit | "+" | "-" | "." )
+    int colon = -1;
+    for (int i = 0; i < end; i++)
+    {
+      final char c = url.charAt(i);
+      if (c == ':')
+      {
+        colon = i;
+        break;
+      }
+      if (!(isAlpha(c) || (i > 0 && (isDigit(c) || c == '+' || c == '-' || c == '.'))))
+      {
+        break;
+      }
+    }
+    schemeEnd = colon > 0 ? colon : -1;
+
+    int authority = -1;
+    int authorityEnd = -1;
+    if (schemeEnd > 0 && url.startsWith(SCHEME_SEPARATOR, schemeEnd))
+    {
+      authority = schemeEnd + SCHEME_SEPARATOR.length();
+      authorityEnd = authority;
+      while (authorityEnd < end && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?')
+      {
+        authorityEnd++;
+      }
+    }
+    authorityStart = authority;
+
+    // host, port and user info
+    int host = authority;
+    int hostLimit = authorityEnd;
+    int port = -1;
+    boolean userInfo = false;
+    if (authority >= 0)
+    {
+      for (int i = authority; i < authorityEnd; i++)
+      {
+        final char c = url.charAt(i);
+        if (c == '@')
+        {
+          userInfo = true;
+          host = i + 1;
+          port = -1;
+        }
+        else if (c == ':' && port < 0)
+        {
+          port = i + 1;
+        }
+      }
+      if (port >= 0)
+      {
+        hostLimit = port - 1;
+      }
+    }
+    hostStart = host;
+    hostEnd = hostLimit;
+    portStart = port;
+    hasUserInfo = userInfo;
+    isHostname = authority >= 0 && !userInfo && isHostname(url, host, hostLimit);
+
+    pathStart = authority >= 0 ? authorityEnd : (schemeEnd >= 0 ? schemeEnd + 1 : 0);
+    int query = -1;
+    int nonUriChar = -1;
+    for (int i = 0; i < end; i++)
+    {
+      final char c = url.charAt(i);
+      if (c == '?' && query < 0 && i >= pathStart)
+      {
+        query = i;
+      }
+      if (nonUriChar < 0 && !isUriChar(c))
+      {
+        nonUriChar = i;
+      }
+    }
+    queryStart = query;
+    fragmentStart = fragment;
+    firstNonUriCharIndex = nonUriChar;
+  }
+
+  /**
+   * Parse URL
+   * @param url URL
+   * @return parsed URL
+   */
+  public static ParsedRequestUrl parse(final String url)
+  {
+    if (url == null)
+    {
+      throw new IllegalArgumentException("URL can't be null");
+    }
+    return new ParsedRequestUrl(url);
+  }
+
+  private static boolean isAlpha(final char c)
+  {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isDigit(final char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isUriChar(final char c)
+  {
+    return isAlpha(c) || isDigit(c) || URI_PUNCTUATION.indexOf(c) >= 0;
+  }
+
+  // hostname = *( domainlabel "." ) toplabel, toplabel starts with alpha
+  private static boolean isHostname(final String url, final int start, final int end)
+  {
+    if (start >= end)
+    {
+      return false;
+    }
+    int labelStart = start;
+    for (int i = start; i <= end; i++)
+    {
+      final char c = i < end ? url.charAt(i) : '.';
+      if (c == '.')
+      {
+        if (i == labelStart || url.charAt(i - 1) == '-')
+        {
+          return false;
+        }
+        if (i == end && !isAlpha(url.charAt(labelStart)))
+        {
+          return false;
+        }
+        labelStart = i + 1;
+      }
+      else if (!(isAlpha(c) || isDigit(c) || (c == '-' && i > labelStart)))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean hasValidPort()
+  {
+    if (portStart < 0)
+    {
+      return true;
+    }
+    final int portLength = pathStart - portStart;
+    if (portLength == 0 || portLength > MAX_PORT_LENGTH
+      || (portLength > 1 && url.charAt(portStart) == '0'))
+    {
+      return false;
+    }
+    for (int i = portStart; i < pathStart; i++)
+    {
+      if (!isDigit(url.charAt(i)))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // `java.net.URL` is known to give the same results as the offsets
+  private boolean isSimpleHttpUrl()
+  {
+    return authorityStart >= 0
+      && !hasUserInfo
+      && hostStart < hostEnd
+      && url.charAt(hostStart) != '['
+      && url.charAt(0) > ' '
+      && url.charAt(url.length() - 1) > ' '
+      && hasValidPort()
+      && (url.regionMatches(true, 0, HTTP, 0, schemeEnd) && schemeEnd == HTTP.length()
+        || url.regionMatches(true, 0, HTTPS, 0, schemeEnd) && schemeEnd == HTTPS.length());
+  }
+
+  private int getPathEnd()
+  {
+    if (queryStart >= 0)
+    {
+      return queryStart;
+    }
+    return fragmentStart >= 0 ? fragmentStart : url.length();
+  }
+
+  /**
+   * @return original URL
+   */
+  public String getUrl()
+  {
+    return url;
+  }
+
+  /**
+   * @return scheme or `null` if not present
+   */
+  public String getScheme()
+  {
+    return schemeEnd >= 0 ? url.substring(0, schemeEnd) : null;
+  }
+
+  /**
+   * @return host as is (not validated) or `null` if there is no authority
+   */
+  public String getHost()
+  {
+    return authorityStart >= 0 ? url.substring(hostStart, hostEnd) : null;
+  }
+
+  /**
+   * @return path, empty if not present
+   */
+  public String getPath()
+  {
+    return url.substring(pathStart, getPathEnd());
+  }
+
+  /**
+   * @return query (without `?`) or `null` if not present
+   */
+  public String getQuery()
+  {
+    if (queryStart < 0)
+    {
+      return null;
+    }
+    return url.substring(queryStart + 1, fragmentStart >= 0 ? fragmentStart : url.length());
+  }
+
+  /**
+   * @return fragment (without `#`) or `null` if not present
+   */
+  public String getFragment()
+  {
+    return fragmentStart >= 0 ? url.substring(fragmentStart + 1) : null;
+  }
+
+  /**
+   * See {@link Utils#getUrlWithoutFragment(String)}
+   */
+  public String getUrlWithoutFragment()
+  {
+    if (fragmentStart < 0)
+    {
+      return url;
+    }
+    String result = urlWithoutFragment;
+    if (result == null)
+    {
+      result = url.substring(0, fragmentStart);
+      urlWithoutFragment = result;
+    }
+    return result;
+  }
+
+  /**
+   * Domain of the URL without fragment,
+   * see {@link Utils#getDomain(String)}
+   * @return domain or `null` if the URL is not valid
+   */
+  public String getDomain()
+  {
+    final String extracted = domain;
+    if (extracted != null)
+    {
+      return extracted == NO_DOMAIN ? null : extracted;
+    }
+    final String result;
+    final int domainPartEnd = getPathEnd();
+    if (authorityStart < 0 && schemeEnd > 0)
+    {
+      // opaque or hierarchical URI without authority has no host
+      result = null;
+    }
+    else if (isHostname && hasValidPort()
+      && (firstNonUriCharIndex < 0 || firstNonUriCharIndex >= domainPartEnd))
+    {
+      result = url.substring(hostStart, hostEnd);
+    }
+    else
+    {
+      result = Utils.getDomain(getUrlWithoutFragment());
+    }
+    domain = result != null ? result : NO_DOMAIN;
+    return result;
+  }
+
+  /**
+   * See {@link Utils#getOrigin(String)}
+   */
+  public String getOrigin() throws MalformedURLException
+  {
+    String result = origin;
+    if (result != null)
+    {
+      return result;
+    }
+    if (isSimpleHttpUrl())
+    {
+      final int pathEnd = getPathEnd();
+      final boolean hasQuery = queryStart >= 0
+        && queryStart + 1 < (fragmentStart >= 0 ? fragmentStart : url.length());
+      final StringBuilder sb = new StringBuilder(pathStart + 1);
+      sb.append(url.substring(0, schemeEnd).toLowerCase());
+      sb.append(url, schemeEnd, pathStart);
+      if (pathStart < pathEnd || hasQuery)
+      {
+        sb.append('/');
+      }
+      result = sb.toString();
+    }
+    else
+    {
+      result = Utils.getOrigin(url);
+    }
+    origin = result;
+    return result;
+  }
+
+  /**
+   * See {@link Utils#extractPathWithQuery(String)}
+   */
+  public String getPathWithQuery() throws MalformedURLException
+  {
+    if (isSimpleHttpUrl())
+    {
+      return url.substring(pathStart, fragmentStart >= 0 ? fragmentStart : url.length());
+    }
+    return Utils.extractPathWithQuery(url);
+  }
+
+  @Override
+  public String toString()
+  {
+    return url;
+  }
+}
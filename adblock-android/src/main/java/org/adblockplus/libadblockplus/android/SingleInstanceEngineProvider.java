@@ -21,12 +21,15 @@ import org.adblockplus.AdblockEngine;
 import org.adblockplus.libadblockplus.Platform;
 import org.adblockplus.libadblockplus.android.AdblockEngine.Factory;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -42,9 +45,13 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
     = new AtomicReference<>();
   private List<EngineCreatedListener> engineCreatedListeners = new CopyOnWriteArrayList<>();
   private List<EngineDisposedListener> engineDisposedListeners = new CopyOnWriteArrayList<>();
+  private final AtomicReference<LeasedEngineHandle> engineHandleReference = new AtomicReference<>();
   private final ReentrantReadWriteLock engineLock = new ReentrantReadWriteLock();
   private final ReentrantReadWriteLock referenceCounterLock = new ReentrantReadWriteLock();
   private final ExecutorService executorService;
+  private File filterIndexSnapshotDirectory;
+  private final AtomicReference<FilterIndexSnapshotUpdater> filterIndexSnapshotUpdaterReference =
+    new AtomicReference<>();
 
   /*
     Simple ARC management for AdblockEngine
@@ -53,6 +60,14 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
 
   private AtomicInteger referenceCounter = new AtomicInteger(0);
 
+  /*
+    Latch of the last scheduled create/dispose task. The tasks are executed one by one in
+    the order of scheduling so once the last one is finished all the previous ones are finished too
+    and `waitForReady()` does not need to block.
+   */
+  private volatile CountDownLatch readyLatch = new CountDownLatch(0);
+  private final AtomicLong readyWaitCount = new AtomicLong(0);
+
   // shutdowns `ExecutorService` instance on system shutdown
   private static class ExecutorServiceShutdownHook extends Thread
   {
@@ -89,6 +104,18 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
     return executorService;
   }
 
+  /**
+   * Load the snapshot of the host-anchored filters before creating the engine, so that
+   * {@link #getFilterIndexSnapshot()} answers while the engine is being created
+   * @param baseDirectory directory `patterns.ini` is stored in (the engine base path)
+   * @return this provider to allow chaining
+   */
+  public SingleInstanceEngineProvider useFilterIndexSnapshot(final File baseDirectory)
+  {
+    this.filterIndexSnapshotDirectory = baseDirectory;
+    return this;
+  }
+
   @Override
   public SingleInstanceEngineProvider addEngineCreatedListener(final EngineCreatedListener listener)
   {
@@ -117,10 +144,25 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
 
   private void createAdblock()
   {
+    FilterIndexSnapshotUpdater updater = null;
+    if (filterIndexSnapshotDirectory != null)
+    {
+      updater = new FilterIndexSnapshotUpdater(filterIndexSnapshotDirectory);
+      updater.start();
+      filterIndexSnapshotUpdaterReference.set(updater);
+    }
+
     Timber.d("Creating adblock engine ...");
     final org.adblockplus.libadblockplus.android.AdblockEngine engine = engineFactory.build();
     Timber.d("Engine created");
 
+    if (updater != null)
+    {
+      // the engine keeps it updated (eg. with the enabled state) and stops it when disposed
+      updater.setEngineEnabled(engine.enabled.get());
+      engine.filterIndexSnapshotUpdater = updater;
+    }
+
     engineReference.set(engine);
 
     // sometimes we need to init AdblockEngine instance, eg. set user settings
@@ -128,6 +170,10 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
     {
       listener.onAdblockEngineCreated(engine);
     }
+
+    // the engine can be leased only after it's fully initialized
+    engineHandleReference.set(new LeasedEngineHandle(engine));
+    filterIndexSnapshotUpdaterReference.set(null);
   }
 
   @Override
@@ -142,7 +188,7 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
       {
         return false;
       }
-      future = scheduleTask(retainTask);
+      future = scheduleEngineTask(retainTask);
     }
     finally
     {
@@ -170,36 +216,72 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
       }
       finally
       {
+        // the engine failed to be created
+        final FilterIndexSnapshotUpdater updater = filterIndexSnapshotUpdaterReference.getAndSet(null);
+        if (updater != null)
+        {
+          updater.stop();
+        }
         engineLock.writeLock().unlock();
       }
     }
   };
 
-  // the task does nothing and can be used as a way to wait
-  // for all the current tasks to be finished
-  private final Runnable waitForTheTasksTask = new Runnable()
+  @Override
+  public void waitForReady()
   {
-    @Override
-    public void run()
+    final CountDownLatch latch = readyLatch;
+    if (latch.getCount() == 0)
     {
-      // nothing
+      // fast path: no create/dispose task is pending
+      return;
     }
-  };
 
-  @Override
-  public void waitForReady()
-  {
+    readyWaitCount.incrementAndGet();
     Timber.d("Waiting for ready in %s", Thread.currentThread());
-    waitForTask(scheduleTask(waitForTheTasksTask));
+    try
+    {
+      latch.await();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      Timber.e(e);
+      throw new RuntimeException(e);
+    }
     Timber.d("Ready");
   }
 
+  /**
+   * Get how many times `waitForReady()` callers actually had to wait for a pending
+   * create/dispose task
+   * @return waits count
+   */
+  public long getReadyWaitCount()
+  {
+    return readyWaitCount.get();
+  }
+
   @Override
   public AdblockEngine getEngine()
   {
     return engineReference.get();
   }
 
+  @Override
+  public EngineLease acquireEngine()
+  {
+    final LeasedEngineHandle handle = engineHandleReference.get();
+    return (handle != null ? handle.tryAcquire() : null);
+  }
+
+  @Override
+  public FilterIndexSnapshot getFilterIndexSnapshot()
+  {
+    final FilterIndexSnapshotUpdater updater = filterIndexSnapshotUpdaterReference.get();
+    return updater != null ? updater.getSnapshot() : null;
+  }
+
   @Override
   public boolean release()
   {
@@ -212,7 +294,7 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
       {
         return false;
       }
-      future = scheduleTask(releaseTask);
+      future = scheduleEngineTask(releaseTask);
     }
     finally
     {
@@ -223,9 +305,26 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
     return true;
   }
 
-  private Future scheduleTask(final Runnable task)
+  // must be called under `referenceCounterLock` write lock to keep `readyLatch` in scheduling order
+  private Future scheduleEngineTask(final Runnable task)
   {
-    return executorService.submit(task);
+    final CountDownLatch latch = new CountDownLatch(1);
+    readyLatch = latch;
+    return executorService.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          task.run();
+        }
+        finally
+        {
+          latch.countDown();
+        }
+      }
+    });
   }
 
   private void waitForTask(final Future future) throws RuntimeException
@@ -246,6 +345,13 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
     @Override
     public void run()
     {
+      final LeasedEngineHandle handle = engineHandleReference.getAndSet(null);
+      if (handle != null)
+      {
+        Timber.d("Waiting for the engine leases to be released");
+        handle.drain();
+      }
+
       Timber.w("Waiting for lock in " + Thread.currentThread());
       engineLock.writeLock().lock();
 
@@ -302,7 +408,6 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   @Override
   public ReentrantReadWriteLock.ReadLock getReadEngineLock()
   {
-    Timber.d("getReadEngineLock() called from " + Thread.currentThread());
     return engineLock.readLock();
   }
 }
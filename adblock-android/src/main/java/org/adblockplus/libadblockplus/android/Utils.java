@@ -158,6 +158,59 @@ public final class Utils
     return getStringBeforeChar(urlWithParams, '?');
   }
 
+  /**
+   * Remove the query parameters with the given names from the URL.
+   * The other parameters and the fragment are kept as is
+   * @param url URL
+   * @param paramNames names of the parameters to remove
+   * @return URL without the parameters, without `?` if no parameters are left
+   */
+  public static String getUrlWithoutParams(final String url, final Set<String> paramNames)
+  {
+    if (url == null)
+    {
+      throw new IllegalArgumentException("URL can't be null");
+    }
+
+    final int queryStart = url.indexOf('?');
+    if (queryStart < 0)
+    {
+      return url;
+    }
+    int queryEnd = url.indexOf('#', queryStart);
+    if (queryEnd < 0)
+    {
+      queryEnd = url.length();
+    }
+
+    final StringBuilder sb = new StringBuilder(url.length());
+    sb.append(url, 0, queryStart);
+    int paramStart = queryStart + 1;
+    boolean first = true;
+    while (paramStart <= queryEnd)
+    {
+      int paramEnd = url.indexOf('&', paramStart);
+      if (paramEnd < 0 || paramEnd > queryEnd)
+      {
+        paramEnd = queryEnd;
+      }
+      int nameEnd = url.indexOf('=', paramStart);
+      if (nameEnd < 0 || nameEnd > paramEnd)
+      {
+        nameEnd = paramEnd;
+      }
+      if (paramEnd > paramStart && !paramNames.contains(url.substring(paramStart, nameEnd)))
+      {
+        sb.append(first ? '?' : '&');
+        sb.append(url, paramStart, paramEnd);
+        first = false;
+      }
+      paramStart = paramEnd + 1;
+    }
+    sb.append(url, queryEnd, url.length());
+    return sb.toString();
+  }
+
   public static String getUrlWithoutFragment(final String url)
   {
     return getStringBeforeChar(url, '#');
@@ -271,18 +324,14 @@ public final class Utils
   private static final int TO_BYTE_ARRAY_DEQUE_SIZE = 20;
 
   /**
-   * Returns a byte array containing the bytes from the buffers already in {@code bufs} (which have
-   * a total combined length of {@code totalLen} bytes) followed by all bytes remaining in the given
-   * input stream.
+   * Reads all bytes from the input stream into {@code bufs} and returns their total length.
    *
    * Method is taken from
    * https://github.com/google/guava/blob/master/guava/src/com/google/common/io/ByteStreams.java.
    */
-  private static byte[] toByteArrayInternal(final InputStream in,
-                                            final Deque<byte[]> bufs,
-                                            int totalLen)
-      throws IOException
+  private static int readBuffers(final InputStream in, final Deque<byte[]> bufs) throws IOException
   {
+    int totalLen = 0;
     // Starting with an 8k buffer, double the size of each successive buffer. Buffers are retained
     // in a deque so that there's no copying between buffers while reading and so all of the bytes
     // in each new allocated buffer are available for reading from the stream.
@@ -297,7 +346,7 @@ public final class Utils
         final int r = in.read(buf, off, buf.length - off);
         if (r == -1)
         {
-          return combineBuffers(bufs, totalLen);
+          return totalLen;
         }
         off += r;
         totalLen += r;
@@ -308,7 +357,7 @@ public final class Utils
     if (in.read() == -1)
     {
       // oh, there's the end of the stream
-      return combineBuffers(bufs, MAX_ARRAY_LEN);
+      return MAX_ARRAY_LEN;
     }
     else
     {
@@ -325,25 +374,27 @@ public final class Utils
    */
   public static byte[] toByteArray(final InputStream in) throws IOException
   {
-    return toByteArrayInternal(in, new ArrayDeque<byte[]>(TO_BYTE_ARRAY_DEQUE_SIZE), 0);
-  }
-
-  /**  This is an auxiliary method for toByteArrayInternal and one should not make it public. */
-  private static byte[] combineBuffers(final Deque<byte[]> bufs, final int totalLen)
-  {
+    final Deque<byte[]> bufs = new ArrayDeque<>(TO_BYTE_ARRAY_DEQUE_SIZE);
+    final int totalLen = readBuffers(in, bufs);
     final byte[] result = new byte[totalLen];
-    int remaining = totalLen;
-    while (remaining > 0)
+    int offset = 0;
+    for (final byte[] buf : bufs)
     {
-      final byte[] buf = bufs.removeFirst();
-      final int bytesToCopy = Math.min(remaining, buf.length);
-      final int resultOffset = totalLen - remaining;
-      System.arraycopy(buf, 0, result, resultOffset, bytesToCopy);
-      remaining -= bytesToCopy;
+      final int bytesToCopy = Math.min(totalLen - offset, buf.length);
+      System.arraycopy(buf, 0, result, offset, bytesToCopy);
+      offset += bytesToCopy;
     }
     return result;
   }
 
+  // WARNING: in order to be passed back to JNI one have to use `allocateDirect`
+  private static ByteBuffer allocateJniBuffer(final int capacity)
+  {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+    buffer.order(ByteOrder.nativeOrder());
+    return buffer;
+  }
+
   /**
    * Read all input stream into ByteBuffer that can be passed over JNI
    * @param inputStream input stream
@@ -352,14 +403,58 @@ public final class Utils
    */
   public static ByteBuffer readFromInputStream(final InputStream inputStream) throws IOException
   {
-    final byte[] bufferBytes = Utils.toByteArray(inputStream);
+    return readFromInputStream(inputStream, -1);
+  }
 
-    // WARNING: in order to be passed back to JNI one have to use `allocateDirect`
-    final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes.length);
-    buffer.order(ByteOrder.nativeOrder());
-    buffer.put(bufferBytes);
-    buffer.rewind();
+  /**
+   * Read all input stream into ByteBuffer that can be passed over JNI.
+   * <p>
+   * If the length is known (eg. from `Content-Length`) the data is read straight into
+   * the buffer allocated upfront, otherwise it's read into the growing chunks first
+   * and copied into the buffer once.
+   *
+   * @param inputStream input stream
+   * @param expectedLength expected data length or negative value if unknown
+   * @return byte buffer, the data is between its position (0) and its limit
+   * @throws IOException
+   */
+  public static ByteBuffer readFromInputStream(final InputStream inputStream,
+                                               final long expectedLength) throws IOException
+  {
+    if (expectedLength < 0 || expectedLength > MAX_ARRAY_LEN)
+    {
+      final Deque<byte[]> bufs = new ArrayDeque<>(TO_BYTE_ARRAY_DEQUE_SIZE);
+      final int totalLen = readBuffers(inputStream, bufs);
+      final ByteBuffer buffer = allocateJniBuffer(totalLen);
+      for (final byte[] buf : bufs)
+      {
+        buffer.put(buf, 0, Math.min(buffer.remaining(), buf.length));
+      }
+      buffer.flip();
+      return buffer;
+    }
 
+    ByteBuffer buffer = allocateJniBuffer((int) expectedLength);
+    final byte[] chunk = new byte[BUFFER_SIZE];
+    int r;
+    while ((r = inputStream.read(chunk)) != -1)
+    {
+      if (buffer.remaining() < r)
+      {
+        // the expected length was wrong
+        final long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + r);
+        if (capacity > MAX_ARRAY_LEN)
+        {
+          throw new OutOfMemoryError("Input is too large to fit in a byte buffer");
+        }
+        final ByteBuffer grown = allocateJniBuffer((int) capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+      }
+      buffer.put(chunk, 0, r);
+    }
+    buffer.flip();
     return buffer;
   }
 
@@ -18,6 +18,7 @@
 package org.adblockplus.libadblockplus.security;
 
 import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.spec.X509EncodedKeySpec;
@@ -52,6 +53,9 @@ public class JavaSignatureVerifier implements SignatureVerifier
 
   private String signatureAlgorithm;
 
+  // `initVerify()` resets the state, so the instances are reused by the thread
+  private final ThreadLocal<Signature> signatures = new ThreadLocal<>();
+
   public JavaSignatureVerifier(final String signatureAlgorithm)
   {
     this.signatureAlgorithm = signatureAlgorithm;
@@ -68,7 +72,7 @@ public class JavaSignatureVerifier implements SignatureVerifier
   {
     try
     {
-      final Signature signature = Signature.getInstance(this.signatureAlgorithm);
+      final Signature signature = getSignature();
       signature.initVerify(publicKey);
       signature.update(data);
       return signature.verify(signatureBytes);
@@ -78,4 +82,15 @@ public class JavaSignatureVerifier implements SignatureVerifier
       throw new SignatureVerificationException(cause);
     }
   }
+
+  private Signature getSignature() throws NoSuchAlgorithmException
+  {
+    Signature signature = signatures.get();
+    if (signature == null)
+    {
+      signature = Signature.getInstance(this.signatureAlgorithm);
+      signatures.set(signature);
+    }
+    return signature;
+  }
 }
@@ -0,0 +1,465 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.sitekey;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Size-bounded PublicKeyHolder with expiring entries.
+ * <p>
+ * The public keys are indexed by the normalized origin plus path (and query) of the URL,
+ * so the URLs differing only in the scheme/host case, the fragment or the empty path share
+ * the entry. When the capacity is reached the entries put the earliest (hence the closest
+ * to the expiry) are evicted first.
+ * <p>
+ * The entries can optionally be persisted to a file, so the verified public keys
+ * survive the process restarts until they expire. The file is written asynchronously
+ * on a background thread, the changes made while writing are coalesced into the next write.
+ * <p>
+ * Thread-safe, the reads are lock-free.
+ */
+public class BoundedPublicKeyHolder implements PublicKeyHolder
+{
+  public static final int DEFAULT_CAPACITY = 1024;
+  public static final long DEFAULT_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+  public static final String PERSISTENCE_FILE_NAME = "sitekeys.properties";
+
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
+  private static final char VALUE_SEPARATOR = ' ';
+
+  private static final class Entry
+  {
+    private final String key;
+    private final String publicKey;
+    private final long expiresMillis;
+
+    private Entry(final String key, final String publicKey, final long expiresMillis)
+    {
+      this.key = key;
+      this.publicKey = publicKey;
+      this.expiresMillis = expiresMillis;
+    }
+
+    private boolean isExpired(final long nowMillis)
+    {
+      return nowMillis >= expiresMillis;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+  // the entries in the put order, can contain the replaced ones
+  private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueSize = new AtomicInteger(0);
+  private final PendingVerifications pending = new PendingVerifications();
+  private final int capacity;
+  private final long ttlMillis;
+  private final File file;
+  private final Object fileLock = new Object();
+  // set when the entries are changed but not written to the file yet
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
+  private final ExecutorService saveExecutor;
+
+  public BoundedPublicKeyHolder()
+  {
+    this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS, null);
+  }
+
+  /**
+   * Constructor
+   * @param capacity max count of the public keys to hold
+   * @param ttlMillis time to live of the public keys in milliseconds
+   * @param file file to persist the public keys to (eg.
+   *             `new File(context.getFilesDir(), PERSISTENCE_FILE_NAME)`)
+   *             or `null` not to persist them
+   */
+  public BoundedPublicKeyHolder(final int capacity, final long ttlMillis, final File file)
+  {
+    if (capacity <= 0 || ttlMillis <= 0)
+    {
+      throw new IllegalArgumentException("Capacity and TTL must be positive");
+    }
+    this.capacity = capacity;
+    this.ttlMillis = ttlMillis;
+    this.file = file;
+    this.saveExecutor = (file != null ? Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "BoundedPublicKeyHolder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    }) : null);
+    load();
+  }
+
+  /**
+   * Normalize URL to the key the public key is indexed by
+   * @param url URL
+   * @return lower case scheme and host, the path (`/` if empty) and the query, no fragment
+   */
+  public static String normalize(final String url)
+  {
+    final int schemeEnd = url.indexOf("://");
+    if (schemeEnd < 0)
+    {
+      return url;
+    }
+    final int authorityStart = schemeEnd + 3;
+    int authorityEnd = url.length();
+    int fragmentStart = url.length();
+    for (int i = authorityStart; i < url.length(); i++)
+    {
+      final char c = url.charAt(i);
+      if (c == '#')
+      {
+        fragmentStart = i;
+        if (authorityEnd > i)
+        {
+          authorityEnd = i;
+        }
+        break;
+      }
+      if (authorityEnd == url.length() && (c == '/' || c == '?'))
+      {
+        authorityEnd = i;
+      }
+    }
+
+    final StringBuilder sb = new StringBuilder(fragmentStart + 1);
+    sb.append(url.substring(0, authorityEnd).toLowerCase(Locale.ROOT));
+    if (authorityEnd == fragmentStart || url.charAt(authorityEnd) != '/')
+    {
+      sb.append('/');
+    }
+    sb.append(url, authorityEnd, fragmentStart);
+    return sb.toString();
+  }
+
+  @Override
+  public boolean contains(final String url)
+  {
+    return get(url) != null;
+  }
+
+  @Override
+  public String get(final String url)
+  {
+    return get(url, System.currentTimeMillis());
+  }
+
+  private String get(final String url, final long nowMillis)
+  {
+    final String key = normalize(url);
+    final Entry entry = map.get(key);
+    if (entry == null)
+    {
+      return null;
+    }
+    if (entry.isExpired(nowMillis))
+    {
+      map.remove(key, entry);
+      return null;
+    }
+    return entry.publicKey;
+  }
+
+  @Override
+  public String getAny(final List<String> urls, final String defaultValue)
+  {
+    final long nowMillis = System.currentTimeMillis();
+    for (final String url : urls)
+    {
+      final String publicKey = get(url, nowMillis);
+      if (publicKey != null)
+      {
+        return publicKey;
+      }
+    }
+    return defaultValue;
+  }
+
+  @Override
+  public void put(final String url, final String publicKey)
+  {
+    final String key = normalize(url);
+    final Entry entry = new Entry(key, publicKey, System.currentTimeMillis() + ttlMillis);
+    final Entry previous = map.put(key, entry);
+    queue.add(entry);
+    queueSize.incrementAndGet();
+    evict();
+
+    // refreshing the expiry only is not worth writing the file
+    if (file != null && (previous == null || !previous.publicKey.equals(publicKey)))
+    {
+      scheduleSave();
+    }
+  }
+
+  private void evict()
+  {
+    while (map.size() > capacity)
+    {
+      final Entry eldest = queue.poll();
+      if (eldest == null)
+      {
+        break;
+      }
+      queueSize.decrementAndGet();
+      map.remove(eldest.key, eldest);
+    }
+
+    // the replaced entries are dropped once they make up the most of the queue
+    if (queueSize.get() > 2 * capacity)
+    {
+      for (final Entry entry : queue)
+      {
+        if (map.get(entry.key) != entry && queue.remove(entry))
+        {
+          queueSize.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void putPending(final String url, final Future<?> verification)
+  {
+    pending.put(normalize(url), verification);
+  }
+
+  @Override
+  public void removePending(final String url, final Future<?> verification)
+  {
+    pending.remove(normalize(url), verification);
+  }
+
+  @Override
+  public Future<?> getPending(final String url)
+  {
+    return pending.get(normalize(url));
+  }
+
+  @Override
+  public boolean waitForPending(final List<String> urls, final long timeoutMillis)
+  {
+    final List<String> keys = new ArrayList<>(urls.size());
+    for (final String url : urls)
+    {
+      keys.add(normalize(url));
+    }
+    return pending.waitFor(keys, timeoutMillis);
+  }
+
+  @Override
+  public void clear()
+  {
+    map.clear();
+    queue.clear();
+    queueSize.set(0);
+    pending.clear();
+    if (file != null)
+    {
+      synchronized (fileLock)
+      {
+        dirty.set(false);
+        if (file.exists() && !file.delete())
+        {
+          Timber.w("Failed to delete %s", file);
+        }
+      }
+    }
+  }
+
+  public int size()
+  {
+    return map.size();
+  }
+
+  private void load()
+  {
+    if (file == null || !file.exists())
+    {
+      return;
+    }
+    final Properties properties = new Properties();
+    synchronized (fileLock)
+    {
+      InputStream is = null;
+      try
+      {
+        is = new FileInputStream(file);
+        properties.load(is);
+      }
+      catch (final IOException e)
+      {
+        Timber.w(e, "Failed to load the public keys from %s", file);
+        return;
+      }
+      finally
+      {
+        closeQuietly(is);
+      }
+    }
+
+    final long nowMillis = System.currentTimeMillis();
+    for (final String key : properties.stringPropertyNames())
+    {
+      final String value = properties.getProperty(key);
+      final int separator = value.indexOf(VALUE_SEPARATOR);
+      if (separator < 0)
+      {
+        continue;
+      }
+      final long expiresMillis;
+      try
+      {
+        expiresMillis = Long.parseLong(value.substring(0, separator));
+      }
+      catch (final NumberFormatException e)
+      {
+        Timber.w(e, "Invalid expiry time for %s", key);
+        continue;
+      }
+      // the TTL could be decreased since the file was saved
+      final Entry entry = new Entry(key, value.substring(separator + 1),
+        Math.min(expiresMillis, nowMillis + ttlMillis));
+      if (!entry.isExpired(nowMillis))
+      {
+        map.put(key, entry);
+        queue.add(entry);
+        queueSize.incrementAndGet();
+      }
+    }
+    evict();
+    Timber.d("Loaded %d public keys from %s", map.size(), file);
+  }
+
+  private void scheduleSave()
+  {
+    // a write is already scheduled and will include the change
+    if (dirty.getAndSet(true))
+    {
+      return;
+    }
+    saveExecutor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        flush();
+      }
+    });
+  }
+
+  /**
+   * Write the changed entries to the file synchronously if they are not written yet.
+   * Can be used to make sure the entries are persisted, eg. before the process is stopped.
+   */
+  public void flush()
+  {
+    if (file == null)
+    {
+      return;
+    }
+    synchronized (fileLock)
+    {
+      // the changes made after the snapshot is taken schedule the next write
+      if (!dirty.getAndSet(false))
+      {
+        return;
+      }
+      final long nowMillis = System.currentTimeMillis();
+      final Properties properties = new Properties();
+      for (final Map.Entry<String, Entry> mapEntry : map.entrySet())
+      {
+        final Entry entry = mapEntry.getValue();
+        if (!entry.isExpired(nowMillis))
+        {
+          properties.setProperty(entry.key, entry.expiresMillis + String.valueOf(VALUE_SEPARATOR)
+            + entry.publicKey);
+        }
+      }
+
+      final File tempFile = new File(file.getPath() + TEMP_FILE_EXTENSION);
+      OutputStream os = null;
+      try
+      {
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs())
+        {
+          throw new IOException("Failed to create " + directory);
+        }
+        os = new FileOutputStream(tempFile);
+        properties.store(os, null);
+        os.close();
+        os = null;
+
+        if ((file.exists() && !file.delete()) || !tempFile.renameTo(file))
+        {
+          throw new IOException("Failed to replace " + file);
+        }
+      }
+      catch (final IOException e)
+      {
+        Timber.w(e, "Failed to save the public keys to %s", file);
+        closeQuietly(os);
+        tempFile.delete();
+      }
+    }
+  }
+
+  private static void closeQuietly(final Closeable closeable)
+  {
+    if (closeable != null)
+    {
+      try
+      {
+        closeable.close();
+      }
+      catch (final IOException e)
+      {
+        // ignored
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.sitekey;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import timber.log.Timber;
+
+/**
+ * Pending verifications of public keys per URL, shared by PublicKeyHolder implementations
+ */
+class PendingVerifications
+{
+  private final ConcurrentHashMap<String, Future<?>> pending = new ConcurrentHashMap<>();
+
+  void put(final String url, final Future<?> verification)
+  {
+    pending.put(url, verification);
+  }
+
+  // the newer verification for the url is kept
+  void remove(final String url, final Future<?> verification)
+  {
+    pending.remove(url, verification);
+  }
+
+  /**
+   * @return pending verification or `null` if there is none or it's done
+   */
+  Future<?> get(final String url)
+  {
+    final Future<?> verification = pending.get(url);
+    if (verification != null && verification.isDone())
+    {
+      return null;
+    }
+    return verification;
+  }
+
+  /**
+   * Wait for the pending verifications one by one within the total timeout
+   * @return `true` if had to wait
+   */
+  boolean waitFor(final List<String> urls, final long timeoutMillis)
+  {
+    final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    boolean waited = false;
+    for (final String url : urls)
+    {
+      final Future<?> verification = get(url);
+      if (verification == null)
+      {
+        continue;
+      }
+      waited = true;
+      try
+      {
+        verification.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+      catch (final TimeoutException e)
+      {
+        Timber.w("Timed out waiting for public key verification for %s", url);
+        break;
+      }
+      catch (final ExecutionException e)
+      {
+        Timber.e(e.getCause(), "Public key verification failed for %s", url);
+      }
+      catch (final InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return waited;
+  }
+
+  void clear()
+  {
+    pending.clear();
+  }
+}
@@ -18,6 +18,7 @@
 package org.adblockplus.libadblockplus.sitekey;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 public interface PublicKeyHolder
 {
@@ -54,4 +55,48 @@ public interface PublicKeyHolder
    * Clear map
    */
   void clear();
+
+  /**
+   * Register pending verification of public key for URL.
+   * The verification is expected to put the public key for URL if it's verified.
+   * The default implementation does not track the pending verifications
+   * @param url URL
+   * @param verification verification future, to be unregistered with
+   *                     {@link #removePending(String, Future)} once it's done
+   */
+  default void putPending(final String url, final Future<?> verification)
+  {
+  }
+
+  /**
+   * Unregister pending verification of public key for URL.
+   * A newer verification registered for URL is kept
+   * @param url URL
+   * @param verification verification future passed to {@link #putPending(String, Future)}
+   */
+  default void removePending(final String url, final Future<?> verification)
+  {
+  }
+
+  /**
+   * Get pending verification of public key for URL
+   * @param url URL
+   * @return verification future or `null` if there is no pending verification
+   */
+  default Future<?> getPending(final String url)
+  {
+    return null;
+  }
+
+  /**
+   * Wait for pending verifications of public keys for URLs in the list.
+   * The default implementation returns immediately
+   * @param urls URLs list
+   * @param timeoutMillis max total wait time in milliseconds
+   * @return `true` if had to wait
+   */
+  default boolean waitForPending(final List<String> urls, final long timeoutMillis)
+  {
+    return false;
+  }
 }
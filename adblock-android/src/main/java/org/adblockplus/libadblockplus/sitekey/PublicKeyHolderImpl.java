@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Thread-safe implementation of PublicKeyHolder
@@ -48,6 +49,7 @@ public class PublicKeyHolderImpl implements PublicKeyHolder
   }
 
   private Map<String, String> map = Collections.synchronizedMap(new HashMap<String, String>());
+  private final PendingVerifications pending = new PendingVerifications();
 
   @Override
   public boolean contains(final String url)
@@ -81,9 +83,34 @@ public class PublicKeyHolderImpl implements PublicKeyHolder
     map.put(url, publicKey);
   }
 
+  @Override
+  public void putPending(final String url, final Future<?> verification)
+  {
+    pending.put(url, verification);
+  }
+
+  @Override
+  public void removePending(final String url, final Future<?> verification)
+  {
+    pending.remove(url, verification);
+  }
+
+  @Override
+  public Future<?> getPending(final String url)
+  {
+    return pending.get(url);
+  }
+
+  @Override
+  public boolean waitForPending(final List<String> urls, final long timeoutMillis)
+  {
+    return pending.waitFor(urls, timeoutMillis);
+  }
+
   @Override
   public void clear()
   {
     map.clear();
+    pending.clear();
   }
 }
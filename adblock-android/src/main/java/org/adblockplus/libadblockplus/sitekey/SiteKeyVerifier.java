@@ -28,7 +28,18 @@ import org.adblockplus.libadblockplus.util.Base64Processor;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.PublicKey;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
 
@@ -36,18 +47,123 @@ import static org.adblockplus.libadblockplus.HttpClient.HEADER_USER_AGENT;
 
 public class SiteKeyVerifier
 {
+  // the same few partner keys are used on every page of a site
+  public static final int DEFAULT_PUBLIC_KEYS_CACHE_SIZE = 32;
+  public static final int DEFAULT_VERIFIED_CACHE_SIZE = 256;
+
+  // the verification is CPU-bound, so more threads than cores does not help
+  private static final int MAX_VERIFICATION_THREADS = 4;
+  private static final long VERIFICATION_THREAD_KEEP_ALIVE_SECONDS = 30;
+
   private static final byte ZERO_BYTE = 0x0;
+  private static final char SEPARATOR = '\0';
   private final SignatureVerifier signatureVerifier;
   private final PublicKeyHolder publicKeyHolder;
   private final Base64Processor base64Processor;
+  private final Executor executor;
+
+  // Base64 encoded public key string => decoded public key
+  private final LruCache<String, PublicKey> publicKeys;
+  // url, user agent and 'X-Adblock-Key' value verified successfully
+  private final LruCache<String, Boolean> verified;
+
+  private static final class LruCache<K, V> extends LinkedHashMap<K, V>
+  {
+    private final int capacity;
+
+    private LruCache(final int capacity)
+    {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest)
+    {
+      return size() > capacity;
+    }
+  }
+
+  private static final class DefaultExecutorHolder
+  {
+    private static final Executor EXECUTOR = createDefaultExecutor();
+
+    private static Executor createDefaultExecutor()
+    {
+      final int threads = Math.max(1,
+        Math.min(MAX_VERIFICATION_THREADS, Runtime.getRuntime().availableProcessors()));
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        VERIFICATION_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+      {
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+          final Thread thread = new Thread(runnable,
+            "SiteKeyVerifier-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
 
   public SiteKeyVerifier(final SignatureVerifier signatureVerifier,
                          final PublicKeyHolder publicKeyHolder,
                          final Base64Processor base64Processor)
   {
+    this(signatureVerifier, publicKeyHolder, base64Processor,
+      DEFAULT_PUBLIC_KEYS_CACHE_SIZE, DEFAULT_VERIFIED_CACHE_SIZE);
+  }
+
+  /**
+   * Constructor
+   * @param signatureVerifier signature verifier
+   * @param publicKeyHolder holder to put the verified public keys to
+   * @param base64Processor Base64 processor
+   * @param publicKeysCacheSize max count of the decoded public keys to cache
+   * @param verifiedCacheSize max count of the successful verifications to remember
+   */
+  public SiteKeyVerifier(final SignatureVerifier signatureVerifier,
+                         final PublicKeyHolder publicKeyHolder,
+                         final Base64Processor base64Processor,
+                         final int publicKeysCacheSize,
+                         final int verifiedCacheSize)
+  {
+    this(signatureVerifier, publicKeyHolder, base64Processor,
+      publicKeysCacheSize, verifiedCacheSize, DefaultExecutorHolder.EXECUTOR);
+  }
+
+  /**
+   * Constructor
+   * @param signatureVerifier signature verifier
+   * @param publicKeyHolder holder to put the verified public keys to
+   * @param base64Processor Base64 processor
+   * @param publicKeysCacheSize max count of the decoded public keys to cache
+   * @param verifiedCacheSize max count of the successful verifications to remember
+   * @param executor executor to run the asynchronous verifications on
+   */
+  public SiteKeyVerifier(final SignatureVerifier signatureVerifier,
+                         final PublicKeyHolder publicKeyHolder,
+                         final Base64Processor base64Processor,
+                         final int publicKeysCacheSize,
+                         final int verifiedCacheSize,
+                         final Executor executor)
+  {
+    if (publicKeysCacheSize <= 0 || verifiedCacheSize <= 0)
+    {
+      throw new IllegalArgumentException("Cache sizes must be positive");
+    }
     this.signatureVerifier = signatureVerifier;
     this.publicKeyHolder = publicKeyHolder;
     this.base64Processor = base64Processor;
+    this.executor = executor;
+    this.publicKeys = new LruCache<>(publicKeysCacheSize);
+    this.verified = new LruCache<>(verifiedCacheSize);
   }
 
   /**
@@ -71,17 +187,31 @@ public class SiteKeyVerifier
     final String publicKeyString = parts[0];
     final String signature = parts[1];
 
-    final byte[] publicKeyBytes = decodeBase64(publicKeyString);
+    // the signature is a part of the value, so a different signature is verified again
+    final String verifiedKey = url + SEPARATOR + (userAgent != null ? userAgent : "")
+      + SEPARATOR + value;
+    synchronized (verified)
+    {
+      if (verified.get(verifiedKey) != null)
+      {
+        publicKeyHolder.put(url, publicKeyString);
+        return true;
+      }
+    }
+
     final byte[] signatureBytes = decodeBase64(signature);
     final byte[] dataBytes = buildData(url, userAgent);
 
     try
     {
-      final PublicKey publicKey = JavaSignatureVerifier.publicKeyFromDer(
-          JavaSignatureVerifier.KEY_ALGORITHM, publicKeyBytes);
+      final PublicKey publicKey = getPublicKey(publicKeyString);
 
       if (signatureVerifier.verify(publicKey, dataBytes, signatureBytes))
       {
+        synchronized (verified)
+        {
+          verified.put(verifiedKey, Boolean.TRUE);
+        }
         publicKeyHolder.put(url, publicKeyString);
         return true;
       }
@@ -93,6 +223,45 @@ public class SiteKeyVerifier
     }
   }
 
+  /**
+   * Verify 'X-Adblock-Key' value asynchronously.
+   * The verification is registered as pending for the url in the public key holder
+   * until it's done, so the requests depending on the url sitekey can wait for it
+   * @param url url
+   * @param userAgent user agent (`null` is accepted and processed as empty string)
+   * @param value 'X-Adblock-Key' value
+   * @return verification future, the result is `true` if the value is verified
+   */
+  public Future<Boolean> verifyAsync(final String url, final String userAgent, final String value)
+  {
+    final FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        return verifyAndLog(url, userAgent, value);
+      }
+    })
+    {
+      @Override
+      protected void done()
+      {
+        publicKeyHolder.removePending(url, this);
+      }
+    };
+    publicKeyHolder.putPending(url, task);
+    try
+    {
+      executor.execute(task);
+    }
+    catch (final RejectedExecutionException e)
+    {
+      Timber.w(e, "Verification rejected, verifying synchronously");
+      task.run();
+    }
+    return task;
+  }
+
   /**
    * Extracts site key from headers
    * <ol>
@@ -106,30 +275,71 @@ public class SiteKeyVerifier
                               final Map<String, String> requestHeadersMap,
                               final Map<String, String> responseHeaders)
   {
-    for (final Map.Entry<String, String> header : responseHeaders.entrySet())
+    final String value = responseHeaders.get(HttpClient.HEADER_SITEKEY);
+    if (value != null)
+    {
+      // verify signature and save public key to be used as sitekey for next requests
+      verifyAndLog(Utils.getUrlWithoutFragment(url),
+        requestHeadersMap.get(HEADER_USER_AGENT), value);
+    }
+  }
+
+  /**
+   * Extracts site key from headers and verifies it asynchronously
+   * (see {@link #verifyInHeaders(String, Map, Map)} and {@link #verifyAsync(String, String, String)})
+   * @return verification future or `null` if there is no sitekey header
+   */
+  public Future<Boolean> verifyInHeadersAsync(final String url,
+                                              final Map<String, String> requestHeadersMap,
+                                              final Map<String, String> responseHeaders)
+  {
+    final String value = responseHeaders.get(HttpClient.HEADER_SITEKEY);
+    if (value == null)
+    {
+      return null;
+    }
+    return verifyAsync(Utils.getUrlWithoutFragment(url),
+      requestHeadersMap.get(HEADER_USER_AGENT), value);
+  }
+
+  private boolean verifyAndLog(final String url, final String userAgent, final String value)
+  {
+    try
     {
-      if (header.getKey().equals(HttpClient.HEADER_SITEKEY))
+      if (verify(url, userAgent, value))
       {
-        // verify signature and save public key to be used as sitekey for next requests
-        try
-        {
-          if (verify(Utils.getUrlWithoutFragment(url),
-                  requestHeadersMap.get(HEADER_USER_AGENT), header.getValue()))
-          {
-            Timber.d("Url %s public key verified successfully", url);
-          }
-          else
-          {
-            Timber.e("Url %s public key is not verified", url);
-          }
-        }
-        catch (final SiteKeyException e)
-        {
-          Timber.e(e, "Failed to verify sitekey header");
-        }
-        break;
+        Timber.d("Url %s public key verified successfully", url);
+        return true;
       }
+      Timber.e("Url %s public key is not verified", url);
+    }
+    catch (final SiteKeyException e)
+    {
+      Timber.e(e, "Failed to verify sitekey header");
+    }
+    return false;
+  }
+
+  private PublicKey getPublicKey(final String publicKeyString)
+      throws SiteKeyException, SignatureVerificationException
+  {
+    synchronized (publicKeys)
+    {
+      final PublicKey publicKey = publicKeys.get(publicKeyString);
+      if (publicKey != null)
+      {
+        return publicKey;
+      }
+    }
+
+    // decoding concurrently is harmless, the equal keys are created
+    final PublicKey publicKey = JavaSignatureVerifier.publicKeyFromDer(
+        JavaSignatureVerifier.KEY_ALGORITHM, decodeBase64(publicKeyString));
+    synchronized (publicKeys)
+    {
+      publicKeys.put(publicKeyString, publicKey);
     }
+    return publicKey;
   }
 
   private byte[] decodeBase64(final String encodedString) throws SiteKeyException
@@ -107,6 +107,8 @@ private:
   static JniLocalReference<jobject> NewTuple(JNIEnv* env, const std::string& a, const std::string& b);
 private:
   AdblockPlus::Scheduler m_scheduler;
+  // `HttpClient.request()` of the callback object class, resolved once
+  jmethodID m_requestMethod;
 };
 
 class JniIsAllowedConnectionTypeCallback : public JniCallbackBase
@@ -19,6 +19,7 @@
 #include "Utils.h"
 #include "JniCallbacks.h"
 #include <thread>
+#include <unordered_set>
 #include "JniPlatform.h"
 
 static jobject SubscriptionsToArrayList(JNIEnv* env, std::vector<AdblockPlus::Subscription>&& subscriptions, jobject filterEngine)
@@ -33,17 +34,41 @@ static jobject SubscriptionsToArrayList(JNIEnv* env, std::vector<AdblockPlus::Su
   return list;
 }
 
-static AdblockPlus::IFilterEngine::ContentType ConvertContentType(JNIEnv *env,
-    jobject jContentType)
+// native content type for every bit of Java `ContentType.mask`, filled in registerNatives
+static AdblockPlus::IFilterEngine::ContentTypeMask contentTypeBits[32];
+
+static void InitContentTypeBits(JNIEnv* env)
 {
-  JniLocalReference<jclass> contentTypeClass(env,
-      env->GetObjectClass(jContentType));
-  jmethodID nameMethod = env->GetMethodID(*contentTypeClass, "name",
-      "()Ljava/lang/String;");
-  JniLocalReference<jstring> jValue(env,
-      (jstring) env->CallObjectMethod(jContentType, nameMethod));
-  const std::string value = JniJavaToStdString(env, *jValue);
-  return AdblockPlus::IFilterEngine::StringToContentType(value);
+  JniLocalReference<jclass> contentTypeClass(env, env->FindClass(PKGAPI("ContentType")));
+  jmethodID valuesMethod = env->GetStaticMethodID(*contentTypeClass, "values",
+      "()[" TYPAPI("ContentType"));
+  jmethodID nameMethod = env->GetMethodID(*contentTypeClass, "name", "()Ljava/lang/String;");
+  jfieldID maskField = env->GetFieldID(*contentTypeClass, "mask", "I");
+
+  JniLocalReference<jobjectArray> jValues(env,
+      static_cast<jobjectArray>(env->CallStaticObjectMethod(*contentTypeClass, valuesMethod)));
+  jsize valuesSize = env->GetArrayLength(*jValues);
+  for (jsize i = 0; i < valuesSize; i++)
+  {
+    JniLocalReference<jobject> jContentType(env, env->GetObjectArrayElement(*jValues, i));
+    JniLocalReference<jstring> jName(env,
+        static_cast<jstring>(env->CallObjectMethod(*jContentType, nameMethod)));
+    const uint32_t bit = static_cast<uint32_t>(env->GetIntField(*jContentType, maskField));
+    contentTypeBits[__builtin_ctz(bit)] =
+        AdblockPlus::IFilterEngine::StringToContentType(JniJavaToStdString(env, *jName));
+  }
+}
+
+static AdblockPlus::IFilterEngine::ContentTypeMask ConvertContentTypeMask(jint jContentTypeMask)
+{
+  AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask = 0;
+  uint32_t bits = static_cast<uint32_t>(jContentTypeMask);
+  while (bits)
+  {
+    contentTypeMask |= contentTypeBits[__builtin_ctz(bits)];
+    bits &= bits - 1; // clear the lowest set bit
+  }
+  return contentTypeMask;
 }
 
 namespace
@@ -180,18 +205,14 @@ static std::vector<std::string> JavaStringListToStringVector(JNIEnv* env, jobjec
 }
 
 static jobject JNICALL JniMatches(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl,
-    jobjectArray jContentTypes, jstring jparent, jstring jSiteKey, jboolean jSpecificOnly)
+    jint jContentTypeMask, jstring jparent, jstring jSiteKey, jboolean jSpecificOnly)
 {
   AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
 
   std::string url = JniJavaToStdString(env, jUrl);
 
-  AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask = 0;
-  int contentTypesSize = env->GetArrayLength(jContentTypes);
-  for (int i = 0; i < contentTypesSize; i++)
-  {
-    contentTypeMask |= ConvertContentType(env, env->GetObjectArrayElement(jContentTypes, i));
-  }
+  AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask =
+      ConvertContentTypeMask(jContentTypeMask);
 
   std::string parent = JniJavaToStdString(env, jparent);
   std::string siteKey = JniJavaToStdString(env, jSiteKey);
@@ -207,18 +228,14 @@ static jobject JNICALL JniMatches(JNIEnv* env, jclass clazz, jlong ptr, jstring
 }
 
 static jboolean JNICALL JniIsContentAllowlisted(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl,
-    jobjectArray jContentTypes, jobject jReferrerChain, jstring jSiteKey)
+    jint jContentTypeMask, jobject jReferrerChain, jstring jSiteKey)
 {
     AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
 
     std::string url = JniJavaToStdString(env, jUrl);
 
-    AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask = 0;
-    int contentTypesSize = env->GetArrayLength(jContentTypes);
-    for (int i = 0; i < contentTypesSize; i++)
-    {
-        contentTypeMask |= ConvertContentType(env, env->GetObjectArrayElement(jContentTypes, i));
-    }
+    AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask =
+        ConvertContentTypeMask(jContentTypeMask);
 
     std::string siteKey = JniJavaToStdString(env, jSiteKey);
     std::vector<std::string> documentUrls = JavaStringListToStringVector(env, jReferrerChain);
@@ -231,6 +248,91 @@ static jboolean JNICALL JniIsContentAllowlisted(JNIEnv* env, jclass clazz, jlong
     CATCH_THROW_AND_RETURN(env, JNI_FALSE)
 }
 
+static jobject JNICALL JniEvaluateRequest(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl,
+    jint jContentTypeMask, jobject jReferrerChain, jstring jSiteKey)
+{
+  AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
+
+  std::string url = JniJavaToStdString(env, jUrl);
+
+  AdblockPlus::IFilterEngine::ContentTypeMask contentTypeMask =
+      ConvertContentTypeMask(jContentTypeMask);
+
+  std::string siteKey = JniJavaToStdString(env, jSiteKey);
+  std::vector<std::string> documentUrls = JavaStringListToStringVector(env, jReferrerChain);
+
+  try
+  {
+    // the same sequence of checks as used to be done with separate calls from Java,
+    // but with the arguments marshalled only once
+    if (engine.IsContentAllowlisted(url,
+        AdblockPlus::IFilterEngine::CONTENT_TYPE_DOCUMENT, documentUrls, siteKey))
+    {
+      return NewJniEvaluationResult(env, DOCUMENT_ALLOWLISTED, nullptr);
+    }
+
+    const bool specificOnly = engine.IsContentAllowlisted(url,
+        AdblockPlus::IFilterEngine::CONTENT_TYPE_GENERICBLOCK, documentUrls, siteKey);
+
+    if (engine.IsContentAllowlisted(url, contentTypeMask, documentUrls, siteKey))
+    {
+      return NewJniEvaluationResult(env, FILTER_ALLOWLISTED, nullptr);
+    }
+
+    const std::string parent = documentUrls.empty() ? std::string() : documentUrls.front();
+    AdblockPlus::Filter filter = engine.Matches(url, contentTypeMask, parent, siteKey, specificOnly);
+    if (filter.IsValid() && filter.GetType() == AdblockPlus::IFilterImplementation::TYPE_BLOCKING)
+    {
+      const std::string filterText = filter.GetRaw();
+      return NewJniEvaluationResult(env, BLOCKING_FILTER, &filterText);
+    }
+
+    return NewJniEvaluationResult(env, NO_FILTER, nullptr);
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
+static jbooleanArray JNICALL JniMatchesBatch(JNIEnv* env, jclass clazz, jlong ptr,
+    jobjectArray jUrls, jintArray jContentTypeMasks, jobjectArray jParents,
+    jobjectArray jSiteKeys, jbooleanArray jSpecificOnly)
+{
+  AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
+
+  const jsize size = env->GetArrayLength(jUrls);
+  std::vector<jint> contentTypeMasks(size);
+  std::vector<jboolean> specificOnly(size);
+  std::vector<jboolean> blocked(size, JNI_FALSE);
+  env->GetIntArrayRegion(jContentTypeMasks, 0, size, contentTypeMasks.data());
+  env->GetBooleanArrayRegion(jSpecificOnly, 0, size, specificOnly.data());
+
+  try
+  {
+    for (jsize i = 0; i < size; i++)
+    {
+      // local references are released on every iteration as the batch can be large
+      const std::string url = JniJavaToStdString(env,
+          *JniLocalReference<jstring>(env, static_cast<jstring>(env->GetObjectArrayElement(jUrls, i))));
+      const std::string parent = JniJavaToStdString(env,
+          *JniLocalReference<jstring>(env, static_cast<jstring>(env->GetObjectArrayElement(jParents, i))));
+      const std::string siteKey = JniJavaToStdString(env,
+          *JniLocalReference<jstring>(env, static_cast<jstring>(env->GetObjectArrayElement(jSiteKeys, i))));
+
+      AdblockPlus::Filter filter = engine.Matches(url,
+          ConvertContentTypeMask(contentTypeMasks[i]), parent, siteKey,
+          specificOnly[i] == JNI_TRUE);
+      if (filter.IsValid() && filter.GetType() == AdblockPlus::IFilterImplementation::TYPE_BLOCKING)
+      {
+        blocked[i] = JNI_TRUE;
+      }
+    }
+
+    jbooleanArray jBlocked = env->NewBooleanArray(size);
+    env->SetBooleanArrayRegion(jBlocked, 0, size, blocked.data());
+    return jBlocked;
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
 static jobject JNICALL JniGetPref(JNIEnv* env, jclass clazz, jlong ptr, jstring jPref)
 {
   AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
@@ -432,6 +534,113 @@ static void JNICALL JniRemoveFilter(JNIEnv *env, jclass clazz, jlong ptr, jstrin
   CATCH_AND_THROW(env)
 }
 
+static jboolean JNICALL JniHasFilter(JNIEnv* env, jclass clazz, jlong ptr, jstring jText)
+{
+  try
+  {
+    AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
+    return engine.GetFilter(JniJavaToStdString(env, jText)).IsListed() ? JNI_TRUE : JNI_FALSE;
+  }
+  CATCH_THROW_AND_RETURN(env, JNI_FALSE)
+}
+
+static jboolean JNICALL JniHasSubscription(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl)
+{
+  try
+  {
+    AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
+    return engine.GetSubscription(JniJavaToStdString(env, jUrl)).IsListed() ? JNI_TRUE : JNI_FALSE;
+  }
+  CATCH_THROW_AND_RETURN(env, JNI_FALSE)
+}
+
+static std::vector<std::string> JniJavaToStdStringVector(JNIEnv* env, jobjectArray jStrings)
+{
+  const jsize size = env->GetArrayLength(jStrings);
+  std::vector<std::string> strings;
+  strings.reserve(size);
+  for (jsize i = 0; i < size; i++)
+  {
+    strings.push_back(JniJavaToStdString(env,
+        *JniLocalReference<jstring>(env, static_cast<jstring>(env->GetObjectArrayElement(jStrings, i)))));
+  }
+  return strings;
+}
+
+static jlong JNICALL JniGetFilterListVersion(JNIEnv* env, jclass clazz, jlong ptr)
+{
+  return JniLongToTypePtr<JniPlatform>(ptr)->filterListObserver.GetVersion();
+}
+
+static jobject JNICALL JniApplyChanges(JNIEnv* env, jclass clazz, jlong ptr,
+    jobjectArray jRemovedSubscriptionUrls, jobjectArray jAddedSubscriptionUrls,
+    jobjectArray jRemovedFilters, jboolean removeAllFilters, jobjectArray jAddedFilters,
+    jlongArray jVersions)
+{
+  AdblockPlus::IFilterEngine& engine = GetFilterEngineRef(ptr);
+  JniFilterListObserver& observer = JniLongToTypePtr<JniPlatform>(ptr)->filterListObserver;
+
+  try
+  {
+    const int64_t versionBefore = observer.GetVersion();
+    jobject removedList = NewJniArrayList(env);
+    observer.StartCountingOwnChanges();
+    try
+    {
+      for (const auto& url : JniJavaToStdStringVector(env, jRemovedSubscriptionUrls))
+      {
+        engine.GetSubscription(url).RemoveFromList();
+      }
+      for (const auto& url : JniJavaToStdStringVector(env, jAddedSubscriptionUrls))
+      {
+        engine.GetSubscription(url).AddToList();
+      }
+
+      const std::vector<std::string> removedFiltersVector = JniJavaToStdStringVector(env, jRemovedFilters);
+      if (removeAllFilters == JNI_TRUE || !removedFiltersVector.empty())
+      {
+        const std::unordered_set<std::string> removedFilters(
+            removedFiltersVector.begin(), removedFiltersVector.end());
+        // the listed filters are fetched and scanned once for all the removed filters
+        std::vector<AdblockPlus::Filter> filters = engine.GetListedFilters();
+        const jmethodID addMethod = JniGetAddToListMethod(env, removedList);
+        for (auto& filter : filters)
+        {
+          if (removeAllFilters == JNI_TRUE || removedFilters.count(filter.GetRaw()) > 0)
+          {
+            filter.RemoveFromList();
+            JniAddObjectToList(env, removedList, addMethod,
+                *JniLocalReference<jobject>(env, NewJniFilter(env, std::move(filter))));
+          }
+        }
+      }
+
+      for (const auto& filterRaw : JniJavaToStdStringVector(env, jAddedFilters))
+      {
+        engine.GetFilter(filterRaw).AddToList();
+      }
+    }
+    catch (...)
+    {
+      observer.StopCountingOwnChanges();
+      throw;
+    }
+
+    const int64_t ownChangesCount = observer.StopCountingOwnChanges();
+    const int64_t versionAfter = observer.GetVersion();
+    if (jVersions)
+    {
+      // no versions if other changes are made concurrently
+      const bool ownChangesOnly = versionAfter - versionBefore == ownChangesCount;
+      const jlong versions[] = { ownChangesOnly ? versionBefore : -1, ownChangesOnly ? versionAfter : -1 };
+      env->SetLongArrayRegion(jVersions, 0, 2, versions);
+    }
+
+    return removedList;
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
 static JNINativeMethod methods[] =
 {
   { (char*)"getFilter", (char*)"(JLjava/lang/String;)" TYPAPI("Filter"), (void*)JniGetFilter },
@@ -441,8 +650,10 @@ static JNINativeMethod methods[] =
   { (char*)"fetchAvailableSubscriptions", (char*)"(J" TYP("FilterEngine") ")Ljava/util/List;", (void*)JniFetchAvailableSubscriptions },
   { (char*)"getElementHidingStyleSheet", (char*)"(JLjava/lang/String;Z)Ljava/lang/String;", (void*)JniGetElementHidingStyleSheet },
   { (char*)"getElementHidingEmulationSelectors", (char*)"(JLjava/lang/String;)Ljava/util/List;", (void*)JniGetElementHidingEmulationSelectors },
-  { (char*)"matches", (char*) "(JLjava/lang/String;" "[" TYPAPI("ContentType") "Ljava/lang/String;Ljava/lang/String;Z)" TYPAPI("Filter"), (void*)JniMatches },
-  { (char*)"isContentAllowlisted", (char*) "(JLjava/lang/String;" "[" TYPAPI("ContentType") "Ljava/util/List;Ljava/lang/String;)Z", (void*)JniIsContentAllowlisted },
+  { (char*)"matches", (char*) "(JLjava/lang/String;ILjava/lang/String;Ljava/lang/String;Z)" TYPAPI("Filter"), (void*)JniMatches },
+  { (char*)"isContentAllowlisted", (char*) "(JLjava/lang/String;ILjava/util/List;Ljava/lang/String;)Z", (void*)JniIsContentAllowlisted },
+  { (char*)"evaluateRequest", (char*) "(JLjava/lang/String;ILjava/util/List;Ljava/lang/String;)" TYPAPI("EvaluationResult"), (void*)JniEvaluateRequest },
+  { (char*)"matchesBatch", (char*) "(J[Ljava/lang/String;[I[Ljava/lang/String;[Ljava/lang/String;[Z)[Z", (void*)JniMatchesBatch },
   { (char*)"getPref", (char*)"(JLjava/lang/String;)" TYP("JsValue"), (void*)JniGetPref },
   { (char*)"setPref", (char*)"(JLjava/lang/String;J)V", (void*)JniSetPref },
   { (char*)"getHostFromURL", (char*)"(JLjava/lang/String;)Ljava/lang/String;", (void *) JniGetHostFromURL},
@@ -457,10 +668,15 @@ static JNINativeMethod methods[] =
   { (char*)"addSubscription", (char*)"(JLjava/lang/String;)V", (void *) JniAddSubscription},
   { (char*)"removeSubscription", (char*)"(JLjava/lang/String;)V", (void *) JniRemoveSubscription},
   { (char*)"addFilter", "(JLjava/lang/String;)V", (void *) JniAddFilter},
-  { (char*)"removeFilter", "(JLjava/lang/String;)V", (void *) JniRemoveFilter}
+  { (char*)"removeFilter", "(JLjava/lang/String;)V", (void *) JniRemoveFilter},
+  { (char*)"hasFilter", (char*)"(JLjava/lang/String;)Z", (void *) JniHasFilter},
+  { (char*)"hasSubscription", (char*)"(JLjava/lang/String;)Z", (void *) JniHasSubscription},
+  { (char*)"applyChanges", (char*)"(J[Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;Z[Ljava/lang/String;[J)Ljava/util/List;", (void *) JniApplyChanges},
+  { (char*)"getFilterListVersion", (char*)"(J)J", (void *) JniGetFilterListVersion}
 };
 
 extern "C" JNIEXPORT void JNICALL Java_org_adblockplus_libadblockplus_FilterEngine_registerNatives(JNIEnv *env, jclass clazz)
 {
+  InitContentTypeBits(env);
   env->RegisterNatives(clazz, methods, sizeof(methods) / sizeof(methods[0]));
 }
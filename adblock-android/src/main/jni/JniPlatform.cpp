@@ -31,6 +31,56 @@ static void TransformAppInfo(JNIEnv* env, jobject jAppInfo, AdblockPlus::AppInfo
   appInfo.version = JniGetStringField(env, clazz, jAppInfo, "version");
 }
 
+namespace
+{
+  thread_local bool countingOwnChanges = false;
+  thread_local int64_t ownChangesCount = 0;
+}
+
+JniFilterListObserver::JniFilterListObserver()
+  : version(0)
+{
+}
+
+void JniFilterListObserver::OnFilterEvent(AdblockPlus::IFilterEngine::FilterEvent event,
+                                          const AdblockPlus::Filter& filter)
+{
+  OnChanged();
+}
+
+// including the subscriptions updates downloaded by the engine automatically
+void JniFilterListObserver::OnSubscriptionEvent(AdblockPlus::IFilterEngine::SubscriptionEvent event,
+                                                const AdblockPlus::Subscription& subscription)
+{
+  OnChanged();
+}
+
+void JniFilterListObserver::OnChanged()
+{
+  version.fetch_add(1);
+  if (countingOwnChanges)
+  {
+    ++ownChangesCount;
+  }
+}
+
+int64_t JniFilterListObserver::GetVersion() const
+{
+  return version.load();
+}
+
+void JniFilterListObserver::StartCountingOwnChanges()
+{
+  countingOwnChanges = true;
+  ownChangesCount = 0;
+}
+
+int64_t JniFilterListObserver::StopCountingOwnChanges()
+{
+  countingOwnChanges = false;
+  return ownChangesCount;
+}
+
 static AdblockPlus::Platform& GetPlatformRef(jlong ptr)
 {
   return *JniLongToTypePtr<JniPlatform>(ptr)->platform;
@@ -151,7 +201,12 @@ static void JNICALL JniEnsureFilterEngine(JNIEnv* env, jclass clazz, jlong ptr)
 {
   try
   {
-    GetPlatformRef(ptr).GetFilterEngine();
+    JniPlatform* jniPlatform = JniLongToTypePtr<JniPlatform>(ptr);
+    AdblockPlus::IFilterEngine& filterEngine = jniPlatform->platform->GetFilterEngine();
+    std::call_once(jniPlatform->filterListObserverFlag, [jniPlatform, &filterEngine]()
+    {
+      filterEngine.AddEventObserver(&jniPlatform->filterListObserver);
+    });
   }
   CATCH_AND_THROW(env)
 }
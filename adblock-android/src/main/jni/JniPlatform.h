@@ -19,10 +19,35 @@
 #define JNI_PLATFORM_H
 
 #include <AdblockPlus/Platform.h>
+#include <atomic>
+#include <mutex>
+
+// counts the filter and subscription changes, see `FilterEngine.getFilterListVersion()`
+class JniFilterListObserver : public AdblockPlus::IFilterEngine::EventObserver
+{
+public:
+  JniFilterListObserver();
+  void OnFilterEvent(AdblockPlus::IFilterEngine::FilterEvent event,
+                     const AdblockPlus::Filter& filter) override;
+  void OnSubscriptionEvent(AdblockPlus::IFilterEngine::SubscriptionEvent event,
+                           const AdblockPlus::Subscription& subscription) override;
+  int64_t GetVersion() const;
+  // the changes made by the calling thread in the meantime are counted separately
+  void StartCountingOwnChanges();
+  int64_t StopCountingOwnChanges();
+
+private:
+  void OnChanged();
+
+  std::atomic<int64_t> version;
+};
 
 struct JniPlatform
 {
   AdblockPlus::Scheduler scheduler;
+  // outlives the filter engine (owned by `platform`) it's registered in
+  JniFilterListObserver filterListObserver;
+  std::once_flag filterListObserverFlag;
   std::unique_ptr<AdblockPlus::Platform> platform;
 };
 
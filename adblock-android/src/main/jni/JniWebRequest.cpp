@@ -25,8 +25,15 @@ JniGlobalReference<jclass>* httpRequestClass;
 jmethodID httpRequestClassCtor;
 
 JniGlobalReference<jclass>* headerEntryClass;
+jmethodID headerEntryClassCtor;
+
 JniGlobalReference<jclass>* serverResponseClass;
+jfieldID statusField;
+jfieldID responseStatusField;
 jfieldID responseField;
+jfieldID headersField;
+
+jmethodID byteBufferLimitMethod;
 
 JniGlobalReference<jclass>* webRequestCallbackClass;
 jmethodID callbackClassCtor;
@@ -39,12 +46,22 @@ void JniWebRequest_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
       "(Ljava/lang/String;Ljava/lang/String;Ljava/util/List;ZZ)V");
 
   headerEntryClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("HeaderEntry")));
+  headerEntryClassCtor = env->GetMethodID(headerEntryClass->Get(), "<init>",
+      "(Ljava/lang/String;Ljava/lang/String;)V");
+
   serverResponseClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("ServerResponse")));
 
   webRequestCallbackClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("HttpClient$JniCallback")));
   callbackClassCtor = env->GetMethodID(webRequestCallbackClass->Get(), "<init>", "(J)V");
 
+  statusField = env->GetFieldID(serverResponseClass->Get(), "status", "J");
+  responseStatusField = env->GetFieldID(serverResponseClass->Get(), "responseStatus", "I");
   responseField = env->GetFieldID(serverResponseClass->Get(), "response", "Ljava/nio/ByteBuffer;");
+  headersField = env->GetFieldID(serverResponseClass->Get(), "headers", "[Ljava/lang/String;");
+
+  // the method ID is valid for the subclasses (eg. DirectByteBuffer) as well
+  JniLocalReference<jclass> bufferClass(env, env->FindClass("java/nio/Buffer"));
+  byteBufferLimitMethod = env->GetMethodID(*bufferClass, "limit", "()I");
 }
 
 void JniWebRequest_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
@@ -79,6 +96,10 @@ JniWebRequestCallback::JniWebRequestCallback(JNIEnv* env, const AdblockPlus::Sch
   : JniCallbackBase(env, callbackObject)
   , m_scheduler(scheduler)
 {
+  m_requestMethod = env->GetMethodID(
+      *JniLocalReference<jclass>(env, env->GetObjectClass(callbackObject)),
+      "request",
+      "(" TYP("HttpRequest") TYP("HttpClient$Callback") ")V" );
 }
 
 void JniWebRequestCallback::GET(const std::string& url,
@@ -109,12 +130,7 @@ void JniWebRequestCallback::SyncRequest(const std::string& method,
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID methodID = env->GetMethodID(
-      *JniLocalReference<jclass>(*env, env->GetObjectClass(GetCallbackObject())),
-      "request",
-      "(" TYP("HttpRequest") TYP("HttpClient$Callback") ")V" );
-
-  if (methodID)
+  if (m_requestMethod)
   {
     JniLocalReference<jstring> jUrl{*env, JniStdStringToJava(*env, url)};
 
@@ -141,7 +157,7 @@ void JniWebRequestCallback::SyncRequest(const std::string& method,
         callbackClassCtor,
         JniPtrToLong(new AdblockPlus::IWebRequest::RequestCallback(callback)))};
 
-    env->CallVoidMethod(GetCallbackObject(), methodID, *jHttpRequest, *jCallback);
+    env->CallVoidMethod(GetCallbackObject(), m_requestMethod, *jHttpRequest, *jCallback);
 
     if (CheckAndLogJavaException(*env))
     {
@@ -155,13 +171,11 @@ void JniWebRequestCallback::SyncRequest(const std::string& method,
 JniLocalReference<jobject> JniWebRequestCallback::NewTuple(JNIEnv* env, const std::string& a,
     const std::string& b)
 {
-  jmethodID factory = env->GetMethodID(headerEntryClass->Get(), "<init>",
-      "(Ljava/lang/String;Ljava/lang/String;)V");
-
   JniLocalReference<jstring> strA(env, env->NewStringUTF(a.c_str()));
   JniLocalReference<jstring> strB(env, env->NewStringUTF(b.c_str()));
 
-  return JniLocalReference<jobject>{env, env->NewObject(headerEntryClass->Get(), factory, *strA, *strB)};
+  return JniLocalReference<jobject>{env, env->NewObject(headerEntryClass->Get(), headerEntryClassCtor,
+                                                        *strA, *strB)};
 }
 
 static void JNICALL JniCallbackOnFinished(JNIEnv* env, jclass clazz, jlong ptr, jobject response)
@@ -173,11 +187,8 @@ static void JNICALL JniCallbackOnFinished(JNIEnv* env, jclass clazz, jlong ptr,
 
     if (response)
     {
-      sResponse.status = JniGetLongField(env, serverResponseClass->Get(), response, "status");
-      sResponse.responseStatus = JniGetIntField(env,
-                                                serverResponseClass->Get(),
-                                                response,
-                                                "responseStatus");
+      sResponse.status = (int64_t)env->GetLongField(response, statusField);
+      sResponse.responseStatus = (int32_t)env->GetIntField(response, responseStatusField);
       JniLocalReference<jobject> jByteBuffer{env, env->GetObjectField(response, responseField)};
 
       if (jByteBuffer)
@@ -187,17 +198,16 @@ static void JNICALL JniCallbackOnFinished(JNIEnv* env, jclass clazz, jlong ptr,
         {
           throw std::runtime_error("GetDirectBufferAddress() returned NULL");
         }
-        // obtain and call method limit() on ByteBuffer object
-        jmethodID byteBufferLimitMethod = env->GetMethodID(env->GetObjectClass(*jByteBuffer), "limit", "()I");
-        int responseSize = env->CallIntMethod(*jByteBuffer, byteBufferLimitMethod);
+        // the buffer can be larger than the data (eg. pre-sized with Content-Length),
+        // the data size is the limit
+        jint responseSize = env->CallIntMethod(*jByteBuffer, byteBufferLimitMethod);
+        // the core owns the body as std::string, so this is the only copy on the native side
         sResponse.responseText.assign(responseBuffer, responseSize);
       }
 
       // map headers
-      JniLocalReference<jobjectArray> responseHeadersArray{env, JniGetStringArrayField(env,
-                                                                 serverResponseClass->Get(),
-                                                                 response,
-                                                                 "headers")};
+      JniLocalReference<jobjectArray> responseHeadersArray{env,
+        (jobjectArray)env->GetObjectField(response, headersField)};
 
       if (responseHeadersArray)
       {
@@ -44,6 +44,11 @@ jmethodID subscriptionCtor;
 JniGlobalReference<jclass>* emulationSelectorClass;
 jmethodID emulationSelectorCtor;
 
+JniGlobalReference<jclass>* evaluationResultClass;
+jmethodID evaluationResultCtor;
+// indexed by `JniEvaluationReason`
+JniGlobalReference<jobject>* evaluationResultReasons[EVALUATION_REASONS_COUNT];
+
 JniGlobalReference<jclass>* exceptionClass;
 
 void JniUtils_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
@@ -62,6 +67,27 @@ void JniUtils_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
   emulationSelectorCtor = env->GetMethodID(emulationSelectorClass->Get(), "<init>",
                                            "(Ljava/lang/String;Ljava/lang/String;)V");
 
+  evaluationResultClass = new JniGlobalReference<jclass>(env, env->FindClass(PKGAPI("EvaluationResult")));
+  evaluationResultCtor = env->GetMethodID(evaluationResultClass->Get(), "<init>",
+                                          "(" TYPAPI("EvaluationResult$Reason") "Ljava/lang/String;)V");
+
+  // the enum values are resolved once instead of on every evaluated request
+  const char* reasonNames[EVALUATION_REASONS_COUNT] =
+  {
+    "DOCUMENT_ALLOWLISTED",
+    "FILTER_ALLOWLISTED",
+    "BLOCKING_FILTER",
+    "NO_FILTER"
+  };
+  JniLocalReference<jclass> reasonClass(env, env->FindClass(PKGAPI("EvaluationResult$Reason")));
+  for (int i = 0; i < EVALUATION_REASONS_COUNT; i++)
+  {
+    jfieldID reasonField = env->GetStaticFieldID(*reasonClass, reasonNames[i],
+                                                 TYPAPI("EvaluationResult$Reason"));
+    JniLocalReference<jobject> jReason(env, env->GetStaticObjectField(*reasonClass, reasonField));
+    evaluationResultReasons[i] = new JniGlobalReference<jobject>(env, *jReason);
+  }
+
   exceptionClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("AdblockPlusException")));
 }
 
@@ -85,6 +111,21 @@ void JniUtils_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
     subscriptionClass = NULL;
   }
 
+  if (evaluationResultClass)
+  {
+    delete evaluationResultClass;
+    evaluationResultClass = NULL;
+  }
+
+  for (int i = 0; i < EVALUATION_REASONS_COUNT; i++)
+  {
+    if (evaluationResultReasons[i])
+    {
+      delete evaluationResultReasons[i];
+      evaluationResultReasons[i] = NULL;
+    }
+  }
+
   if (exceptionClass)
   {
     delete exceptionClass;
@@ -231,6 +272,14 @@ jobject NewJniEmulationSelector(JNIEnv* env, const AdblockPlus::IFilterEngine::E
     JniStdStringToJava(env, emulationSelector.selector), JniStdStringToJava(env, emulationSelector.text));
 }
 
+jobject NewJniEvaluationResult(JNIEnv* env, JniEvaluationReason reason, const std::string* filterText)
+{
+  JniLocalReference<jstring> jFilterText(env,
+      filterText ? JniStdStringToJava(env, *filterText) : NULL);
+  return env->NewObject(evaluationResultClass->Get(), evaluationResultCtor,
+                        evaluationResultReasons[reason]->Get(), *jFilterText);
+}
+
 jobject JniStringVectorToArrayList(JNIEnv* env, const std::vector<std::string>& stringVector)
 {
   jobject arrayList = NewJniArrayList(env);
@@ -211,6 +211,18 @@ jobject NewJniSubscription(JNIEnv* env, AdblockPlus::Subscription&& subscription
 
 jobject NewJniEmulationSelector(JNIEnv* env, const AdblockPlus::IFilterEngine::EmulationSelector& emulationSelector);
 
+// values of `EvaluationResult.Reason`
+enum JniEvaluationReason
+{
+  DOCUMENT_ALLOWLISTED,
+  FILTER_ALLOWLISTED,
+  BLOCKING_FILTER,
+  NO_FILTER,
+  EVALUATION_REASONS_COUNT
+};
+
+jobject NewJniEvaluationResult(JNIEnv* env, JniEvaluationReason reason, const std::string* filterText);
+
 jobject JniStringVectorToArrayList(JNIEnv* env, const std::vector<std::string>& stringVector);
 
 #define CATCH_AND_THROW(jEnv) \
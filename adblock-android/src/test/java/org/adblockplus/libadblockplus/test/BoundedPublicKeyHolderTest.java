@@ -0,0 +1,168 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.sitekey.BoundedPublicKeyHolder;
+import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedPublicKeyHolderTest
+{
+  private static final String PUBLIC_KEY = "MFwwDQYJKoZIhvcNAQEBBQADSwAwSAJBANGtTstne7e8MbmDHDiMFkGbcuBgXmiVesGOG3gtYeM1EkrzVhBjGUvKXYE4GLFwqty3v5MuWWbvItUWBTYoVVsCAwEAAQ";
+
+  @Test
+  public void testNormalize()
+  {
+    assertEquals("https://www.example.com/", BoundedPublicKeyHolder.normalize("https://www.example.com"));
+    assertEquals("https://www.example.com/", BoundedPublicKeyHolder.normalize("HTTPS://WWW.Example.com/#top"));
+    assertEquals("https://www.example.com/Path?Query",
+      BoundedPublicKeyHolder.normalize("https://www.example.com/Path?Query#Fragment"));
+    assertEquals("https://www.example.com/?a=b", BoundedPublicKeyHolder.normalize("https://www.example.com?a=b"));
+    assertEquals("about:blank", BoundedPublicKeyHolder.normalize("about:blank"));
+  }
+
+  @Test
+  public void testPutGet()
+  {
+    final PublicKeyHolder publicKeyHolder = new BoundedPublicKeyHolder();
+    assertFalse(publicKeyHolder.contains("https://www.example.com"));
+
+    publicKeyHolder.put("https://www.example.com/#top", PUBLIC_KEY);
+    assertTrue(publicKeyHolder.contains("https://www.example.com"));
+    assertEquals(PUBLIC_KEY, publicKeyHolder.get("https://WWW.example.com/"));
+    assertNull(publicKeyHolder.get("https://www.example.com/other"));
+    assertNull(publicKeyHolder.get("http://www.example.com/"));
+
+    assertEquals(PUBLIC_KEY, publicKeyHolder.getAny(
+      Arrays.asList("https://www.other.com/", "https://www.example.com/"), ""));
+    assertEquals("", publicKeyHolder.getAny(Arrays.asList("https://www.other.com/"), ""));
+
+    publicKeyHolder.clear();
+    assertFalse(publicKeyHolder.contains("https://www.example.com"));
+  }
+
+  @Test
+  public void testCapacity()
+  {
+    final BoundedPublicKeyHolder publicKeyHolder =
+      new BoundedPublicKeyHolder(2, BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, null);
+    publicKeyHolder.put("https://www.example.com/1", PUBLIC_KEY);
+    publicKeyHolder.put("https://www.example.com/2", PUBLIC_KEY);
+    publicKeyHolder.put("https://www.example.com/3", PUBLIC_KEY);
+    assertEquals(2, publicKeyHolder.size());
+    assertFalse(publicKeyHolder.contains("https://www.example.com/1"));
+    assertTrue(publicKeyHolder.contains("https://www.example.com/2"));
+    assertTrue(publicKeyHolder.contains("https://www.example.com/3"));
+
+    // replacing the entries does not evict the others
+    for (int i = 0; i < 10; i++)
+    {
+      publicKeyHolder.put("https://www.example.com/3", PUBLIC_KEY);
+    }
+    assertEquals(2, publicKeyHolder.size());
+    assertTrue(publicKeyHolder.contains("https://www.example.com/2"));
+    assertTrue(publicKeyHolder.contains("https://www.example.com/3"));
+  }
+
+  @Test
+  public void testExpiry() throws InterruptedException
+  {
+    final PublicKeyHolder publicKeyHolder =
+      new BoundedPublicKeyHolder(BoundedPublicKeyHolder.DEFAULT_CAPACITY, 50, null);
+    publicKeyHolder.put("https://www.example.com/", PUBLIC_KEY);
+    assertTrue(publicKeyHolder.contains("https://www.example.com/"));
+    Thread.sleep(100);
+    assertFalse(publicKeyHolder.contains("https://www.example.com/"));
+  }
+
+  @Test
+  public void testPersistence() throws IOException
+  {
+    final File file = File.createTempFile("sitekeys", ".properties");
+    try
+    {
+      final BoundedPublicKeyHolder publicKeyHolder = new BoundedPublicKeyHolder(
+        BoundedPublicKeyHolder.DEFAULT_CAPACITY, BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, file);
+      publicKeyHolder.put("https://www.example.com/", PUBLIC_KEY);
+      publicKeyHolder.flush();
+
+      final PublicKeyHolder restoredPublicKeyHolder = new BoundedPublicKeyHolder(
+        BoundedPublicKeyHolder.DEFAULT_CAPACITY, BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, file);
+      assertEquals(PUBLIC_KEY, restoredPublicKeyHolder.get("https://www.example.com/"));
+
+      restoredPublicKeyHolder.clear();
+      assertFalse(file.exists());
+      assertFalse(new BoundedPublicKeyHolder(BoundedPublicKeyHolder.DEFAULT_CAPACITY,
+        BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, file).contains("https://www.example.com/"));
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testConcurrentPutsPersisted() throws IOException, InterruptedException
+  {
+    final File file = File.createTempFile("sitekeys", ".properties");
+    try
+    {
+      final BoundedPublicKeyHolder publicKeyHolder = new BoundedPublicKeyHolder(
+        BoundedPublicKeyHolder.DEFAULT_CAPACITY, BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, file);
+      final Thread[] threads = new Thread[4];
+      for (int i = 0; i < threads.length; i++)
+      {
+        final int threadIndex = i;
+        threads[i] = new Thread(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            for (int j = 0; j < 50; j++)
+            {
+              publicKeyHolder.put("https://www.example" + threadIndex + ".com/" + j, PUBLIC_KEY);
+            }
+          }
+        });
+        threads[i].start();
+      }
+      for (final Thread thread : threads)
+      {
+        thread.join();
+      }
+      publicKeyHolder.flush();
+
+      final BoundedPublicKeyHolder restoredPublicKeyHolder = new BoundedPublicKeyHolder(
+        BoundedPublicKeyHolder.DEFAULT_CAPACITY, BoundedPublicKeyHolder.DEFAULT_TTL_MILLIS, file);
+      assertEquals(threads.length * 50, restoredPublicKeyHolder.size());
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+}
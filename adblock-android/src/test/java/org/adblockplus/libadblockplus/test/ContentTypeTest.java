@@ -0,0 +1,53 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.ContentType;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentTypeTest
+{
+  @Test
+  public void testMasksAreDistinctSingleBits()
+  {
+    int allBits = 0;
+    for (final ContentType contentType : ContentType.values())
+    {
+      assertEquals(1, Integer.bitCount(contentType.mask));
+      assertEquals(0, allBits & contentType.mask);
+      allBits |= contentType.mask;
+    }
+  }
+
+  @Test
+  public void testMaskBitsOf()
+  {
+    assertEquals(0, ContentType.maskBitsOf());
+    assertEquals(ContentType.MASK_IMAGE, ContentType.maskBitsOf(ContentType.IMAGE));
+    assertEquals(ContentType.MASK_DOCUMENT | ContentType.MASK_ELEMHIDE,
+        ContentType.maskBitsOf(ContentType.DOCUMENT, ContentType.ELEMHIDE));
+    assertEquals(ContentType.maskBitsOf(ContentType.SCRIPT, ContentType.STYLESHEET),
+        ContentType.maskBitsOf(ContentType.maskOf(ContentType.SCRIPT, ContentType.STYLESHEET)));
+    assertEquals(ContentType.maskBitsOf(ContentType.values()),
+        ContentType.maskBitsOf(EnumSet.allOf(ContentType.class)));
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.EmulationSelector;
+import org.adblockplus.libadblockplus.android.ElementHidingCache;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ElementHidingCacheTest
+{
+  private static final long VERSION = 1;
+
+  @Test
+  public void testStyleSheets()
+  {
+    final ElementHidingCache cache = new ElementHidingCache();
+    assertNull(cache.getStyleSheet("domain.com", false, VERSION));
+    cache.putStyleSheet("domain.com", false, VERSION, "generic");
+    cache.putStyleSheet("domain.com", true, VERSION, "specific");
+
+    assertEquals("generic", cache.getStyleSheet("domain.com", false, VERSION));
+    assertEquals("specific", cache.getStyleSheet("domain.com", true, VERSION));
+    assertNull(cache.getStyleSheet("other.com", false, VERSION));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testEmulationSelectors()
+  {
+    final ElementHidingCache cache = new ElementHidingCache();
+    final List<EmulationSelector> selectors = Arrays.asList(
+        new EmulationSelector("div:-abp-has(> span)", "domain.com#?#div:-abp-has(> span)"));
+    cache.putEmulationSelectors("domain.com", VERSION, selectors);
+
+    final List<EmulationSelector> cached = cache.getEmulationSelectors("domain.com", VERSION);
+    assertEquals(selectors, cached);
+    assertNotSame(selectors, cached);
+    assertNull(cache.getEmulationSelectors("other.com", VERSION));
+  }
+
+  @Test
+  public void testNewVersionDropsCachedData()
+  {
+    final ElementHidingCache cache = new ElementHidingCache();
+    cache.putStyleSheet("domain.com", false, VERSION, "generic");
+
+    assertNull(cache.getStyleSheet("domain.com", false, VERSION + 1));
+    assertEquals(0, cache.size());
+
+    // data generated for the previous version is ignored
+    cache.putStyleSheet("domain.com", false, VERSION, "generic");
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSizeIsBounded()
+  {
+    final int maxChars = 1000;
+    final ElementHidingCache cache = new ElementHidingCache(maxChars, 60 * 1000);
+    final String styleSheet = new String(new char[300]);
+    cache.putStyleSheet("1.com", false, VERSION, styleSheet);
+    cache.putStyleSheet("2.com", false, VERSION, styleSheet);
+    // touch "1.com" so "2.com" becomes the eldest one
+    cache.getStyleSheet("1.com", false, VERSION);
+    cache.putStyleSheet("3.com", false, VERSION, styleSheet);
+    cache.putStyleSheet("4.com", false, VERSION, styleSheet);
+
+    assertTrue(cache.getCharsCount() <= maxChars);
+    assertNull(cache.getStyleSheet("2.com", false, VERSION));
+    assertEquals(styleSheet, cache.getStyleSheet("4.com", false, VERSION));
+
+    // too large to be cached at all
+    cache.putStyleSheet("5.com", false, VERSION, new String(new char[maxChars]));
+    assertNull(cache.getStyleSheet("5.com", false, VERSION));
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.MatchesResult;
+import org.adblockplus.libadblockplus.android.FilterIndexSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FilterIndexSnapshotTest
+{
+  private static final String PATTERNS =
+    "# Adblock Plus preferences\n" +
+    "version=5\n" +
+    "\n" +
+    "[Subscription]\n" +
+    "url=https://easylist-downloads.adblockplus.org/easylist.txt\n" +
+    "title=EasyList\n" +
+    "\n" +
+    "[Subscription filters]\n" +
+    "||ads.example.com^\n" +
+    "||Tracker.com^\n" +
+    "||allowed.com^\n" +
+    "||scripts.com^$script\n" +
+    "||path.com/ads/*\n" +
+    "||wild*.com^\n" +
+    "||disabled.com^\n" +
+    "@@||good.allowed.com^$image\n" +
+    "\\[Adblock Plus 2.0]\n" +
+    "\n" +
+    "[Subscription]\n" +
+    "url=https://disabled.example.com/list.txt\n" +
+    "disabled=true\n" +
+    "\n" +
+    "[Subscription filters]\n" +
+    "||from-disabled-subscription.com^\n" +
+    "\n" +
+    "[Subscription]\n" +
+    "url=~user~12345\n" +
+    "\n" +
+    "[Subscription filters]\n" +
+    "@@||trusted.com^$document\n" +
+    "@@||news.com^$genericblock\n" +
+    "@@/banner/*$image,domain=blog.com|~shop.blog.com\n" +
+    "@@|https://cdn.allowed.com/lib.js\n" +
+    "@@|blob:resource://\n" +
+    "@@/promo/*$image,domain=~shop.com\n" +
+    "@@||partner*.tracker.com^$document\n" +
+    "\n" +
+    "[Filter]\n" +
+    "text=||disabled.com^\n" +
+    "disabled=true\n";
+
+  private File directory;
+  private File patternsFile;
+  private File snapshotFile;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    directory = File.createTempFile("snapshot", "");
+    directory.delete();
+    directory.mkdirs();
+    patternsFile = new File(directory, FilterIndexSnapshot.PATTERNS_FILE_NAME);
+    snapshotFile = new File(directory, FilterIndexSnapshot.FILE_NAME);
+    writePatterns(PATTERNS);
+  }
+
+  @After
+  public void tearDown()
+  {
+    for (final File file : directory.listFiles())
+    {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private void writePatterns(final String content) throws IOException
+  {
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(patternsFile), "UTF-8");
+    try
+    {
+      writer.write(content);
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+
+  private void assertIndexed(final FilterIndexSnapshot snapshot)
+  {
+    assertTrue(snapshot.isBlocked("ads.example.com"));
+    assertTrue(snapshot.isBlocked("static.ads.example.com"));
+    assertTrue(snapshot.isBlocked("TRACKER.com"));
+    assertFalse(snapshot.isBlocked("example.com"));
+    assertFalse(snapshot.isBlocked("notads.example.com.evil"));
+
+    // the filters with the options, paths or wildcards are not indexed
+    assertFalse(snapshot.isBlocked("scripts.com"));
+    assertFalse(snapshot.isBlocked("path.com"));
+    assertFalse(snapshot.isBlocked("wildcard.com"));
+
+    // the disabled filters and subscriptions are not indexed
+    assertFalse(snapshot.isBlocked("disabled.com"));
+    assertFalse(snapshot.isBlocked("from-disabled-subscription.com"));
+
+    // the exceptions are applied regardless of their options
+    assertTrue(snapshot.isBlocked("allowed.com"));
+    assertFalse(snapshot.isBlocked("good.allowed.com"));
+    assertFalse(snapshot.isBlocked("cdn.allowed.com"));
+
+    assertTrue(snapshot.isDocumentAllowlisted("trusted.com"));
+    assertTrue(snapshot.isDocumentAllowlisted("www.trusted.com"));
+    assertFalse(snapshot.isDocumentAllowlisted("good.allowed.com"));
+
+    // `$genericblock` and `domain=` exceptions allowlist the whole documents
+    assertTrue(snapshot.isDocumentAllowlisted("news.com"));
+    assertTrue(snapshot.isDocumentAllowlisted("blog.com"));
+    assertFalse(snapshot.isDocumentAllowlisted("shop.com"));
+
+    assertFalse(snapshot.isBlocked(null));
+    assertFalse(snapshot.isBlocked(""));
+    assertEquals(3, snapshot.getBlockingCount());
+    assertEquals(4, snapshot.getExceptionCount());
+    assertEquals(3, snapshot.getDocumentExceptionCount());
+    assertEquals(2, snapshot.getUnboundExceptionCount());
+  }
+
+  @Test
+  public void testBuild() throws IOException
+  {
+    final FilterIndexSnapshot snapshot = FilterIndexSnapshot.build(patternsFile);
+    assertTrue(snapshot.isBuiltFrom(patternsFile));
+    assertIndexed(snapshot);
+  }
+
+  @Test
+  public void testWriteLoad() throws IOException
+  {
+    assertNull(FilterIndexSnapshot.load(snapshotFile, patternsFile));
+
+    FilterIndexSnapshot.build(patternsFile).write(snapshotFile);
+    assertTrue(snapshotFile.exists());
+    assertFalse(new File(directory, FilterIndexSnapshot.FILE_NAME + ".tmp").exists());
+
+    final FilterIndexSnapshot snapshot = FilterIndexSnapshot.load(snapshotFile, patternsFile);
+    assertNotNull(snapshot);
+    assertIndexed(snapshot);
+  }
+
+  @Test
+  public void testMatches() throws IOException
+  {
+    final FilterIndexSnapshot snapshot = FilterIndexSnapshot.build(patternsFile);
+    assertEquals(MatchesResult.BLOCKED, snapshot.matches("https://static.ads.example.com/banner.png?q=1",
+      Collections.singletonList("https://www.example.com/")));
+    assertEquals(MatchesResult.NOT_FOUND, snapshot.matches("https://example.com/banner.png",
+      Collections.singletonList("https://www.example.com/")));
+    assertEquals(MatchesResult.BLOCKED, snapshot.matches("https://ads.example.com:8080/",
+      Collections.<String>emptyList()));
+    assertEquals(MatchesResult.ALLOWLISTED, snapshot.matches("https://ads.example.com/banner.png",
+      Arrays.asList("https://frame.example.com/", "https://www.trusted.com/article")));
+  }
+
+  @Test
+  public void testMatchesUnboundExceptions() throws IOException
+  {
+    FilterIndexSnapshot.build(patternsFile).write(snapshotFile);
+    final FilterIndexSnapshot snapshot = FilterIndexSnapshot.load(snapshotFile, patternsFile);
+    assertNotNull(snapshot);
+
+    // the options are ignored, so `~shop.com` is allowlisted as well
+    assertEquals(MatchesResult.NOT_FOUND, snapshot.matches("https://ads.example.com/promo/1.png",
+      Collections.singletonList("https://shop.com/")));
+    assertEquals(MatchesResult.BLOCKED, snapshot.matches("https://ads.example.com/promotion.png",
+      Collections.singletonList("https://shop.com/")));
+
+    assertEquals(MatchesResult.ALLOWLISTED, snapshot.matches("https://ads.example.com/",
+      Collections.singletonList("https://partner-1.tracker.com/page")));
+    assertEquals(MatchesResult.BLOCKED, snapshot.matches("https://ads.example.com/",
+      Collections.singletonList("https://partner-1.tracker.com.evil/page")));
+  }
+
+  @Test
+  public void testSiteKeyExceptionsNotIndexed() throws IOException
+  {
+    writePatterns(PATTERNS +
+      "\n" +
+      "[Subscription]\n" +
+      "url=https://easylist-downloads.adblockplus.org/exceptionrules.txt\n" +
+      "\n" +
+      "[Subscription filters]\n" +
+      "@@$sitekey=MFwwDQYJKoZIhvcNAQEBBQADSwAwSAJBAJRmzcpTevQqkWn6dJuX,document\n" +
+      "@@||ads.example.com^$SiteKey=MFwwDQYJKoZIhvcNAQEBBQADSwAwSAJBAJRmzcpTevQqkWn6dJuX\n");
+    final FilterIndexSnapshot snapshot = FilterIndexSnapshot.build(patternsFile);
+    assertIndexed(snapshot);
+    assertEquals(MatchesResult.BLOCKED, snapshot.matches("https://ads.example.com/banner.png",
+      Collections.singletonList("https://www.example.com/")));
+  }
+
+  @Test
+  public void testOutdated() throws IOException
+  {
+    FilterIndexSnapshot.build(patternsFile).write(snapshotFile);
+    writePatterns(PATTERNS + "\n");
+    assertNull(FilterIndexSnapshot.load(snapshotFile, patternsFile));
+  }
+
+  @Test
+  public void testOtherFormatVersion() throws IOException
+  {
+    FilterIndexSnapshot.build(patternsFile).write(snapshotFile);
+    final RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+    try
+    {
+      file.seek(4);
+      file.writeInt(FilterIndexSnapshot.FORMAT_VERSION + 1);
+    }
+    finally
+    {
+      file.close();
+    }
+    assertNull(FilterIndexSnapshot.load(snapshotFile, patternsFile));
+  }
+
+  @Test
+  public void testTruncated() throws IOException
+  {
+    FilterIndexSnapshot.build(patternsFile).write(snapshotFile);
+    final RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+    try
+    {
+      file.setLength(file.length() - 1);
+    }
+    finally
+    {
+      file.close();
+    }
+    assertNull(FilterIndexSnapshot.load(snapshotFile, patternsFile));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.android.AdblockEngineProvider;
+import org.adblockplus.libadblockplus.android.LeasedEngineHandle;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeasedEngineHandleTest
+{
+  private final LeasedEngineHandle handle = new LeasedEngineHandle(null);
+
+  private Thread startDraining()
+  {
+    final Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        handle.drain();
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void testDrainWithoutLeases()
+  {
+    handle.drain();
+    assertTrue(handle.isDrained());
+    assertNull(handle.tryAcquire());
+  }
+
+  @Test
+  public void testDrainWaitsForLeases() throws InterruptedException
+  {
+    final AdblockEngineProvider.EngineLease lease1 = handle.tryAcquire();
+    final AdblockEngineProvider.EngineLease lease2 = handle.tryAcquire();
+    assertNotNull(lease1);
+    assertNotNull(lease2);
+
+    final Thread drainThread = startDraining();
+    lease1.release();
+    drainThread.join(100);
+    assertTrue(drainThread.isAlive());
+    assertFalse(handle.isDrained());
+
+    lease2.release();
+    drainThread.join(1000);
+    assertFalse(drainThread.isAlive());
+    assertTrue(handle.isDrained());
+    assertNull(handle.tryAcquire());
+  }
+
+  @Test
+  public void testDoubleReleaseDoesNotAffectOtherLeases() throws InterruptedException
+  {
+    final AdblockEngineProvider.EngineLease lease1 = handle.tryAcquire();
+    final AdblockEngineProvider.EngineLease lease2 = handle.tryAcquire();
+    lease1.release();
+    lease1.release();
+    lease1.release();
+
+    // neither the owner's reference nor the other lease's one is dropped
+    final AdblockEngineProvider.EngineLease lease3 = handle.tryAcquire();
+    assertNotNull(lease3);
+    final Thread drainThread = startDraining();
+    lease2.release();
+    lease2.release();
+    drainThread.join(100);
+    assertTrue(drainThread.isAlive());
+    assertFalse(handle.isDrained());
+
+    lease3.release();
+    drainThread.join(1000);
+    assertFalse(drainThread.isAlive());
+    assertTrue(handle.isDrained());
+  }
+
+  @Test
+  public void testReleaseAfterDrained()
+  {
+    final AdblockEngineProvider.EngineLease lease = handle.tryAcquire();
+    lease.release();
+    handle.drain();
+    handle.drain();
+    lease.release();
+    assertTrue(handle.isDrained());
+    assertNull(handle.tryAcquire());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.android.ListedItemsMirror;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ListedItemsMirrorTest
+{
+  private static final long VERSION = 1;
+
+  private final List<String> listedItems = new ArrayList<>();
+  private int loadCount;
+  private int lookupCount;
+  private ListedItemsMirror mirror;
+
+  @Before
+  public void setUp()
+  {
+    listedItems.clear();
+    listedItems.addAll(Arrays.asList("||ads.com^", "@@||good.com^$document"));
+    loadCount = 0;
+    lookupCount = 0;
+    mirror = new ListedItemsMirror(new ListedItemsMirror.Source()
+    {
+      @Override
+      public Collection<String> getListedItems()
+      {
+        loadCount++;
+        return new ArrayList<>(listedItems);
+      }
+
+      @Override
+      public boolean isListed(final String item)
+      {
+        lookupCount++;
+        return listedItems.contains(item);
+      }
+    });
+  }
+
+  @Test
+  public void testSingleLookupIsForwarded()
+  {
+    assertTrue(mirror.isListed("||ads.com^", VERSION));
+    assertEquals(1, lookupCount);
+    assertEquals(0, loadCount);
+  }
+
+  @Test
+  public void testRepeatedLookupsLoadOnce()
+  {
+    assertTrue(mirror.isListed("||ads.com^", VERSION));
+    assertTrue(mirror.isListed("@@||good.com^$document", VERSION));
+    assertFalse(mirror.isListed("||other.com^", VERSION));
+    assertTrue(mirror.isListed("||ads.com^", VERSION));
+    assertEquals(1, lookupCount);
+    assertEquals(1, loadCount);
+  }
+
+  @Test
+  public void testNewerVersionInvalidates()
+  {
+    mirror.isListed("||ads.com^", VERSION);
+    mirror.isListed("||ads.com^", VERSION);
+    listedItems.remove("||ads.com^");
+
+    assertFalse(mirror.isListed("||ads.com^", VERSION + 1));
+    assertEquals(2, lookupCount);
+    assertFalse(mirror.isListed("||ads.com^", VERSION + 1));
+    assertEquals(2, loadCount);
+  }
+
+  @Test
+  public void testUpdate()
+  {
+    mirror.isListed("||ads.com^", VERSION);
+    mirror.isListed("||ads.com^", VERSION);
+    listedItems.remove("||ads.com^");
+    listedItems.add("||tracker.com^");
+    mirror.update(Collections.singletonList("||ads.com^"), Collections.singletonList("||tracker.com^"),
+      VERSION, VERSION + 1);
+
+    assertFalse(mirror.isListed("||ads.com^", VERSION + 1));
+    assertTrue(mirror.isListed("||tracker.com^", VERSION + 1));
+    assertEquals(1, lookupCount);
+    assertEquals(1, loadCount);
+  }
+
+  @Test
+  public void testUpdateOfOutdatedMirrorIsIgnored()
+  {
+    mirror.isListed("||ads.com^", VERSION);
+    mirror.isListed("||ads.com^", VERSION);
+    mirror.update(Collections.<String>emptyList(), Collections.singletonList("||tracker.com^"),
+      VERSION + 1, VERSION + 2);
+
+    // not listed in the source, so the mirror must not have been updated
+    assertFalse(mirror.isListed("||tracker.com^", VERSION + 2));
+    assertEquals(2, lookupCount);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.android.ParsedRequestUrl;
+import org.adblockplus.libadblockplus.android.Utils;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ParsedRequestUrlTest
+{
+  private static final String[] URLS = new String[]
+  {
+    "http://domain.com",
+    "http://domain.com/path?query",
+    "https://sub.domain.com:8080/path/image.png?id=5&b=c#fragment",
+    "http://domain.com?query=m#fragment",
+    "HTTPS://Sub.Domain.COM/a?b#c",
+    "http://1.2.3.4/path",
+    "http://user@domain.com/path",
+    "http://domain with spaces.com",
+    "http://domain_underscore.com/",
+    "https://static-news.someurl.com/static-mcnews/sbi-loan[1]_28825168_300x250.jpg",
+    "file://home/user/document.pdf",
+    "data://text/vnd-example+xyz;foo=bar;base64,R0lGODdh",
+    "about:blank",
+    "www.unallowed%character.com",
+    "file://"
+  };
+
+  @Test
+  public void testComponents()
+  {
+    final ParsedRequestUrl url =
+      ParsedRequestUrl.parse("https://sub.domain.com:8080/path/image.png?id=5&b=c#fragment");
+    assertEquals("https", url.getScheme());
+    assertEquals("sub.domain.com", url.getHost());
+    assertEquals("/path/image.png", url.getPath());
+    assertEquals("id=5&b=c", url.getQuery());
+    assertEquals("fragment", url.getFragment());
+
+    final ParsedRequestUrl noParts = ParsedRequestUrl.parse("http://domain.com");
+    assertEquals("", noParts.getPath());
+    assertNull(noParts.getQuery());
+    assertNull(noParts.getFragment());
+    assertSame(noParts.getUrl(), noParts.getUrlWithoutFragment());
+  }
+
+  @Test
+  public void testSameAsUtils() throws MalformedURLException
+  {
+    for (final String url : URLS)
+    {
+      final ParsedRequestUrl parsedUrl = ParsedRequestUrl.parse(url);
+      assertEquals(url, Utils.getUrlWithoutFragment(url), parsedUrl.getUrlWithoutFragment());
+      assertEquals(url, Utils.getDomain(Utils.getUrlWithoutFragment(url)), parsedUrl.getDomain());
+    }
+  }
+
+  @Test
+  public void testDomain()
+  {
+    assertEquals("sub.domain.com", ParsedRequestUrl.parse("https://sub.domain.com:8080/").getDomain());
+    assertEquals("1.2.3.4", ParsedRequestUrl.parse("http://1.2.3.4/path").getDomain());
+    assertEquals("text", ParsedRequestUrl.parse("data://text/vnd-example+xyz;foo=bar").getDomain());
+    assertNull(ParsedRequestUrl.parse("http://domain with spaces.com").getDomain());
+    assertNull(ParsedRequestUrl.parse("about:blank").getDomain());
+    assertNull(ParsedRequestUrl.parse("file://").getDomain());
+  }
+
+  @Test
+  public void testDomainExtractedOnce()
+  {
+    final ParsedRequestUrl parsedUrl = ParsedRequestUrl.parse("https://sub.domain.com/");
+    final String domain = parsedUrl.getDomain();
+    assertEquals("sub.domain.com", domain);
+    assertSame(domain, parsedUrl.getDomain());
+
+    final ParsedRequestUrl invalidUrl = ParsedRequestUrl.parse("about:blank");
+    assertNull(invalidUrl.getDomain());
+    assertNull(invalidUrl.getDomain());
+  }
+
+  @Test
+  public void testOrigin() throws MalformedURLException
+  {
+    assertEquals("http://domain.com", ParsedRequestUrl.parse("http://domain.com").getOrigin());
+    assertEquals("http://domain.com", ParsedRequestUrl.parse("http://domain.com#fragment").getOrigin());
+    assertEquals("http://domain.com/", ParsedRequestUrl.parse("http://domain.com/path").getOrigin());
+    assertEquals("http://domain.com/", ParsedRequestUrl.parse("http://domain.com/path?query").getOrigin());
+    assertEquals("http://domain.com:80", ParsedRequestUrl.parse("http://domain.com:80").getOrigin());
+    assertEquals("http://domain.com:8080/", ParsedRequestUrl.parse("http://domain.com:8080?query=m").getOrigin());
+    assertEquals("https://Domain.com/", ParsedRequestUrl.parse("HTTPS://Domain.com/path").getOrigin());
+  }
+
+  @Test
+  public void testPathWithQuery() throws MalformedURLException
+  {
+    assertEquals("/image.jpeg", ParsedRequestUrl.parse("http://domain.com/image.jpeg").getPathWithQuery());
+    assertEquals("/image.jpeg?id=5", ParsedRequestUrl.parse("http://domain.com/image.jpeg?id=5#fragment").getPathWithQuery());
+    assertEquals("/static-mcnews/sbi-loan[1]_28825168_300x250.jpg", ParsedRequestUrl.parse(
+      "https://static-news.someurl.com/static-mcnews/sbi-loan[1]_28825168_300x250.jpg").getPathWithQuery());
+    try
+    {
+      ParsedRequestUrl.parse("some invalid url").getPathWithQuery();
+      fail("MalformedURLException is expected to be thrown");
+    }
+    catch (final MalformedURLException e)
+    {
+      // ignored
+    }
+  }
+}
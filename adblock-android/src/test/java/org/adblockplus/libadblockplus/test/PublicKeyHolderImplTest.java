@@ -25,11 +25,14 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class PublicKeyHolderImplTest
@@ -131,4 +134,71 @@ public class PublicKeyHolderImplTest
     assertEquals(publicKey, PublicKeyHolderImpl.stripPadding(publicKey + "="));
     assertEquals(publicKey, PublicKeyHolderImpl.stripPadding(publicKey + "=="));
   }
+
+  @Test
+  public void testPending()
+  {
+    final String url = generateString();
+    final String otherUrl = generateString();
+    final List<String> urls = new ArrayList<>();
+    urls.add(otherUrl);
+    urls.add(url);
+
+    assertNull(publicKeyHolder.getPending(url));
+    assertFalse(publicKeyHolder.waitForPending(urls, 10));
+
+    final FutureTask<Boolean> verification = new FutureTask<>(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        publicKeyHolder.put(url, generateString());
+        return true;
+      }
+    });
+    publicKeyHolder.putPending(url, verification);
+    assertNotNull(publicKeyHolder.getPending(url));
+    assertNull(publicKeyHolder.getPending(otherUrl));
+
+    // times out as the verification is not run
+    assertTrue(publicKeyHolder.waitForPending(urls, 10));
+    assertFalse(publicKeyHolder.contains(url));
+
+    verification.run();
+    assertTrue(publicKeyHolder.contains(url));
+    assertNull(publicKeyHolder.getPending(url));
+    assertFalse(publicKeyHolder.waitForPending(urls, 10));
+  }
+
+  @Test
+  public void testRemovePendingKeepsNewerVerification()
+  {
+    final String url = generateString();
+    final FutureTask<Boolean> verification = new FutureTask<>(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        return true;
+      }
+    });
+    final FutureTask<Boolean> newerVerification = new FutureTask<>(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        return true;
+      }
+    });
+    publicKeyHolder.putPending(url, verification);
+    publicKeyHolder.putPending(url, newerVerification);
+
+    // the former verification is done and unregisters itself
+    verification.run();
+    publicKeyHolder.removePending(url, verification);
+    assertSame(newerVerification, publicKeyHolder.getPending(url));
+
+    publicKeyHolder.removePending(url, newerVerification);
+    assertNull(publicKeyHolder.getPending(url));
+  }
 }
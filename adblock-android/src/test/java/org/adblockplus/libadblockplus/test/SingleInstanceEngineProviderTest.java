@@ -0,0 +1,127 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.test;
+
+import org.adblockplus.libadblockplus.android.AdblockEngine;
+import org.adblockplus.libadblockplus.android.SingleInstanceEngineProvider;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SingleInstanceEngineProviderTest
+{
+  private final CountDownLatch buildStartedLatch = new CountDownLatch(1);
+  private final CountDownLatch buildLatch = new CountDownLatch(1);
+
+  // the engine can't be created in the unit tests, so it fails to be built once allowed
+  private final SingleInstanceEngineProvider provider = new SingleInstanceEngineProvider(
+    new AdblockEngine.Factory()
+    {
+      @Override
+      public AdblockEngine build()
+      {
+        buildStartedLatch.countDown();
+        try
+        {
+          buildLatch.await();
+        }
+        catch (final InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("Not available in the unit tests");
+      }
+    })
+  {
+    @Override
+    protected ExecutorService createExecutorService()
+    {
+      return Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+          final Thread thread = new Thread(runnable);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  };
+
+  private Thread startWaitingForReady()
+  {
+    final Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        provider.waitForReady();
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void testWaitForReadyWithoutPendingTasks()
+  {
+    provider.waitForReady();
+    assertEquals(0, provider.getReadyWaitCount());
+  }
+
+  @Test
+  public void testWaitForReadyWaitsForPendingTask() throws InterruptedException
+  {
+    assertTrue(provider.retain(true));
+    buildStartedLatch.await();
+
+    final Thread waitThread = startWaitingForReady();
+    waitThread.join(100);
+    assertTrue(waitThread.isAlive());
+
+    buildLatch.countDown();
+    waitThread.join(1000);
+    assertFalse(waitThread.isAlive());
+    assertEquals(1, provider.getReadyWaitCount());
+
+    // the task is finished, so the latch is not awaited any more
+    provider.waitForReady();
+    assertEquals(1, provider.getReadyWaitCount());
+  }
+
+  @Test
+  public void testNoLeaseUntilEngineCreated() throws InterruptedException
+  {
+    provider.retain(true);
+    buildStartedLatch.await();
+    assertNull(provider.acquireEngine());
+
+    buildLatch.countDown();
+    provider.waitForReady();
+    assertNull(provider.acquireEngine());
+  }
+}
@@ -18,6 +18,7 @@
 package org.adblockplus.libadblockplus.test;
 
 import org.adblockplus.libadblockplus.security.JavaSignatureVerifier;
+import org.adblockplus.libadblockplus.security.SignatureVerificationException;
 import org.adblockplus.libadblockplus.security.SignatureVerifier;
 import org.adblockplus.libadblockplus.sitekey.PublicKeyHolder;
 import org.adblockplus.libadblockplus.sitekey.PublicKeyHolderImpl;
@@ -34,14 +35,23 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -326,4 +336,100 @@ public class SiteKeyVerifierTest
 
     assertVerified(url, userAgent, value);
   }
+
+  @Test
+  public void testVerifiedIsRemembered() throws SiteKeyException
+  {
+    final AtomicInteger verifyCount = new AtomicInteger(0);
+    final SignatureVerifier countingSignatureVerifier = new SignatureVerifier()
+    {
+      @Override
+      public boolean verify(final PublicKey publicKey, final byte[] data, final byte[] signatureBytes)
+          throws SignatureVerificationException
+      {
+        verifyCount.incrementAndGet();
+        return signatureVerifier.verify(publicKey, data, signatureBytes);
+      }
+    };
+    final PublicKeyHolder publicKeyHolder = new PublicKeyHolderImpl();
+    final SiteKeyVerifier siteKeyVerifier =
+        new SiteKeyVerifier(countingSignatureVerifier, publicKeyHolder, base64Processor);
+
+    final String url = "https://www.cook.com/";
+    final String userAgent = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_14_3) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/71.0.3578.98 Safari/537.36";
+    final String value = "MFwwDQYJKoZIhvcNAQEBBQADSwAwSAJBAL/3/SrV7P8AsTHMFSpPmYbyv2PkACHwmG9Z+1IFZq3vA54IN7pQcGnhgNo+8SN9r/KtUWCb9OPqTfWM1N4w/EUCAwEAAQ==_aW33lgRJlrkr/OXJpTwWfOhcsYG1vCMggeNdI1CoMtGSkeCqYYmmJ5SYTCIH4GVRfP6UiteZGlNJDCPs76b8Mw==";
+
+    assertTrue(siteKeyVerifier.verify(url, userAgent, value));
+    assertEquals(1, verifyCount.get());
+
+    // the holder is filled even if the verification is skipped
+    publicKeyHolder.clear();
+    assertTrue(siteKeyVerifier.verify(url, userAgent, value));
+    assertEquals(1, verifyCount.get());
+    assertNotNull(publicKeyHolder.get(url));
+
+    // other user agent is verified
+    assertFalse(siteKeyVerifier.verify(url, "other", value));
+    assertEquals(2, verifyCount.get());
+
+    // other signature for the same key is verified
+    final int length = value.length();
+    final String wrongValue = new StringBuilder(value).replace(length - 3, length - 2, "D").toString();
+    assertFalse(siteKeyVerifier.verify(url, userAgent, wrongValue));
+    assertEquals(3, verifyCount.get());
+  }
+
+  @Test
+  public void testVerifyAsync() throws Exception
+  {
+    final CountDownLatch verificationStarted = new CountDownLatch(1);
+    final CountDownLatch verificationAllowed = new CountDownLatch(1);
+    final SignatureVerifier blockingSignatureVerifier = new SignatureVerifier()
+    {
+      @Override
+      public boolean verify(final PublicKey publicKey, final byte[] data, final byte[] signatureBytes)
+          throws SignatureVerificationException
+      {
+        verificationStarted.countDown();
+        try
+        {
+          verificationAllowed.await();
+        }
+        catch (final InterruptedException e)
+        {
+          throw new SignatureVerificationException(e);
+        }
+        return signatureVerifier.verify(publicKey, data, signatureBytes);
+      }
+    };
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      final PublicKeyHolder publicKeyHolder = new PublicKeyHolderImpl();
+      final SiteKeyVerifier siteKeyVerifier = new SiteKeyVerifier(blockingSignatureVerifier,
+          publicKeyHolder, base64Processor, SiteKeyVerifier.DEFAULT_PUBLIC_KEYS_CACHE_SIZE,
+          SiteKeyVerifier.DEFAULT_VERIFIED_CACHE_SIZE, executor);
+
+      final String url = "https://www.cook.com/";
+      final String userAgent = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_14_3) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/71.0.3578.98 Safari/537.36";
+      final String value = "MFwwDQYJKoZIhvcNAQEBBQADSwAwSAJBAL/3/SrV7P8AsTHMFSpPmYbyv2PkACHwmG9Z+1IFZq3vA54IN7pQcGnhgNo+8SN9r/KtUWCb9OPqTfWM1N4w/EUCAwEAAQ==_aW33lgRJlrkr/OXJpTwWfOhcsYG1vCMggeNdI1CoMtGSkeCqYYmmJ5SYTCIH4GVRfP6UiteZGlNJDCPs76b8Mw==";
+
+      final Future<Boolean> verification = siteKeyVerifier.verifyAsync(url, userAgent, value);
+      assertTrue(verificationStarted.await(5, TimeUnit.SECONDS));
+      assertTrue(verification == publicKeyHolder.getPending(url));
+      assertNull(publicKeyHolder.getPending("https://www.other.com/"));
+      assertFalse(publicKeyHolder.contains(url));
+
+      verificationAllowed.countDown();
+      assertTrue(publicKeyHolder.waitForPending(Collections.singletonList(url), 5000));
+      assertTrue(verification.get());
+      assertTrue(publicKeyHolder.contains(url));
+      assertNull(publicKeyHolder.getPending(url));
+      assertFalse(publicKeyHolder.waitForPending(Collections.singletonList(url), 5000));
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -21,8 +21,11 @@ import org.adblockplus.libadblockplus.HeaderEntry;
 import org.adblockplus.libadblockplus.android.Utils;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -31,6 +34,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -165,6 +169,22 @@ public class UtilsTest
         { '1', '2', '3', (byte)0xE2, (byte)0x80, (byte)0xA9, '4', '5' }, utf8)));
   }
 
+  @Test
+  public void testGetUrlWithoutTrackingParams()
+  {
+    final Set<String> params = new HashSet<>(Arrays.asList("downloadCount", "lastVersion"));
+    assertEquals("https://example.com/list.txt",
+      Utils.getUrlWithoutParams("https://example.com/list.txt", params));
+    assertEquals("https://example.com/list.txt",
+      Utils.getUrlWithoutParams("https://example.com/list.txt?downloadCount=4&lastVersion=0", params));
+    assertEquals("https://example.com/list.txt?lang=de",
+      Utils.getUrlWithoutParams("https://example.com/list.txt?downloadCount=4&lang=de&lastVersion", params));
+    assertEquals("https://example.com/list.txt?lang=fr&safe#top",
+      Utils.getUrlWithoutParams("https://example.com/list.txt?lang=fr&&safe&downloadCount=1#top", params));
+    assertEquals("https://example.com/list.txt?downloadCounts=1#downloadCount=1",
+      Utils.getUrlWithoutParams("https://example.com/list.txt?downloadCounts=1#downloadCount=1", params));
+  }
+
   @SuppressWarnings("OverwrittenKey")
   @Test
   public void testGetDomain()
@@ -356,4 +376,24 @@ public class UtilsTest
     assertEquals("https://domain.com:80", Utils.getUrlWithoutFragment("https://domain.com:80#fragment"));
     assertEquals("https://domain.com:80/path", Utils.getUrlWithoutFragment("https://domain.com:80/path#fragment"));
   }
+
+  @Test
+  public void testReadFromInputStream() throws IOException
+  {
+    final byte[] data = new byte[100 * 1024 + 1];
+    new Random(1).nextBytes(data);
+
+    // unknown, exact and wrong (eg. Content-Length of the compressed data) expected lengths
+    for (final long expectedLength : new long[] { -1, data.length, data.length / 3, data.length * 2, 0 })
+    {
+      final ByteBuffer buffer = Utils.readFromInputStream(new ByteArrayInputStream(data), expectedLength);
+      assertTrue(buffer.isDirect());
+      assertEquals(0, buffer.position());
+      assertEquals(data.length, buffer.limit());
+      assertTrue(Arrays.equals(data, Utils.byteBufferToByteArray(buffer)));
+    }
+
+    assertEquals(0, Utils.readFromInputStream(new ByteArrayInputStream(new byte[0]), 10).limit());
+    assertTrue(Arrays.equals(data, Utils.toByteArray(new ByteArrayInputStream(data))));
+  }
 }
@@ -8,6 +8,9 @@ object Versions {
     const val timber = "4.7.1"
     const val wiremock = "2.26.2"
     const val android_material = "1.2.1"
+    const val jmh = "1.29"
+    const val jmh_gradle_plugin = "0.5.3"
+    const val jetbrains_annotations = "13.0"
 
     object AndroidX {
         const val benchmark = "1.0.0"
@@ -39,6 +42,7 @@ object Deps {
     const val androidx_test_runner = "androidx.test:runner:${Versions.AndroidX.test}"
 
     const val kotlin_stdlib = "org.jetbrains.kotlin:kotlin-stdlib-jdk7:${Versions.kotlin}"
+    const val jetbrains_annotations = "org.jetbrains:annotations:${Versions.jetbrains_annotations}"
     const val junit4 = "junit:junit:${Versions.junit4}"
     const val mockito_core = "org.mockito:mockito-core:${Versions.mockito}"
     const val mockito_android = "org.mockito:mockito-android:${Versions.mockito}"
@@ -48,6 +52,7 @@ object Deps {
     const val tools_android_gradle_plugin = "com.android.tools.build:gradle:${Versions.android_gradle_plugin}"
     const val tools_bintray_gradle_plugin = "com.jfrog.bintray.gradle:gradle-bintray-plugin:${Versions.bintray_gradle_plugin}"
     const val tools_kotlin_gradle_plugin = "org.jetbrains.kotlin:kotlin-gradle-plugin:${Versions.kotlin}"
+    const val tools_jmh_gradle_plugin = "me.champeau.gradle:jmh-gradle-plugin:${Versions.jmh_gradle_plugin}"
 
     const val wiremock_standalone = "com.github.tomakehurst:wiremock-standalone:${Versions.wiremock}"
     const val androidx_appcompat = "androidx.appcompat:appcompat:${Versions.AndroidX.appcompat}"